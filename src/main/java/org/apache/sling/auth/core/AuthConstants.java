@@ -145,5 +145,18 @@ public final class AuthConstants {
      */
     public static final String ATTR_REQUEST_AUTH_URI_SUFFIX = "org.apache.sling.api.include.auth_uri_suffix";
 
+    /**
+     * The name of the request attribute set by the default authenticator
+     * <code>org.apache.sling.auth.core.impl.SlingAuthenticator</code> to a
+     * <code>java.util.function.BiPredicate&lt;HttpServletRequest, String&gt;</code>
+     * telling whether a path resolves to an existing resource with the
+     * resource resolver of the request. It is used by
+     * {@link AuthUtil#isRedirectValid(jakarta.servlet.http.HttpServletRequest, String)}
+     * to cache these decisions and is not intended to be set by other code.
+     *
+     * @since 1.8.0 (bundle version 2.0.4)
+     */
+    public static final String ATTR_REQUEST_RESOURCE_EXISTS = "org.apache.sling.auth.core.resourceExists";
+
     private AuthConstants() {}
 }
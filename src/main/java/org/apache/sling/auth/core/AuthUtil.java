@@ -21,21 +21,20 @@ package org.apache.sling.auth.core;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.MalformedURLException;
-import java.net.URI;
-import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLEncoder;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.regex.Pattern;
+import java.util.function.BiPredicate;
 
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.apache.sling.api.auth.Authenticator;
 import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.api.resource.ResourceUtil;
+import org.apache.sling.api.wrappers.JavaxToJakartaRequestWrapper;
 import org.apache.sling.auth.core.spi.JakartaAuthenticationHandler;
 import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
@@ -833,62 +832,25 @@ public final class AuthUtil {
             return false;
         }
 
-        try {
-            new URI(target);
-        } catch (URISyntaxException e) {
-            getLog().warn("isRedirectValid: Redirect target '{}' contains illegal characters", target);
-            return false;
-        }
-
-        if (target.contains("://")) {
-            getLog().warn("isRedirectValid: Redirect target '{}' must not be an URL", target);
-            return false;
-        }
-
-        if (target.contains("//")
-                || target.contains("/../")
-                || target.contains("/./")
-                || target.endsWith("/.")
-                || target.endsWith("/..")) {
-            getLog().warn("isRedirectValid: Redirect target '{}' is not normalized", target);
-            return false;
-        }
-
         final String ctxPath = getContextPath(request);
-        if (ctxPath.length() > 0 && !target.startsWith(ctxPath)) {
-            getLog().warn(
-                            "isRedirectValid: Redirect target '{}' does not start with servlet context path '{}'",
-                            target,
-                            ctxPath);
+        final RedirectTarget redirect = RedirectTarget.scan(target, ctxPath);
+        if (!isSyntacticallyValid(redirect, target, ctxPath)) {
             return false;
         }
 
         // special case of requesting the servlet context root path
-        if (ctxPath.length() == target.length()) {
+        if (redirect.isContextRoot()) {
             return true;
         }
 
-        final String localTarget = target.substring(ctxPath.length());
-        if (!localTarget.startsWith("/")) {
-            getLog().warn(
-                            "isRedirectValid: Redirect target '{}' without servlet context path '{}' must be an absolute path",
-                            target,
-                            ctxPath);
-            return false;
-        }
-
-        final int query = localTarget.indexOf('?');
-        final String path = (query > 0) ? localTarget.substring(0, query) : localTarget;
-
         ResourceResolver resolver = getResourceResolver(request);
         // assume all is fine if the path resolves to a resource
-        if (resolver != null && !ResourceUtil.isNonExistingResource(resolver.resolve(request, path))) {
+        if (resolver != null && resourceExists(request, resolver, redirect.getPath())) {
             return true;
         }
 
         // not resolving to a resource, check for illegal characters
-        final Pattern illegal = Pattern.compile("[<>'\"]");
-        if (illegal.matcher(path).find()) {
+        if (redirect.isUnsafePath()) {
             getLog().warn("isRedirectValid: Redirect target '{}' must not contain any of <>'\"", target);
             return false;
         }
@@ -939,62 +901,25 @@ public final class AuthUtil {
             return false;
         }
 
-        try {
-            new URI(target);
-        } catch (URISyntaxException e) {
-            getLog().warn("isRedirectValid: Redirect target '{}' contains illegal characters", target);
-            return false;
-        }
-
-        if (target.contains("://")) {
-            getLog().warn("isRedirectValid: Redirect target '{}' must not be an URL", target);
-            return false;
-        }
-
-        if (target.contains("//")
-                || target.contains("/../")
-                || target.contains("/./")
-                || target.endsWith("/.")
-                || target.endsWith("/..")) {
-            getLog().warn("isRedirectValid: Redirect target '{}' is not normalized", target);
-            return false;
-        }
-
         final String ctxPath = getContextPath(request);
-        if (ctxPath.length() > 0 && !target.startsWith(ctxPath)) {
-            getLog().warn(
-                            "isRedirectValid: Redirect target '{}' does not start with servlet context path '{}'",
-                            target,
-                            ctxPath);
+        final RedirectTarget redirect = RedirectTarget.scan(target, ctxPath);
+        if (!isSyntacticallyValid(redirect, target, ctxPath)) {
             return false;
         }
 
         // special case of requesting the servlet context root path
-        if (ctxPath.length() == target.length()) {
+        if (redirect.isContextRoot()) {
             return true;
         }
 
-        final String localTarget = target.substring(ctxPath.length());
-        if (!localTarget.startsWith("/")) {
-            getLog().warn(
-                            "isRedirectValid: Redirect target '{}' without servlet context path '{}' must be an absolute path",
-                            target,
-                            ctxPath);
-            return false;
-        }
-
-        final int query = localTarget.indexOf('?');
-        final String path = (query > 0) ? localTarget.substring(0, query) : localTarget;
-
         ResourceResolver resolver = getResourceResolver(request);
         // assume all is fine if the path resolves to a resource
-        if (resolver != null && !ResourceUtil.isNonExistingResource(resolver.resolve(request, path))) {
+        if (resolver != null && resourceExists(request, resolver, redirect.getPath())) {
             return true;
         }
 
         // not resolving to a resource, check for illegal characters
-        final Pattern illegal = Pattern.compile("[<>'\"]");
-        if (illegal.matcher(path).find()) {
+        if (redirect.isUnsafePath()) {
             getLog().warn("isRedirectValid: Redirect target '{}' must not contain any of <>'\"", target);
             return false;
         }
@@ -1002,12 +927,87 @@ public final class AuthUtil {
         return true;
     }
 
+    /**
+     * Returns <code>true</code> if the <code>path</code> resolves to an
+     * existing resource. The decision is delegated to the function provided
+     * by the authenticator as a request attribute, which caches it.
+     */
+    private static boolean resourceExists(
+            final HttpServletRequest request, final ResourceResolver resolver, final String path) {
+        final BiPredicate<HttpServletRequest, String> exists =
+                getResourceExists(request.getAttribute(AuthConstants.ATTR_REQUEST_RESOURCE_EXISTS));
+        if (exists != null) {
+            return exists.test(request, path);
+        }
+        return !ResourceUtil.isNonExistingResource(resolver.resolve(request, path));
+    }
+
+    /**
+     * Returns <code>true</code> if the <code>path</code> resolves to an
+     * existing resource. The decision is delegated to the function provided
+     * by the authenticator as a request attribute, which caches it.
+     */
+    @SuppressWarnings("deprecation")
+    private static boolean resourceExists(
+            final javax.servlet.http.HttpServletRequest request, final ResourceResolver resolver, final String path) {
+        final BiPredicate<HttpServletRequest, String> exists =
+                getResourceExists(request.getAttribute(AuthConstants.ATTR_REQUEST_RESOURCE_EXISTS));
+        if (exists != null) {
+            return exists.test(JavaxToJakartaRequestWrapper.toJakartaRequest(request), path);
+        }
+        return !ResourceUtil.isNonExistingResource(resolver.resolve(request, path));
+    }
+
+    /**
+     * Returns the function set as the
+     * {@link AuthConstants#ATTR_REQUEST_RESOURCE_EXISTS} request attribute or
+     * <code>null</code> if the attribute is not set to a function.
+     */
+    @SuppressWarnings("unchecked")
+    private static BiPredicate<HttpServletRequest, String> getResourceExists(final Object attribute) {
+        return attribute instanceof BiPredicate ? (BiPredicate<HttpServletRequest, String>) attribute : null;
+    }
+
+    /**
+     * Returns <code>true</code> if the scanned redirect target passed all
+     * syntactic checks. Otherwise a warning is logged for the first failed
+     * check and <code>false</code> is returned.
+     */
+    private static boolean isSyntacticallyValid(
+            final RedirectTarget redirect, final String target, final String ctxPath) {
+        switch (redirect.getStatus()) {
+            case RedirectTarget.ILLEGAL_CHARACTERS:
+                getLog().warn("isRedirectValid: Redirect target '{}' contains illegal characters", target);
+                return false;
+            case RedirectTarget.URL:
+                getLog().warn("isRedirectValid: Redirect target '{}' must not be an URL", target);
+                return false;
+            case RedirectTarget.NOT_NORMALIZED:
+                getLog().warn("isRedirectValid: Redirect target '{}' is not normalized", target);
+                return false;
+            case RedirectTarget.OUTSIDE_CONTEXT:
+                getLog().warn(
+                                "isRedirectValid: Redirect target '{}' does not start with servlet context path '{}'",
+                                target,
+                                ctxPath);
+                return false;
+            case RedirectTarget.NOT_ABSOLUTE:
+                getLog().warn(
+                                "isRedirectValid: Redirect target '{}' without servlet context path '{}' must be an absolute path",
+                                target,
+                                ctxPath);
+                return false;
+            default:
+                return true;
+        }
+    }
+
     /**
      * Returns the context path from the request or an empty string if the
-     * request is <code>null</code>.
+     * request or its context path is <code>null</code>.
      */
     private static String getContextPath(final HttpServletRequest request) {
-        if (request != null) {
+        if (request != null && request.getContextPath() != null) {
             return request.getContextPath();
         }
         return "";
@@ -1015,10 +1015,10 @@ public final class AuthUtil {
 
     /**
      * Returns the context path from the request or an empty string if the
-     * request is <code>null</code>.
+     * request or its context path is <code>null</code>.
      */
     private static String getContextPath(final javax.servlet.http.HttpServletRequest request) {
-        if (request != null) {
+        if (request != null && request.getContextPath() != null) {
             return request.getContextPath();
         }
         return "";
@@ -18,6 +18,9 @@
  */
 package org.apache.sling.auth.core;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.osgi.annotation.versioning.ProviderType;
@@ -118,6 +121,35 @@ public interface AuthenticationSupport {
      */
     boolean handleSecurity(HttpServletRequest request, HttpServletResponse response);
 
+    /**
+     * Handles security like
+     * {@link #handleSecurity(HttpServletRequest, HttpServletResponse)} but
+     * without blocking the calling thread while
+     * {@link org.apache.sling.auth.core.spi.JakartaAsyncAuthenticationHandler}
+     * services extract credentials.
+     * <p>
+     * To release the container thread, the caller must put the request into
+     * asynchronous mode by calling {@code ServletRequest.startAsync()} before
+     * calling this method and must complete or dispatch the
+     * {@code AsyncContext} once the returned stage completes. If the request
+     * is not in asynchronous mode, the authentication is completed on the
+     * calling thread and the returned stage is already completed.
+     * <p>
+     * The default implementation calls the blocking
+     * {@link #handleSecurity(HttpServletRequest, HttpServletResponse)} method.
+     *
+     * @param request The HTTP request to be authenticated
+     * @param response The HTTP response to send any response to in case of
+     *            problems.
+     * @return A stage completing with {@code true} if authentication succeeded
+     *         and the request attributes are set. If it completes with
+     *         {@code false}, no request attributes are set.
+     * @since 1.8.0
+     */
+    default CompletionStage<Boolean> handleSecurityAsync(HttpServletRequest request, HttpServletResponse response) {
+        return CompletableFuture.completedFuture(handleSecurity(request, response));
+    }
+
     /**
      * Handles security on behalf of a custom OSGi {@code ServletContextHelper}
      * instance, finishing the authentication context established
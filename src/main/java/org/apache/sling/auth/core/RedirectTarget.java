@@ -0,0 +1,243 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.auth.core;
+
+/**
+ * The <code>RedirectTarget</code> is the result of the syntactic validation
+ * of a redirect target as done by the <code>AuthUtil.isRedirectValid</code>
+ * methods.
+ * <p>
+ * All syntactic checks are done in a single pass over the characters of the
+ * target:
+ * <ul>
+ * <li>The characters must be valid in an URI as accepted by
+ * <code>java.net.URI</code>: in the path only unreserved characters, escape
+ * sequences and the characters <code>;:@&amp;=+$,/</code> are allowed, the
+ * query and fragment additionally allow all reserved characters. Non-ASCII
+ * characters are allowed unless they are control or space characters.</li>
+ * <li>The target must not contain the sequence <code>://</code></li>
+ * <li>The target must be normalized: it must not contain consecutive slashes
+ * and no segment may consist of a single or a double dot.</li>
+ * <li>The target must start with the servlet context path and continue with
+ * a slash unless it is the context path itself.</li>
+ * </ul>
+ * Targets with an URI scheme or authority are always rejected, though the
+ * reason reported may differ from what <code>java.net.URI</code> reports.
+ * <p>
+ * The scan also records the end of the path and whether the path contains
+ * any of the characters <code>&lt;</code>, <code>&gt;</code>, <code>'</code>,
+ * or <code>"</code> which are checked if the target does not resolve to an
+ * existing resource.
+ */
+final class RedirectTarget {
+
+    /** The target passed all syntactic checks */
+    static final int VALID = 0;
+
+    /** The target contains characters not valid in an URI */
+    static final int ILLEGAL_CHARACTERS = 1;
+
+    /** The target is an URL with scheme and host */
+    static final int URL = 2;
+
+    /** The target contains consecutive slashes or dot segments */
+    static final int NOT_NORMALIZED = 3;
+
+    /** The target does not start with the servlet context path */
+    static final int OUTSIDE_CONTEXT = 4;
+
+    /** The target without the servlet context path is not absolute */
+    static final int NOT_ABSOLUTE = 5;
+
+    /** Character class: valid in the path of an URI */
+    private static final byte PATH = 1;
+
+    /** Character class: valid in the query or fragment of an URI */
+    private static final byte URIC = 2;
+
+    /** Character class: hexadecimal digit of an escape sequence */
+    private static final byte HEX = 4;
+
+    /** Character class: not allowed in the path of a non-existing resource */
+    private static final byte UNSAFE = 8;
+
+    /** Character classes of the US-ASCII characters */
+    private static final byte[] CLASSES = new byte[128];
+
+    static {
+        final String unreserved = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789-_.!~*'()";
+        classify(unreserved, PATH | URIC);
+        classify(";:@&=+$,/", PATH | URIC);
+        classify("?[]", URIC);
+        classify("0123456789abcdefABCDEF", HEX);
+        classify("<>'\"", UNSAFE);
+    }
+
+    private static void classify(final String chars, final int charClass) {
+        for (int i = 0; i < chars.length(); i++) {
+            CLASSES[chars.charAt(i)] |= (byte) charClass;
+        }
+    }
+
+    private final String target;
+
+    private final int status;
+
+    private final int pathStart;
+
+    private final int pathEnd;
+
+    private final boolean unsafePath;
+
+    private RedirectTarget(
+            final String target,
+            final int status,
+            final int pathStart,
+            final int pathEnd,
+            final boolean unsafePath) {
+        this.target = target;
+        this.status = status;
+        this.pathStart = pathStart;
+        this.pathEnd = pathEnd;
+        this.unsafePath = unsafePath;
+    }
+
+    /**
+     * Scans the <code>target</code>
+     *
+     * @param target The redirect target, must not be <code>null</code> or
+     *            empty
+     * @param ctxPath The servlet context path, must not be <code>null</code>
+     * @return The result of the scan
+     */
+    static RedirectTarget scan(final String target, final String ctxPath) {
+        final int length = target.length();
+        final int ctxLength = ctxPath.length();
+
+        boolean illegal = false;
+        boolean url = false;
+        boolean unnormalized = false;
+        boolean unsafe = false;
+
+        // 0: path, 1: query, 2: fragment
+        int section = 0;
+        int pathEnd = -1;
+        int segmentStart = -1;
+
+        for (int i = 0; i < length && !illegal; i++) {
+            final char c = target.charAt(i);
+
+            if (c == '/') {
+                if (segmentStart >= 0) {
+                    final int segment = i - segmentStart;
+                    if (segment == 0) {
+                        // consecutive slashes, an URL if preceded by a colon
+                        unnormalized = true;
+                        url |= i >= 2 && target.charAt(i - 2) == ':';
+                    } else if (isDotSegment(target, segmentStart, segment)) {
+                        unnormalized = true;
+                    }
+                }
+                segmentStart = i + 1;
+            }
+
+            if (c == '?' && pathEnd < 0 && i >= ctxLength) {
+                pathEnd = i;
+            }
+
+            if (c == '?' && section == 0) {
+                section = 1;
+                continue;
+            } else if (c == '#' && section < 2) {
+                section = 2;
+                continue;
+            }
+
+            if (c < 128) {
+                final byte charClass = CLASSES[c];
+                if (c == '%') {
+                    illegal = i + 2 >= length || !isHex(target.charAt(i + 1)) || !isHex(target.charAt(i + 2));
+                } else {
+                    illegal = (charClass & (section == 0 ? PATH : URIC)) == 0;
+                }
+                if ((charClass & UNSAFE) != 0 && pathEnd < 0 && i >= ctxLength) {
+                    unsafe = true;
+                }
+            } else {
+                illegal = Character.isSpaceChar(c) || Character.isISOControl(c);
+            }
+        }
+
+        if (!illegal && segmentStart >= 0 && isDotSegment(target, segmentStart, length - segmentStart)) {
+            unnormalized = true;
+        }
+
+        final int status;
+        if (illegal) {
+            status = ILLEGAL_CHARACTERS;
+        } else if (url) {
+            status = URL;
+        } else if (unnormalized) {
+            status = NOT_NORMALIZED;
+        } else if (!target.startsWith(ctxPath)) {
+            status = OUTSIDE_CONTEXT;
+        } else if (length > ctxLength && target.charAt(ctxLength) != '/') {
+            status = NOT_ABSOLUTE;
+        } else {
+            status = VALID;
+        }
+
+        return new RedirectTarget(target, status, ctxLength, pathEnd < 0 ? length : pathEnd, unsafe);
+    }
+
+    private static boolean isHex(final char c) {
+        return c < 128 && (CLASSES[c] & HEX) != 0;
+    }
+
+    private static boolean isDotSegment(final String target, final int start, final int length) {
+        return (length == 1 && target.charAt(start) == '.')
+                || (length == 2 && target.charAt(start) == '.' && target.charAt(start + 1) == '.');
+    }
+
+    /** Returns the result of the syntactic checks */
+    int getStatus() {
+        return this.status;
+    }
+
+    /** Returns <code>true</code> if the target is the servlet context path */
+    boolean isContextRoot() {
+        return this.pathStart == this.target.length();
+    }
+
+    /**
+     * Returns the path of the target without the servlet context path and
+     * without the query
+     */
+    String getPath() {
+        return this.target.substring(this.pathStart, this.pathEnd);
+    }
+
+    /**
+     * Returns <code>true</code> if the path contains any of the characters
+     * <code>&lt;</code>, <code>&gt;</code>, <code>'</code>, or <code>"</code>
+     */
+    boolean isUnsafePath() {
+        return this.unsafePath;
+    }
+}
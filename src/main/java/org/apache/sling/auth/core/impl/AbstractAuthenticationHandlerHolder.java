@@ -19,6 +19,8 @@
 package org.apache.sling.auth.core.impl;
 
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
@@ -60,6 +62,32 @@ public abstract class AbstractAuthenticationHandlerHolder extends PathBasedHolde
         }
     }
 
+    /**
+     * Sets the {@link JakartaAuthenticationHandler#PATH_PROPERTY} request attribute to
+     * this {@link PathBasedHolder#fullPath} and calls the
+     * {@link #doExtractCredentialsAsync(HttpServletRequest, HttpServletResponse)}
+     * to have the credentials extracted from the request. The request
+     * attribute is reset once the returned stage completes.
+     *
+     * @param request the current request
+     * @param response the current response
+     * @return the result of calling
+     *          {@link #doExtractCredentialsAsync(HttpServletRequest, HttpServletResponse)}
+     */
+    public final CompletionStage<AuthenticationInfo> extractCredentialsAsync(
+            HttpServletRequest request, HttpServletResponse response) {
+
+        final Object oldPathAttr = setPath(request);
+        final CompletionStage<AuthenticationInfo> result;
+        try {
+            result = doExtractCredentialsAsync(request, response);
+        } catch (final RuntimeException re) {
+            resetPath(request, oldPathAttr);
+            throw re;
+        }
+        return result.whenComplete((info, error) -> resetPath(request, oldPathAttr));
+    }
+
     /**
      * Sets the {@link JakartaAuthenticationHandler#PATH_PROPERTY} request attribute to
      * this {@link PathBasedHolder#fullPath} and calls the
@@ -121,6 +149,30 @@ public abstract class AbstractAuthenticationHandlerHolder extends PathBasedHolde
     protected abstract AuthenticationInfo doExtractCredentials(
             HttpServletRequest request, HttpServletResponse response);
 
+    /**
+     * Returns <code>true</code> if the held authentication handler extracts
+     * credentials asynchronously. This base implementation returns
+     * <code>false</code>.
+     */
+    protected boolean isAsync() {
+        return false;
+    }
+
+    /**
+     * Calls the actual authentication handler to extract the credentials from
+     * the request without blocking. This base implementation calls
+     * {@link #doExtractCredentials(HttpServletRequest, HttpServletResponse)}.
+     *
+     * @param request The current request
+     * @param response The current response
+     * @return as returned from the called authentication handler
+     * @see #extractCredentialsAsync(HttpServletRequest, HttpServletResponse)
+     */
+    protected CompletionStage<AuthenticationInfo> doExtractCredentialsAsync(
+            HttpServletRequest request, HttpServletResponse response) {
+        return CompletableFuture.completedFuture(doExtractCredentials(request, response));
+    }
+
     /**
      * Calls the actual authentication handler to request the credentials from
      * the client.
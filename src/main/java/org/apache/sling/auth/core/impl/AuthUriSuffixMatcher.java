@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.auth.core.impl;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The <code>AuthUriSuffixMatcher</code> checks whether a request URI ends
+ * with any of a set of configured suffixes.
+ * <p>
+ * The suffixes are compiled into a trie of their reversed characters, such
+ * that a URI is checked by walking it backwards from its last character. A
+ * check thus costs at most the length of the longest suffix regardless of
+ * the number of configured suffixes.
+ * <p>
+ * Instances are immutable and may be used concurrently.
+ */
+final class AuthUriSuffixMatcher {
+
+    /** Matcher which never matches, used if no suffixes are configured */
+    static final AuthUriSuffixMatcher EMPTY = new AuthUriSuffixMatcher(new Node(new char[0], new Node[0], false));
+
+    private final Node root;
+
+    private AuthUriSuffixMatcher(final Node root) {
+        this.root = root;
+    }
+
+    /**
+     * Compiles the suffixes into a matcher.
+     *
+     * @param suffixes The suffixes to match, may be <code>null</code>.
+     *            <code>null</code> entries are ignored.
+     * @return The matcher for the suffixes
+     */
+    static AuthUriSuffixMatcher compile(final String[] suffixes) {
+        if (suffixes == null) {
+            return EMPTY;
+        }
+
+        final Builder root = new Builder();
+        boolean hasSuffix = false;
+        for (final String suffix : suffixes) {
+            if (suffix != null) {
+                Builder node = root;
+                for (int i = suffix.length() - 1; i >= 0; i--) {
+                    node = node.children.computeIfAbsent(suffix.charAt(i), c -> new Builder());
+                }
+                node.terminal = true;
+                hasSuffix = true;
+            }
+        }
+
+        return hasSuffix ? new AuthUriSuffixMatcher(root.build()) : EMPTY;
+    }
+
+    /**
+     * Returns <code>true</code> if the <code>uri</code> ends with any of the
+     * suffixes of this matcher.
+     *
+     * @param uri The URI to check, may be <code>null</code>
+     */
+    boolean matches(final String uri) {
+        Node node = this.root;
+        if (node.terminal) {
+            return true;
+        }
+        if (uri == null) {
+            return false;
+        }
+        for (int i = uri.length() - 1; i >= 0; i--) {
+            node = node.child(uri.charAt(i));
+            if (node == null) {
+                return false;
+            }
+            if (node.terminal) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Immutable node of the compiled trie with its children sorted by label */
+    private static final class Node {
+
+        private final char[] labels;
+
+        private final Node[] children;
+
+        private final boolean terminal;
+
+        Node(final char[] labels, final Node[] children, final boolean terminal) {
+            this.labels = labels;
+            this.children = children;
+            this.terminal = terminal;
+        }
+
+        Node child(final char c) {
+            // most nodes have a single child
+            if (this.labels.length == 1) {
+                return this.labels[0] == c ? this.children[0] : null;
+            }
+            final int index = Arrays.binarySearch(this.labels, c);
+            return index >= 0 ? this.children[index] : null;
+        }
+    }
+
+    /** Mutable node used while compiling the suffixes */
+    private static final class Builder {
+
+        private final Map<Character, Builder> children = new TreeMap<>();
+
+        private boolean terminal;
+
+        Node build() {
+            final char[] labels = new char[this.children.size()];
+            final Node[] nodes = new Node[this.children.size()];
+            int i = 0;
+            for (final Map.Entry<Character, Builder> entry : this.children.entrySet()) {
+                labels[i] = entry.getKey();
+                nodes[i] = entry.getValue().build();
+                i++;
+            }
+            return new Node(labels, nodes, this.terminal);
+        }
+    }
+}
@@ -20,12 +20,15 @@ package org.apache.sling.auth.core.impl;
 
 import java.io.IOException;
 import java.util.Objects;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Predicate;
 
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.apache.sling.auth.core.AuthConstants;
 import org.apache.sling.auth.core.AuthUtil;
 import org.apache.sling.auth.core.spi.AuthenticationInfo;
+import org.apache.sling.auth.core.spi.JakartaAsyncAuthenticationHandler;
 import org.apache.sling.auth.core.spi.JakartaAuthenticationFeedbackHandler;
 import org.apache.sling.auth.core.spi.JakartaAuthenticationHandler;
 import org.osgi.framework.ServiceReference;
@@ -49,12 +52,23 @@ final class AuthenticationHandlerHolder extends AbstractAuthenticationHandlerHol
     // whether requestCredentials only for browsers
     private final boolean browserOnlyRequestCredentials;
 
+    // decides whether a request is sent by a browser
+    private final Predicate<HttpServletRequest> browserRequest;
+
     private Logger logger = LoggerFactory.getLogger(this.getClass());
 
     AuthenticationHandlerHolder(
             final String fullPath,
             final JakartaAuthenticationHandler handler,
             final ServiceReference<?> serviceReference) {
+        this(fullPath, handler, serviceReference, new UserAgentClassifier(null, null, 0)::isBrowserRequest);
+    }
+
+    AuthenticationHandlerHolder(
+            final String fullPath,
+            final JakartaAuthenticationHandler handler,
+            final ServiceReference<?> serviceReference,
+            final Predicate<HttpServletRequest> browserRequest) {
         super(fullPath, serviceReference);
 
         final String browserOnly = Converters.standardConverter()
@@ -68,6 +82,7 @@ final class AuthenticationHandlerHolder extends AbstractAuthenticationHandlerHol
                 .to(String.class);
         this.browserOnlyRequestCredentials =
                 "true".equalsIgnoreCase(browserOnly) || "yes".equalsIgnoreCase(browserOnly);
+        this.browserRequest = browserRequest;
     }
 
     AuthenticationHandlerHolder(
@@ -77,6 +92,14 @@ final class AuthenticationHandlerHolder extends AbstractAuthenticationHandlerHol
         this(fullPath, AuthenticationHandlerWrapper.wrap(handler), serviceReference);
     }
 
+    AuthenticationHandlerHolder(
+            final String fullPath,
+            @SuppressWarnings("deprecation") final org.apache.sling.auth.core.spi.AuthenticationHandler handler,
+            final ServiceReference<?> serviceReference,
+            final Predicate<HttpServletRequest> browserRequest) {
+        this(fullPath, AuthenticationHandlerWrapper.wrap(handler), serviceReference, browserRequest);
+    }
+
     @Override
     protected JakartaAuthenticationFeedbackHandler getFeedbackHandler() {
         if (handler instanceof JakartaAuthenticationFeedbackHandler) {
@@ -91,6 +114,21 @@ final class AuthenticationHandlerHolder extends AbstractAuthenticationHandlerHol
         return handler.extractCredentials(request, response);
     }
 
+    @Override
+    protected boolean isAsync() {
+        return handler instanceof JakartaAsyncAuthenticationHandler;
+    }
+
+    @Override
+    protected CompletionStage<AuthenticationInfo> doExtractCredentialsAsync(
+            HttpServletRequest request, HttpServletResponse response) {
+        if (handler instanceof JakartaAsyncAuthenticationHandler) {
+            this.logDebugMessage("doExtractCredentialsAsync", request);
+            return ((JakartaAsyncAuthenticationHandler) handler).extractCredentialsAsync(request, response);
+        }
+        return super.doExtractCredentialsAsync(request, response);
+    }
+
     @Override
     public boolean doRequestCredentials(HttpServletRequest request, HttpServletResponse response) throws IOException {
 
@@ -158,7 +196,7 @@ final class AuthenticationHandlerHolder extends AbstractAuthenticationHandlerHol
      */
     private boolean doesRequestCredentials(final HttpServletRequest request) {
 
-        if (browserOnlyRequestCredentials && !AuthUtil.isBrowserRequest(request)) {
+        if (browserOnlyRequestCredentials && !browserRequest.test(request)) {
             return false;
         }
 
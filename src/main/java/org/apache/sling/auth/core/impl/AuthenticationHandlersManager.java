@@ -23,14 +23,22 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Function;
 
+import jakarta.servlet.http.HttpServletRequest;
 import org.apache.sling.auth.core.impl.engine.EngineAuthenticationHandlerHolder;
 import org.apache.sling.auth.core.spi.JakartaAuthenticationHandler;
 import org.osgi.framework.Constants;
 import org.osgi.framework.ServiceReference;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
 import org.osgi.service.component.annotations.Modified;
 import org.osgi.service.component.annotations.Reference;
 import org.osgi.service.component.annotations.ReferenceCardinality;
@@ -45,8 +53,38 @@ public class AuthenticationHandlersManager extends PathBasedHolderCache<Abstract
     /** Handler map for authentication handlers */
     private final Map<String, List<AbstractAuthenticationHandlerHolder>> handlerMap = new ConcurrentHashMap<>();
 
+    /** Name of the thread applying buffered registrations */
+    private static final String THREAD_NAME = "sling-auth-handlers-registration";
+
+    /** Factor limiting the delay of a burst of registrations */
+    private static final int MAX_QUIET_PERIOD_FACTOR = 10;
+
     private volatile Boolean httpSupport;
 
+    /** Classifier deciding whether requests are sent by browsers */
+    private volatile UserAgentClassifier userAgentClassifier;
+
+    /** Lock guarding the buffered registrations */
+    private final Lock pendingLock = new ReentrantLock();
+
+    /** Holders of registered handlers not yet applied to the cache */
+    private final List<AbstractAuthenticationHandlerHolder> pendingHolders = new ArrayList<>();
+
+    /** Time in milliseconds without registrations before the buffered holders are applied */
+    private long quietPeriod;
+
+    /** Scheduler applying the buffered holders, <code>null</code> if registrations are not buffered */
+    private ScheduledExecutorService scheduler;
+
+    /** Whether applying the buffered holders is scheduled */
+    private boolean applyScheduled;
+
+    /** Time in nanoseconds of the first buffered registration */
+    private long firstPending;
+
+    /** Time in nanoseconds of the last buffered registration */
+    private long lastPending;
+
     @Activate
     public AuthenticationHandlersManager(final SlingAuthenticator.Config config) {
         this.modified(config);
@@ -60,6 +98,56 @@ public class AuthenticationHandlersManager extends PathBasedHolderCache<Abstract
         } else {
             this.httpSupport = SlingAuthenticator.HTTP_AUTH_ENABLED.equals(http);
         }
+        this.userAgentClassifier = new UserAgentClassifier(
+                config.auth_browser_agents(), config.auth_non_browser_agents(), config.auth_user_agent_cache_size());
+
+        this.pendingLock.lock();
+        try {
+            this.quietPeriod = config.auth_handler_quiet_period();
+            if (this.quietPeriod > 0 && this.scheduler == null) {
+                final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+                    final Thread thread = new Thread(runnable, THREAD_NAME);
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+                this.scheduler = executor;
+            } else if (this.quietPeriod <= 0) {
+                this.stopBuffering();
+            }
+        } finally {
+            this.pendingLock.unlock();
+        }
+    }
+
+    @Deactivate
+    public void deactivate() {
+        this.pendingLock.lock();
+        try {
+            this.stopBuffering();
+        } finally {
+            this.pendingLock.unlock();
+        }
+    }
+
+    /**
+     * Apply the buffered holders and stop buffering registrations, must be
+     * called with the {@link #pendingLock} held.
+     */
+    private void stopBuffering() {
+        this.applyPending();
+        if (this.scheduler != null) {
+            this.scheduler.shutdown();
+            this.scheduler = null;
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if the request is considered to be sent by a
+     * browser, used by handlers requesting credentials only from browsers
+     */
+    private boolean isBrowserRequest(final HttpServletRequest request) {
+        return this.userAgentClassifier.isBrowserRequest(request);
     }
 
     /**
@@ -92,7 +180,8 @@ public class AuthenticationHandlersManager extends PathBasedHolderCache<Abstract
         final String[] paths = Converters.standardConverter()
                 .convert(ref.getProperty(JakartaAuthenticationHandler.PATH_PROPERTY))
                 .to(String[].class);
-        internalBindAuthHandler(paths, id, path -> new AuthenticationHandlerHolder(path, handler, ref));
+        internalBindAuthHandler(
+                paths, id, path -> new AuthenticationHandlerHolder(path, handler, ref, this::isBrowserRequest));
     }
 
     /**
@@ -101,9 +190,14 @@ public class AuthenticationHandlersManager extends PathBasedHolderCache<Abstract
      * @param handler The handler
      */
     @SuppressWarnings("unused")
-    private void Jakarta(final JakartaAuthenticationHandler handler, final ServiceReference<Object> ref) {
-        unbindJakartaAuthHandler(ref);
-        bindJakartaAuthHandler(handler, ref);
+    private void updatedJakartaAuthHandler(
+            final JakartaAuthenticationHandler handler, final ServiceReference<Object> ref) {
+        final String id = "A".concat(ref.getProperty(Constants.SERVICE_ID).toString());
+        final String[] paths = Converters.standardConverter()
+                .convert(ref.getProperty(JakartaAuthenticationHandler.PATH_PROPERTY))
+                .to(String[].class);
+        internalUpdateAuthHandler(
+                paths, id, path -> new AuthenticationHandlerHolder(path, handler, ref, this::isBrowserRequest));
     }
 
     /**
@@ -128,7 +222,8 @@ public class AuthenticationHandlersManager extends PathBasedHolderCache<Abstract
         final String[] paths = Converters.standardConverter()
                 .convert(ref.getProperty(JakartaAuthenticationHandler.PATH_PROPERTY))
                 .to(String[].class);
-        internalBindAuthHandler(paths, id, path -> new AuthenticationHandlerHolder(path, handler, ref));
+        internalBindAuthHandler(
+                paths, id, path -> new AuthenticationHandlerHolder(path, handler, ref, this::isBrowserRequest));
     }
 
     /**
@@ -140,8 +235,12 @@ public class AuthenticationHandlersManager extends PathBasedHolderCache<Abstract
     private void updatedAuthHandler(
             @SuppressWarnings("deprecation") final org.apache.sling.auth.core.spi.AuthenticationHandler handler,
             final ServiceReference<Object> ref) {
-        unbindAuthHandler(ref);
-        bindAuthHandler(handler, ref);
+        final String id = "A".concat(ref.getProperty(Constants.SERVICE_ID).toString());
+        final String[] paths = Converters.standardConverter()
+                .convert(ref.getProperty(JakartaAuthenticationHandler.PATH_PROPERTY))
+                .to(String[].class);
+        internalUpdateAuthHandler(
+                paths, id, path -> new AuthenticationHandlerHolder(path, handler, ref, this::isBrowserRequest));
     }
 
     /**
@@ -180,8 +279,11 @@ public class AuthenticationHandlersManager extends PathBasedHolderCache<Abstract
     @Deprecated
     private void updatedEngineAuthHandler(
             final org.apache.sling.engine.auth.AuthenticationHandler handler, final ServiceReference<Object> ref) {
-        unbindEngineAuthHandler(ref);
-        bindEngineAuthHandler(handler, ref);
+        final String id = "E".concat(ref.getProperty(Constants.SERVICE_ID).toString());
+        final String[] paths = Converters.standardConverter()
+                .convert(ref.getProperty(JakartaAuthenticationHandler.PATH_PROPERTY))
+                .to(String[].class);
+        internalUpdateAuthHandler(paths, id, path -> new EngineAuthenticationHandlerHolder(path, handler, ref));
     }
 
     /**
@@ -203,25 +305,50 @@ public class AuthenticationHandlersManager extends PathBasedHolderCache<Abstract
             final String[] paths,
             final String id,
             final Function<String, AbstractAuthenticationHandlerHolder> createFunction) {
-        if (paths != null && paths.length > 0) {
+        final List<AbstractAuthenticationHandlerHolder> holderList = createHolders(paths, createFunction);
+        // register the holders
+        if (!holderList.isEmpty()) {
+            this.registerHolders(holderList);
+
+            // keep a copy of them for unregistration later
+            handlerMap.put(id, holderList);
+        }
+    }
+
+    /**
+     * Update an authentication handler, replacing its holders in a single
+     * update of the cache without buffering.
+     * @param paths The paths
+     * @param id Unique id
+     * @param createFunction Creation callback
+     */
+    private void internalUpdateAuthHandler(
+            final String[] paths,
+            final String id,
+            final Function<String, AbstractAuthenticationHandlerHolder> createFunction) {
+        final List<AbstractAuthenticationHandlerHolder> holderList = createHolders(paths, createFunction);
+        final List<AbstractAuthenticationHandlerHolder> oldHolders =
+                holderList.isEmpty() ? handlerMap.remove(id) : handlerMap.put(id, holderList);
+        this.replaceHolders(oldHolders, holderList);
+    }
 
-            // generate the holders
-            ArrayList<AbstractAuthenticationHandlerHolder> holderList = new ArrayList<>();
-            for (String path : paths) {
+    /**
+     * Create the holders for the non empty paths
+     * @param paths The paths
+     * @param createFunction Creation callback
+     * @return The holders
+     */
+    private static List<AbstractAuthenticationHandlerHolder> createHolders(
+            final String[] paths, final Function<String, AbstractAuthenticationHandlerHolder> createFunction) {
+        final List<AbstractAuthenticationHandlerHolder> holderList = new ArrayList<>();
+        if (paths != null) {
+            for (final String path : paths) {
                 if (path != null && path.length() > 0) {
                     holderList.add(createFunction.apply(path));
                 }
             }
-            // register the holders
-            if (!holderList.isEmpty()) {
-                for (final AbstractAuthenticationHandlerHolder holder : holderList) {
-                    this.addHolder(holder);
-                }
-
-                // keep a copy of them for unregistration later
-                handlerMap.put(id, holderList);
-            }
         }
+        return holderList;
     }
 
     /**
@@ -232,9 +359,134 @@ public class AuthenticationHandlersManager extends PathBasedHolderCache<Abstract
         final List<AbstractAuthenticationHandlerHolder> holders = handlerMap.remove(id);
 
         if (holders != null) {
-            for (AbstractAuthenticationHandlerHolder holder : holders) {
-                this.removeHolder(holder);
+            this.unregisterHolders(holders);
+        }
+    }
+
+    /**
+     * Register holders. If a quiet period is configured, the holders are
+     * buffered and applied together with the holders of other handlers
+     * registered until no handler was registered for the quiet period.
+     * Until then requests are handled with the previously registered
+     * handlers.
+     * @param holders The holders
+     */
+    private void registerHolders(final List<AbstractAuthenticationHandlerHolder> holders) {
+        this.pendingLock.lock();
+        try {
+            if (this.scheduler == null) {
+                this.applyChanges(null, holders);
+                return;
+            }
+            this.pendingHolders.addAll(holders);
+            this.lastPending = System.nanoTime();
+            if (!this.applyScheduled) {
+                this.applyScheduled = true;
+                this.firstPending = this.lastPending;
+                this.scheduleApply(this.quietPeriod);
+            }
+        } finally {
+            this.pendingLock.unlock();
+        }
+    }
+
+    /**
+     * Unregister holders immediately, holders still buffered are dropped
+     * from the buffer.
+     * @param holders The holders
+     */
+    private void unregisterHolders(final List<AbstractAuthenticationHandlerHolder> holders) {
+        this.pendingLock.lock();
+        try {
+            final List<AbstractAuthenticationHandlerHolder> registered = new ArrayList<>(holders);
+            if (!this.pendingHolders.isEmpty()) {
+                registered.removeIf(this.pendingHolders::remove);
+            }
+            if (!registered.isEmpty()) {
+                this.applyChanges(registered, null);
+            }
+        } finally {
+            this.pendingLock.unlock();
+        }
+    }
+
+    /**
+     * Replace the holders of an updated handler. If the handler is
+     * registered, the old holders are replaced by the new ones in a single
+     * update of the cache. If the handler is still buffered, the new holders
+     * are buffered instead of the old ones.
+     * @param oldHolders The holders to replace, might be <code>null</code>
+     * @param newHolders The new holders
+     */
+    private void replaceHolders(
+            final List<AbstractAuthenticationHandlerHolder> oldHolders,
+            final List<AbstractAuthenticationHandlerHolder> newHolders) {
+        this.pendingLock.lock();
+        try {
+            final List<AbstractAuthenticationHandlerHolder> registered =
+                    oldHolders == null ? new ArrayList<>() : new ArrayList<>(oldHolders);
+            boolean pending = false;
+            if (!this.pendingHolders.isEmpty()) {
+                pending = registered.removeIf(this.pendingHolders::remove);
+            }
+            if (pending) {
+                this.pendingHolders.addAll(newHolders);
+                if (!registered.isEmpty()) {
+                    this.applyChanges(registered, null);
+                }
+            } else if (!registered.isEmpty() || !newHolders.isEmpty()) {
+                this.applyChanges(registered, newHolders);
+            }
+        } finally {
+            this.pendingLock.unlock();
+        }
+    }
+
+    /**
+     * Schedule applying the buffered holders, must be called with the
+     * {@link #pendingLock} held.
+     */
+    private void scheduleApply(final long delay) {
+        try {
+            this.scheduler.schedule(this::applyIfQuiet, delay, TimeUnit.MILLISECONDS);
+        } catch (final RejectedExecutionException ree) {
+            this.applyPending();
+        }
+    }
+
+    /**
+     * Apply the buffered holders once no handler was registered for the
+     * quiet period or the burst of registrations has lasted too long.
+     */
+    private void applyIfQuiet() {
+        this.pendingLock.lock();
+        try {
+            if (!this.applyScheduled || this.scheduler == null) {
+                return;
             }
+            final long quiet = TimeUnit.MILLISECONDS.toNanos(this.quietPeriod);
+            final long now = System.nanoTime();
+            final long remaining = Math.min(
+                    this.lastPending + quiet - now, this.firstPending + MAX_QUIET_PERIOD_FACTOR * quiet - now);
+            if (remaining > 0) {
+                this.scheduleApply(TimeUnit.NANOSECONDS.toMillis(remaining) + 1);
+            } else {
+                this.applyPending();
+            }
+        } finally {
+            this.pendingLock.unlock();
+        }
+    }
+
+    /**
+     * Apply the buffered holders in a single update of the cache, must be
+     * called with the {@link #pendingLock} held.
+     */
+    private void applyPending() {
+        this.applyScheduled = false;
+        if (!this.pendingHolders.isEmpty()) {
+            this.applyChanges(null, new ArrayList<>(this.pendingHolders));
+            this.pendingHolders.clear();
         }
     }
 }
@@ -18,23 +18,44 @@
  */
 package org.apache.sling.auth.core.impl;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.sling.api.SlingConstants;
 import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.api.resource.ResourceResolverFactory;
 import org.apache.sling.api.resource.mapping.ResourceMapper;
 import org.apache.sling.auth.core.AuthConstants;
+import org.apache.sling.commons.metrics.Gauge;
+import org.apache.sling.commons.metrics.MetricsService;
+import org.apache.sling.commons.metrics.Timer;
 import org.osgi.framework.AllServiceListener;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
@@ -42,11 +63,15 @@ import org.osgi.framework.Constants;
 import org.osgi.framework.InvalidSyntaxException;
 import org.osgi.framework.ServiceEvent;
 import org.osgi.framework.ServiceReference;
+import org.osgi.framework.ServiceRegistration;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.Deactivate;
 import org.osgi.service.component.annotations.Modified;
 import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.annotations.ReferenceCardinality;
+import org.osgi.service.component.annotations.ReferencePolicy;
+import org.osgi.service.component.annotations.ReferencePolicyOption;
 import org.osgi.service.event.Event;
 import org.osgi.service.event.EventConstants;
 import org.osgi.service.event.EventHandler;
@@ -70,12 +95,30 @@ public class AuthenticationRequirementsManager extends PathBasedHolderCache<Auth
     private static final String FILTER_EXPR =
             "(".concat(AuthConstants.AUTH_REQUIREMENTS).concat("=*)");
 
-    /** Fake service id to indicate an update of a mapping */
+    /** Fake service id to indicate an update of the mappings */
     private static final Long UPDATE = 0L;
 
     /** Fake service id to indicate clearing the processing queue */
     private static final Long CLEAR = -1L;
 
+    static final String QUEUE_SIZE_GAUGE_NAME = "sling.auth.core.requirements.queue.size";
+    static final String QUEUE_AGE_GAUGE_NAME = "sling.auth.core.requirements.queue.age";
+    static final String PROCESSED_GAUGE_NAME = "sling.auth.core.requirements.processed";
+    static final String TASK_WAIT_TIMER_NAME = "sling.auth.core.requirements.task.wait.timer";
+    static final String TASK_TIMER_NAME = "sling.auth.core.requirements.task.timer";
+
+    /** Recalculate mappings on the background thread */
+    static final String EXECUTOR_SINGLE = "single";
+
+    /** Recalculate mappings on a bounded pool of threads */
+    static final String EXECUTOR_POOL = "pool";
+
+    /** Name of the background thread processing the queue */
+    private static final String QUEUE_THREAD_NAME = "sling-auth-requirements-queue";
+
+    /** Maximum number of actions whose changes are applied to the cache at once */
+    private static final int MAX_BATCH_SIZE = 100;
+
     /** Logger */
     private final Logger logger = LoggerFactory.getLogger(AuthenticationRequirementsManager.class);
 
@@ -88,8 +131,15 @@ public class AuthenticationRequirementsManager extends PathBasedHolderCache<Auth
     /** Cache for registered holders for an auth requirement */
     private final Map<Long, List<AuthenticationRequirementHolder>> props = new ConcurrentHashMap<>();
 
-    /** Processing queue for changes */
-    private final Map<Long, Action> processingQueue = new LinkedHashMap<>();
+    /**
+     * Processing queues for changes by priority, see {@link ActionType#priority}.
+     * A service has at most one action in all queues.
+     */
+    private final List<Map<Long, Action>> processingQueues = List.of(
+            new LinkedHashMap<>(), new LinkedHashMap<>(), new LinkedHashMap<>());
+
+    /** Lock guarding the processing queue */
+    private final Lock processingQueueLock = new ReentrantLock();
 
     /** Executor for the processing queue */
     private final Executor executor;
@@ -100,6 +150,83 @@ public class AuthenticationRequirementsManager extends PathBasedHolderCache<Auth
     /** Own bundle id */
     private final long bundleId;
 
+    /** Cache of redirect target decisions, invalidated on mapping changes */
+    private final RedirectTargetCache redirectTargetCache = new RedirectTargetCache();
+
+    /** Prefix of the names of the mapping threads */
+    private static final String MAPPING_THREAD_NAME_PREFIX = "sling-auth-requirements-mapping-";
+
+    /** Name of the snapshot file in the bundle data area */
+    private static final String SNAPSHOT_FILE_NAME = "auth-requirements.snapshot";
+
+    /** Factor limiting the delay of a burst of mapping changes */
+    private static final int MAX_DEBOUNCE_FACTOR = 10;
+
+    /** Scheduler for debounced mapping updates, <code>null</code> if not supported by the executor */
+    private final ScheduledExecutorService scheduler;
+
+    /** Time in milliseconds without mapping changes before updating the mappings */
+    private volatile long mappingDebounce;
+
+    /** Flag to indicate whether a debounced mapping update is scheduled */
+    private final AtomicBoolean mappingUpdateScheduled = new AtomicBoolean(false);
+
+    /** Time in nanoseconds of the first mapping change of the current burst */
+    private volatile long firstMappingChange;
+
+    /** Time in nanoseconds of the last mapping change of the current burst */
+    private volatile long lastMappingChange;
+
+    /** Whether the executor was created by and is shut down with this manager */
+    private final boolean ownsExecutor;
+
+    /** Kind of executor recalculating mappings */
+    private String mappingExecutor;
+
+    /** Number of partitions recalculating mappings */
+    private volatile int mappingParallelism;
+
+    /** Pool recalculating mappings, <code>null</code> to recalculate on the background thread */
+    private volatile ExecutorService mappingPool;
+
+    /**
+     * Mapped paths by path for the current mapping generation. The map is
+     * replaced by an empty map on each mapping change, so results calculated
+     * concurrently with a change end up in the discarded map.
+     */
+    private volatile Map<String, List<String>> mappingCache = new ConcurrentHashMap<>();
+
+    /** The snapshot file, <code>null</code> if snapshots are disabled */
+    private final File snapshotFile;
+
+    /** Snapshot entries not restored yet by service key */
+    private final Map<String, AuthenticationRequirementsSnapshot.Entry> snapshot;
+
+    /** Flag to indicate whether the requirements changed since the snapshot was written */
+    private final AtomicBoolean snapshotDirty = new AtomicBoolean(false);
+
+    /** Number of actions processed since activation */
+    private final AtomicLong processedCount = new AtomicLong();
+
+    /** Whether a batch of actions is currently processed, guarded by the {@link #processingQueueLock} */
+    private boolean processing;
+
+    /**
+     * Queue time of the oldest action of the batch currently processed,
+     * guarded by the {@link #processingQueueLock}
+     */
+    private long processingQueued;
+
+    /** Metrics service timing the processed actions, optional */
+    @Reference(
+            policy = ReferencePolicy.DYNAMIC,
+            cardinality = ReferenceCardinality.OPTIONAL,
+            policyOption = ReferencePolicyOption.GREEDY)
+    private volatile MetricsService metricsService;
+
+    /** Registrations of the queue gauges */
+    private final List<ServiceRegistration<?>> gaugeRegistrations = new ArrayList<>();
+
     /**
      * Create a new manager
      * @param executor For updating
@@ -110,12 +237,13 @@ public class AuthenticationRequirementsManager extends PathBasedHolderCache<Auth
             final BundleContext context,
             @Reference ResourceResolverFactory factory,
             final SlingAuthenticator.Config config) {
-        this(context, factory, config, Executors.newSingleThreadExecutor());
+        this(context, factory, config, createQueueExecutor(), true);
     }
 
     /**
      * Create a new manager
-     * @param executor For updating
+     * @param executor For updating, if this is a {@link ScheduledExecutorService}
+     *            it is also used to debounce mapping changes
      * @param factory The resource resolver factory
      */
     AuthenticationRequirementsManager(
@@ -123,10 +251,24 @@ public class AuthenticationRequirementsManager extends PathBasedHolderCache<Auth
             final ResourceResolverFactory factory,
             final SlingAuthenticator.Config config,
             final Executor executor) {
+        this(context, factory, config, executor, false);
+    }
+
+    private AuthenticationRequirementsManager(
+            final BundleContext context,
+            final ResourceResolverFactory factory,
+            final SlingAuthenticator.Config config,
+            final Executor executor,
+            final boolean ownsExecutor) {
         this.bundleId = context.getBundle().getBundleId();
         this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+        this.scheduler = executor instanceof ScheduledExecutorService ? (ScheduledExecutorService) executor : null;
         this.resolverFactory = factory;
+        this.snapshotFile = config.auth_requirements_snapshot() ? context.getDataFile(SNAPSHOT_FILE_NAME) : null;
+        this.snapshot = readSnapshot();
         this.modified(config);
+        this.registerGauges(context);
         try {
             context.addServiceListener(this, FILTER_EXPR);
             ServiceReference<?>[] refs = context.getAllServiceReferences(null, FILTER_EXPR);
@@ -150,6 +292,10 @@ public class AuthenticationRequirementsManager extends PathBasedHolderCache<Auth
 
     @Modified
     private void modified(final SlingAuthenticator.Config config) {
+        this.redirectTargetCache.configure(config.auth_redirect_cache_size(), config.auth_redirect_cache_ttl());
+        this.mappingDebounce = config.auth_mapping_debounce();
+        this.configureMappingPool(config.auth_mapping_executor(), config.auth_mapping_parallelism());
+
         this.clear();
         this.addHolder(new AuthenticationRequirementHolder("/", !config.auth_annonymous(), null));
 
@@ -177,12 +323,145 @@ public class AuthenticationRequirementsManager extends PathBasedHolderCache<Auth
         bundleContext.removeServiceListener(this);
         queue(CLEAR, null);
         backgroundJobRunning.set(false);
+        for (final ServiceRegistration<?> reg : this.gaugeRegistrations) {
+            try {
+                reg.unregister();
+            } catch (final IllegalStateException ise) {
+                // already unregistered
+            }
+        }
+        this.gaugeRegistrations.clear();
+        this.configureMappingPool(EXECUTOR_SINGLE, 1);
+        if (this.ownsExecutor) {
+            ((ExecutorService) this.executor).shutdown();
+        }
         logger.debug("Stopped auth requirements listener");
     }
 
+    /**
+     * Creates the executor processing the queue on a single named daemon
+     * thread. Debounced tasks still pending on shutdown are dropped.
+     */
+    private static ScheduledExecutorService createQueueExecutor() {
+        final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            final Thread thread = new Thread(runnable, QUEUE_THREAD_NAME);
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        return executor;
+    }
+
+    private void configureMappingPool(final String type, final int parallelism) {
+        final String kind = type == null ? EXECUTOR_POOL : type;
+        final int partitions = EXECUTOR_SINGLE.equals(kind) ? 1 : Math.max(1, parallelism);
+        if (partitions == this.mappingParallelism && kind.equals(this.mappingExecutor)) {
+            return;
+        }
+        this.mappingExecutor = kind;
+        this.mappingParallelism = partitions;
+        final ExecutorService old = this.mappingPool;
+        if (partitions < 2) {
+            this.mappingPool = null;
+        } else {
+            if (!EXECUTOR_POOL.equals(kind)) {
+                logger.warn("Unknown mapping executor {}, using a thread pool", kind);
+            }
+            this.mappingPool = createMappingPool(partitions);
+        }
+        if (old != null) {
+            old.shutdown();
+        }
+    }
+
+    private static ExecutorService createMappingPool(final int threads) {
+        final AtomicInteger threadCounter = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            final Thread thread = new Thread(runnable, MAPPING_THREAD_NAME_PREFIX + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Returns the cache of redirect target decisions
+     */
+    RedirectTargetCache getRedirectTargetCache() {
+        return this.redirectTargetCache;
+    }
+
+    /**
+     * Returns the number of actions waiting to be processed
+     */
+    public int getQueueSize() {
+        this.processingQueueLock.lock();
+        try {
+            int size = 0;
+            for (final Map<Long, Action> processingQueue : this.processingQueues) {
+                size += processingQueue.size();
+            }
+            return size;
+        } finally {
+            this.processingQueueLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the time in milliseconds the oldest action not processed yet
+     * has been waiting, including an action currently processed, or
+     * <code>0</code> if there is no such action.
+     */
+    public long getOldestPendingAge() {
+        boolean pending;
+        long oldest;
+        this.processingQueueLock.lock();
+        try {
+            pending = this.processing;
+            oldest = this.processingQueued;
+            for (final Map<Long, Action> processingQueue : this.processingQueues) {
+                for (final Action action : processingQueue.values()) {
+                    if (!pending || action.queued - oldest < 0) {
+                        pending = true;
+                        oldest = action.queued;
+                    }
+                }
+            }
+        } finally {
+            this.processingQueueLock.unlock();
+        }
+        return pending ? TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - oldest) : 0;
+    }
+
+    /**
+     * Returns the number of actions processed since activation
+     */
+    public long getProcessedCount() {
+        return this.processedCount.get();
+    }
+
+    private void registerGauges(final BundleContext context) {
+        registerGauge(context, QUEUE_SIZE_GAUGE_NAME, this::getQueueSize);
+        registerGauge(context, QUEUE_AGE_GAUGE_NAME, this::getOldestPendingAge);
+        registerGauge(context, PROCESSED_GAUGE_NAME, this::getProcessedCount);
+    }
+
+    private <T> void registerGauge(final BundleContext context, final String name, final Gauge<T> gauge) {
+        final Dictionary<String, Object> properties = new Hashtable<>();
+        properties.put(Gauge.NAME, name);
+        final ServiceRegistration<?> reg = context.registerService(Gauge.class, gauge, properties);
+        if (reg != null) {
+            this.gaugeRegistrations.add(reg);
+        }
+    }
+
     private void schedule() {
         if (this.backgroundJobRunning.compareAndSet(false, true)) {
-            this.executor.execute(this::processQueue);
+            try {
+                this.executor.execute(this::processQueue);
+            } catch (final RejectedExecutionException ree) {
+                // stopped
+                this.backgroundJobRunning.set(false);
+            }
         }
     }
 
@@ -211,7 +490,8 @@ public class AuthenticationRequirementsManager extends PathBasedHolderCache<Auth
         // add requirements for newly registered services and for
         // updated services
         if ((event.getType() & ServiceEvent.REGISTERED) != 0) {
-            queue(id, new Action(ActionType.ADDED, event.getServiceReference()));
+            final ServiceReference<?> ref = event.getServiceReference();
+            queue(id, new Action(ActionType.ADDED, ref));
         }
         schedule();
     }
@@ -221,8 +501,49 @@ public class AuthenticationRequirementsManager extends PathBasedHolderCache<Auth
      */
     @Override
     public void handleEvent(final Event event) {
-        queue(UPDATE, null);
-        schedule();
+        this.redirectTargetCache.invalidate();
+        this.mappingCache = new ConcurrentHashMap<>();
+        final long debounce = this.mappingDebounce;
+        if (debounce <= 0 || this.scheduler == null) {
+            queue(UPDATE, null);
+            schedule();
+            return;
+        }
+        final long now = System.nanoTime();
+        this.lastMappingChange = now;
+        if (this.mappingUpdateScheduled.compareAndSet(false, true)) {
+            this.firstMappingChange = now;
+            scheduleMappingUpdate(debounce);
+        }
+    }
+
+    private void scheduleMappingUpdate(final long delay) {
+        try {
+            this.scheduler.schedule(this::debouncedMappingUpdate, delay, TimeUnit.MILLISECONDS);
+        } catch (final RejectedExecutionException ree) {
+            // shutting down
+            this.mappingUpdateScheduled.set(false);
+        }
+    }
+
+    /**
+     * Queue the update of the mappings once no mapping change happened for
+     * the debounce time or the burst of changes has lasted too long.
+     */
+    private void debouncedMappingUpdate() {
+        final long debounce = TimeUnit.MILLISECONDS.toNanos(Math.max(0, this.mappingDebounce));
+        final long now = System.nanoTime();
+        final long quiet = this.lastMappingChange + debounce - now;
+        final long limit = this.firstMappingChange + MAX_DEBOUNCE_FACTOR * debounce - now;
+        final long remaining = Math.min(quiet, limit);
+        if (remaining > 0) {
+            scheduleMappingUpdate(TimeUnit.NANOSECONDS.toMillis(remaining) + 1);
+        } else {
+            // reset before queueing, so later changes schedule a new update
+            this.mappingUpdateScheduled.set(false);
+            queue(UPDATE, null);
+            schedule();
+        }
     }
 
     /**
@@ -232,22 +553,61 @@ public class AuthenticationRequirementsManager extends PathBasedHolderCache<Auth
      */
     private void queue(final long id, final Action action) {
         logger.debug("Queuing action for service {} : {}", id, action);
-        synchronized (this.processingQueue) {
+        this.processingQueueLock.lock();
+        try {
             if (id == CLEAR) {
-                this.processingQueue.clear();
+                for (final Map<Long, Action> processingQueue : this.processingQueues) {
+                    processingQueue.clear();
+                }
             } else if (id == UPDATE) {
-                for (final Long updateId : this.props.keySet()) {
-                    this.processingQueue.putIfAbsent(updateId, new Action(ActionType.UPDATE, null));
+                if (!this.props.isEmpty()) {
+                    this.processingQueues
+                            .get(ActionType.UPDATE.priority)
+                            .putIfAbsent(UPDATE, new Action(ActionType.UPDATE, null));
                 }
             } else {
-                this.processingQueue.remove(id);
-                this.processingQueue.put(id, action);
+                // a replaced action is still pending since it was first queued
+                Action previous = null;
+                for (final Map<Long, Action> processingQueue : this.processingQueues) {
+                    final Action removed = processingQueue.remove(id);
+                    if (removed != null) {
+                        previous = removed;
+                    }
+                }
+                this.processingQueues
+                        .get(action.type.priority)
+                        .put(id, previous == null ? action : new Action(action, previous.queued));
+            }
+        } finally {
+            this.processingQueueLock.unlock();
+        }
+    }
+
+    /**
+     * Queue a new action unless an action is already pending for the service
+     * @param id The id of the service
+     * @param action The action to take
+     */
+    private void queueIfAbsent(final long id, final Action action) {
+        this.processingQueueLock.lock();
+        try {
+            for (final Map<Long, Action> processingQueue : this.processingQueues) {
+                if (processingQueue.containsKey(id)) {
+                    return;
+                }
             }
+            logger.debug("Queuing action for service {} : {}", id, action);
+            this.processingQueues.get(action.type.priority).put(id, action);
+        } finally {
+            this.processingQueueLock.unlock();
         }
     }
 
     /**
-     * Process the queue, one by one
+     * Process the queue in batches in order of priority, the changes of all
+     * actions of a batch are applied in a single update of the cache. A batch
+     * only contains actions of a single priority, so the changes of higher
+     * priority actions are applied before lower priority actions are processed.
      * Lazy creation of resource resolver / resource mapper
      */
     private void processQueue() {
@@ -255,30 +615,47 @@ public class AuthenticationRequirementsManager extends PathBasedHolderCache<Auth
         ResourceMapper mapper = null;
         try {
             while (this.backgroundJobRunning.get()) {
-                Map.Entry<Long, Action> entry = null;
-                synchronized (this.processingQueue) {
-                    final Iterator<Map.Entry<Long, Action>> iter =
-                            this.processingQueue.entrySet().iterator();
-                    if (iter.hasNext()) {
-                        entry = iter.next();
-                        iter.remove();
-                    }
+                final List<Map.Entry<Long, Action>> batch = pollBatch();
+                if (batch.isEmpty()) {
+                    continue;
                 }
-                if (entry == null) {
-                    synchronized (this.processingQueue) {
-                        this.backgroundJobRunning.compareAndSet(true, !this.processingQueue.isEmpty());
-                    }
-                } else {
-                    logger.debug("Processing action for service {} : {}", entry.getKey(), entry.getValue());
-                    if (entry.getValue().type != ActionType.REMOVED && mapper == null) {
+                final Changes changes = new Changes();
+                final MetricsService metrics = this.metricsService;
+                final Timer waitTimer = metrics == null ? null : metrics.timer(TASK_WAIT_TIMER_NAME);
+                final Timer taskTimer = metrics == null ? null : metrics.timer(TASK_TIMER_NAME);
+                try {
+                    for (final Map.Entry<Long, Action> entry : batch) {
+                        logger.debug("Processing action for service {} : {}", entry.getKey(), entry.getValue());
+                        if (entry.getValue().type != ActionType.REMOVED && mapper == null) {
+                            try {
+                                resolver = this.resolverFactory.getServiceResourceResolver(null);
+                                mapper = resolver.adaptTo(ResourceMapper.class);
+                            } catch (final org.apache.sling.api.resource.LoginException le) {
+                                // ignore
+                            }
+                        }
+                        final long start = System.nanoTime();
+                        if (waitTimer != null) {
+                            waitTimer.update(start - entry.getValue().queued, TimeUnit.NANOSECONDS);
+                        }
                         try {
-                            resolver = this.resolverFactory.getServiceResourceResolver(null);
-                            mapper = resolver.adaptTo(ResourceMapper.class);
-                        } catch (final org.apache.sling.api.resource.LoginException le) {
-                            // ignore
+                            process(mapper, entry.getKey(), entry.getValue(), changes);
+                        } finally {
+                            if (taskTimer != null) {
+                                taskTimer.update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                            }
+                            this.processedCount.incrementAndGet();
                         }
                     }
-                    process(mapper, entry.getKey(), entry.getValue());
+                } finally {
+                    changes.apply();
+                    this.processingQueueLock.lock();
+                    try {
+                        this.processing = false;
+                    } finally {
+                        this.processingQueueLock.unlock();
+                    }
+                    this.snapshotDirty.set(true);
                 }
             }
 
@@ -287,6 +664,120 @@ public class AuthenticationRequirementsManager extends PathBasedHolderCache<Auth
                 resolver.close();
             }
         }
+        this.writeSnapshot();
+    }
+
+    /**
+     * Remove the next batch of actions from the highest priority queue which is
+     * not empty. If the queues are empty, the background job is marked as finished.
+     * @return The actions by service id, empty if the queues are empty
+     */
+    private List<Map.Entry<Long, Action>> pollBatch() {
+        final List<Map.Entry<Long, Action>> batch = new ArrayList<>();
+        this.processingQueueLock.lock();
+        try {
+            long oldest = 0;
+            for (final Map<Long, Action> processingQueue : this.processingQueues) {
+                final Iterator<Map.Entry<Long, Action>> iter =
+                        processingQueue.entrySet().iterator();
+                while (batch.size() < MAX_BATCH_SIZE && iter.hasNext()) {
+                    final Map.Entry<Long, Action> entry = iter.next();
+                    iter.remove();
+                    batch.add(entry);
+                    if (batch.size() == 1 || entry.getValue().queued - oldest < 0) {
+                        oldest = entry.getValue().queued;
+                    }
+                }
+                if (!batch.isEmpty()) {
+                    break;
+                }
+            }
+            if (batch.isEmpty()) {
+                this.backgroundJobRunning.compareAndSet(true, false);
+            }
+            this.processing = !batch.isEmpty();
+            this.processingQueued = oldest;
+        } finally {
+            this.processingQueueLock.unlock();
+        }
+        return batch;
+    }
+
+    private Map<String, AuthenticationRequirementsSnapshot.Entry> readSnapshot() {
+        if (this.snapshotFile != null) {
+            try {
+                return AuthenticationRequirementsSnapshot.read(this.snapshotFile);
+            } catch (final IOException ioe) {
+                logger.warn("Ignoring unreadable auth requirements snapshot {}", this.snapshotFile, ioe);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Register the paths of an added service from the snapshot and queue
+     * recalculating them with the live mappings. Each snapshot entry is used
+     * at most once.
+     * @param ref The service reference
+     * @param changes Collects the changes to the cache
+     * @return Whether the service was restored from the snapshot
+     */
+    private boolean restoreService(final ServiceReference<?> ref, final Changes changes) {
+        if (this.snapshot == null || this.snapshot.isEmpty()) {
+            return false;
+        }
+        final String key = AuthenticationRequirementsSnapshot.key(ref);
+        final AuthenticationRequirementsSnapshot.Entry entry = key == null ? null : this.snapshot.remove(key);
+        if (entry == null
+                || !entry.matches(Converters.standardConverter()
+                        .convert(ref.getProperty(AuthConstants.AUTH_REQUIREMENTS))
+                        .to(String[].class))) {
+            return false;
+        }
+        final Long id = (Long) ref.getProperty(Constants.SERVICE_ID);
+        final List<AuthenticationRequirementHolder> authReqList = new ArrayList<>();
+        for (final String authReq : entry.paths) {
+            if (!authReq.isEmpty()) {
+                authReqList.add(AuthenticationRequirementHolder.fromConfig(authReq, ref));
+            }
+        }
+        regProps.put(id, entry.paths);
+        props.put(id, authReqList);
+        changes.addAll(authReqList);
+        this.queueIfAbsent(id, new Action(ActionType.MODIFIED, ref));
+        logger.debug("Restored auth requirements for service {} from snapshot : {}", id, entry.paths);
+        return true;
+    }
+
+    /**
+     * Write the snapshot if the requirements changed since it was last
+     * written.
+     */
+    private void writeSnapshot() {
+        if (this.snapshotFile == null || !this.snapshotDirty.getAndSet(false)) {
+            return;
+        }
+        final Map<String, AuthenticationRequirementsSnapshot.Entry> entries = new LinkedHashMap<>();
+        for (final Map.Entry<Long, List<AuthenticationRequirementHolder>> entry : props.entrySet()) {
+            final Set<String> paths = regProps.get(entry.getKey());
+            if (entry.getValue().isEmpty() || paths == null) {
+                continue;
+            }
+            final ServiceReference<?> ref = entry.getValue().get(0).serviceReference;
+            final String key = AuthenticationRequirementsSnapshot.key(ref);
+            if (key != null) {
+                final String[] requirements = Converters.standardConverter()
+                        .convert(ref.getProperty(AuthConstants.AUTH_REQUIREMENTS))
+                        .to(String[].class);
+                entries.put(key, new AuthenticationRequirementsSnapshot.Entry(requirements, paths));
+            }
+        }
+        try {
+            AuthenticationRequirementsSnapshot.write(this.snapshotFile, entries);
+            logger.debug("Wrote auth requirements snapshot with {} services", entries.size());
+        } catch (final IOException ioe) {
+            logger.warn("Failed writing auth requirements snapshot {}", this.snapshotFile, ioe);
+        }
     }
 
     /**
@@ -294,26 +785,178 @@ public class AuthenticationRequirementsManager extends PathBasedHolderCache<Auth
      * @param mapper
      * @param id
      * @param action
+     * @param changes Collects the changes to the cache
      */
-    private void process(final ResourceMapper mapper, final Long id, final Action action) {
+    private void process(final ResourceMapper mapper, final Long id, final Action action, final Changes changes) {
         switch (action.type) {
             case ADDED:
-                this.addService(mapper, action.reference);
+                if (!this.restoreService(action.reference, changes)) {
+                    this.addService(mapper, action.reference, changes);
+                }
                 break;
             case REMOVED:
-                this.removeService((Long) action.reference.getProperty(Constants.SERVICE_ID));
+                this.removeService((Long) action.reference.getProperty(Constants.SERVICE_ID), changes);
                 break;
             case MODIFIED:
-                this.modifiedService(mapper, action.reference);
+                this.modifiedService(mapper, action.reference, changes);
                 break;
             case UPDATE:
-                final List<AuthenticationRequirementHolder> list = props.get(id);
-                if (!list.isEmpty()) {
-                    this.modifiedService(mapper, list.get(0).serviceReference);
+                this.updateMappings(mapper, changes);
+        }
+    }
+
+    /**
+     * Recalculate the mapped paths of all services
+     * @param mapper The resource mapper, may be <code>null</code>
+     * @param changes Collects the changes to the cache
+     */
+    private void updateMappings(final ResourceMapper mapper, final Changes changes) {
+        final Map<Long, ServiceReference<?>> services = new LinkedHashMap<>();
+        for (final Map.Entry<Long, List<AuthenticationRequirementHolder>> entry : props.entrySet()) {
+            final List<AuthenticationRequirementHolder> authReqs = entry.getValue();
+            if (!authReqs.isEmpty()) {
+                services.put(entry.getKey(), authReqs.get(0).serviceReference);
+            }
+        }
+        final Map<Long, Set<String>> paths = computePaths(mapper, services);
+
+        for (final Map.Entry<Long, ServiceReference<?>> entry : services.entrySet()) {
+            collectChanges(entry.getKey(), entry.getValue(), paths.get(entry.getKey()), changes);
+        }
+        logger.debug("Updated mappings of auth requirements for {} services", services.size());
+    }
+
+    /**
+     * Calculate the paths of the services. If a mapping pool is configured
+     * the services are partitioned across the pool, each partition using its
+     * own resource mapper as resource mappers are not thread-safe.
+     * @param mapper The resource mapper of the background thread, may be <code>null</code>
+     * @param services The service references by service id
+     * @return The paths by service id, a <code>null</code> value if a service
+     *            has no auth requirements
+     */
+    private Map<Long, Set<String>> computePaths(
+            final ResourceMapper mapper, final Map<Long, ServiceReference<?>> services) {
+        final ExecutorService pool = this.mappingPool;
+        final int partitions = Math.min(this.mappingParallelism, services.size());
+        if (pool == null || partitions < 2) {
+            return computePaths(mapper, services.entrySet());
+        }
+
+        final List<List<Map.Entry<Long, ServiceReference<?>>>> parts = new ArrayList<>();
+        for (int i = 0; i < partitions; i++) {
+            parts.add(new ArrayList<>());
+        }
+        int index = 0;
+        for (final Map.Entry<Long, ServiceReference<?>> entry : services.entrySet()) {
+            parts.get(index++ % partitions).add(entry);
+        }
+
+        final List<Future<Map<Long, Set<String>>>> futures = new ArrayList<>();
+        for (final List<Map.Entry<Long, ServiceReference<?>>> part : parts) {
+            try {
+                futures.add(pool.submit(() -> computePartition(part)));
+            } catch (final RejectedExecutionException ree) {
+                // pool shut down by a concurrent reconfiguration
+                futures.add(null);
+            }
+        }
+
+        final Map<Long, Set<String>> result = new HashMap<>();
+        for (int i = 0; i < partitions; i++) {
+            final Future<Map<Long, Set<String>>> future = futures.get(i);
+            Map<Long, Set<String>> partResult = null;
+            if (future != null) {
+                try {
+                    partResult = future.get();
+                } catch (final InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                } catch (final ExecutionException ee) {
+                    logger.warn("Failed calculating mappings of auth requirements", ee.getCause());
                 }
+            }
+            if (partResult == null) {
+                partResult = computePaths(mapper, parts.get(i));
+            }
+            result.putAll(partResult);
+        }
+        return result;
+    }
+
+    /**
+     * Calculate the paths of a partition of the services with a resource
+     * mapper of its own.
+     */
+    private Map<Long, Set<String>> computePartition(final List<Map.Entry<Long, ServiceReference<?>>> part) {
+        ResourceResolver resolver = null;
+        try {
+            ResourceMapper mapper = null;
+            try {
+                resolver = this.resolverFactory.getServiceResourceResolver(null);
+                mapper = resolver.adaptTo(ResourceMapper.class);
+            } catch (final org.apache.sling.api.resource.LoginException le) {
+                // ignore
+            }
+            return computePaths(mapper, part);
+        } finally {
+            if (resolver != null) {
+                resolver.close();
+            }
         }
     }
 
+    private Map<Long, Set<String>> computePaths(
+            final ResourceMapper mapper, final Iterable<Map.Entry<Long, ServiceReference<?>>> services) {
+        final Map<Long, Set<String>> result = new HashMap<>();
+        for (final Map.Entry<Long, ServiceReference<?>> entry : services) {
+            final String[] authReqPaths = Converters.standardConverter()
+                    .convert(entry.getValue().getProperty(AuthConstants.AUTH_REQUIREMENTS))
+                    .to(String[].class);
+            result.put(entry.getKey(), authReqPaths.length > 0 ? buildPathsSet(mapper, authReqPaths) : null);
+        }
+        return result;
+    }
+
+    /**
+     * Collect the holders to remove and to add for the recalculated paths
+     * of a registered service.
+     * @param id The service id
+     * @param ref The service reference
+     * @param paths The recalculated paths, <code>null</code> if the service
+     *            has no auth requirements
+     * @param changes Collects the changes to the cache
+     */
+    private void collectChanges(
+            final Long id, final ServiceReference<?> ref, final Set<String> paths, final Changes changes) {
+        final Set<String> oldPaths = regProps.get(id);
+        if (paths == null || paths.isEmpty() || oldPaths == null) {
+            final List<AuthenticationRequirementHolder> authReqs = props.remove(id);
+            if (authReqs != null) {
+                changes.removeAll(authReqs);
+            }
+            regProps.remove(id);
+            return;
+        }
+        final List<AuthenticationRequirementHolder> authReqs = props.get(id);
+        for (final String oldPath : oldPaths) {
+            if (oldPath != null && !oldPath.isEmpty() && !paths.contains(oldPath)) {
+                final AuthenticationRequirementHolder holder = AuthenticationRequirementHolder.fromConfig(oldPath, ref);
+                authReqs.remove(holder);
+                changes.remove(holder);
+            }
+        }
+        for (final String path : paths) {
+            if (path == null || path.isEmpty()) {
+                logger.warn("Ignoring null/empty path while updating the auth requirements for service {}", id);
+            } else if (!oldPaths.contains(path)) {
+                final AuthenticationRequirementHolder holder = AuthenticationRequirementHolder.fromConfig(path, ref);
+                authReqs.add(holder);
+                changes.add(holder);
+            }
+        }
+        regProps.put(id, paths);
+    }
+
     /**
      * Register all known services.
      */
@@ -328,12 +971,11 @@ public class AuthenticationRequirementsManager extends PathBasedHolderCache<Auth
      * @param authReqs The auth requirement holders
      */
     private void registerService(final List<AuthenticationRequirementHolder> authReqs) {
-        for (AuthenticationRequirementHolder authReq : authReqs) {
-            this.addHolder(authReq);
-        }
+        this.applyChanges(null, authReqs);
     }
 
     private Set<String> buildPathsSet(final ResourceMapper mapper, final String[] authReqPaths) {
+        final Map<String, List<String>> mappings = this.mappingCache;
         final Set<String> paths = new HashSet<>();
         for (String authReq : authReqPaths) {
             if (authReq != null) {
@@ -352,7 +994,7 @@ public class AuthenticationRequirementsManager extends PathBasedHolderCache<Auth
                     paths.add(prefix == null ? authReq : prefix.concat(authReq));
 
                     if (mapper != null) {
-                        for (final String mappedPath : mapper.getAllMappings(authReq)) {
+                        for (final String mappedPath : getAllMappings(mappings, mapper, authReq)) {
                             paths.add(prefix == null ? mappedPath : prefix.concat(mappedPath));
                         }
                     }
@@ -362,11 +1004,28 @@ public class AuthenticationRequirementsManager extends PathBasedHolderCache<Auth
         return paths;
     }
 
+    /**
+     * Returns the mapped paths of the path, calling the mapper only if they
+     * are not cached for the current mapping generation yet.
+     */
+    private static List<String> getAllMappings(
+            final Map<String, List<String>> mappings, final ResourceMapper mapper, final String path) {
+        List<String> mapped = mappings.get(path);
+        if (mapped == null) {
+            mapped = Collections.unmodifiableList(new ArrayList<>(mapper.getAllMappings(path)));
+            final List<String> previous = mappings.putIfAbsent(path, mapped);
+            if (previous != null) {
+                mapped = previous;
+            }
+        }
+        return mapped;
+    }
+
     /**
      * Process a new service with auth requirements
      * @param ref The service reference
      */
-    private void addService(final ResourceMapper mapper, final ServiceReference<?> ref) {
+    private void addService(final ResourceMapper mapper, final ServiceReference<?> ref, final Changes changes) {
         final String[] authReqPaths = Converters.standardConverter()
                 .convert(ref.getProperty(AuthConstants.AUTH_REQUIREMENTS))
                 .to(String[].class);
@@ -386,7 +1045,7 @@ public class AuthenticationRequirementsManager extends PathBasedHolderCache<Auth
 
                 // keep original
                 regProps.put(id, paths);
-                registerService(authReqList);
+                changes.addAll(authReqList);
                 props.put(id, authReqList);
                 logger.debug("Added auth requirements for service {} : {}", id, paths);
             }
@@ -397,51 +1056,19 @@ public class AuthenticationRequirementsManager extends PathBasedHolderCache<Auth
      * Process a modified service with auth requirements
      * @param ref The service reference
      */
-    private void modifiedService(final ResourceMapper mapper, final ServiceReference<?> ref) {
+    private void modifiedService(final ResourceMapper mapper, final ServiceReference<?> ref, final Changes changes) {
         final String[] authReqPaths = Converters.standardConverter()
                 .convert(ref.getProperty(AuthConstants.AUTH_REQUIREMENTS))
                 .to(String[].class);
         final Long id = (Long) ref.getProperty(Constants.SERVICE_ID);
-        if (authReqPaths.length > 0) {
-            final Set<String> oldPaths = regProps.get(id);
-            if (oldPaths == null) {
-                addService(mapper, ref);
-            } else {
-                final Set<String> paths = buildPathsSet(mapper, authReqPaths);
-                if (paths.isEmpty()) {
-                    removeService(id);
-                } else {
-                    final List<AuthenticationRequirementHolder> authReqs = props.get(id);
-                    // compare sets
-                    for (final String oldPath : oldPaths) {
-                        if (oldPath == null || oldPath.isEmpty()) {
-                            continue;
-                        } else if (!paths.contains(oldPath)) {
-                            // remove
-                            final AuthenticationRequirementHolder holder =
-                                    AuthenticationRequirementHolder.fromConfig(oldPath, ref);
-                            authReqs.remove(holder);
-                            this.removeHolder(holder);
-                        }
-                    }
-                    for (final String path : paths) {
-                        if (path == null || path.isEmpty()) {
-                            logger.warn(
-                                    "Ignoring null/empty path while updating the auth requirements for service {}", id);
-                        } else if (!oldPaths.contains(path)) {
-                            // add
-                            final AuthenticationRequirementHolder holder =
-                                    AuthenticationRequirementHolder.fromConfig(path, ref);
-                            authReqs.add(holder);
-                            this.addHolder(holder);
-                        }
-                    }
-                    regProps.put(id, paths);
-                    logger.debug("Updated auth requirements for service {} : {}", id, paths);
-                }
-            }
+        if (authReqPaths.length == 0) {
+            removeService(id, changes);
+        } else if (regProps.get(id) == null) {
+            addService(mapper, ref, changes);
         } else {
-            removeService(id);
+            final Set<String> paths = buildPathsSet(mapper, authReqPaths);
+            collectChanges(id, ref, paths, changes);
+            logger.debug("Updated auth requirements for service {} : {}", id, paths);
         }
     }
 
@@ -449,26 +1076,73 @@ public class AuthenticationRequirementsManager extends PathBasedHolderCache<Auth
      * Process a removed service with auth requirements
      * @param ref The service reference
      */
-    private void removeService(final Long id) {
+    private void removeService(final Long id, final Changes changes) {
         final List<AuthenticationRequirementHolder> authReqs = props.remove(id);
         if (authReqs != null) {
-            for (final AuthenticationRequirementHolder authReq : authReqs) {
-                this.removeHolder(authReq);
-            }
+            changes.removeAll(authReqs);
         }
         regProps.remove(id);
         logger.debug("Removed auth requirements for service {}", id);
     }
 
     /**
-     * Action type for the queued execution
-     *
+     * Changes to the cache collected while processing a batch of actions.
+     * Removing a holder added before in the same batch, or adding a holder
+     * removed before, cancels the earlier change.
+     */
+    private final class Changes {
+
+        private final Set<AuthenticationRequirementHolder> removed = new LinkedHashSet<>();
+
+        private final Set<AuthenticationRequirementHolder> added = new LinkedHashSet<>();
+
+        void add(final AuthenticationRequirementHolder holder) {
+            if (!this.removed.remove(holder)) {
+                this.added.add(holder);
+            }
+        }
+
+        void addAll(final List<AuthenticationRequirementHolder> holders) {
+            for (final AuthenticationRequirementHolder holder : holders) {
+                add(holder);
+            }
+        }
+
+        void remove(final AuthenticationRequirementHolder holder) {
+            if (!this.added.remove(holder)) {
+                this.removed.add(holder);
+            }
+        }
+
+        void removeAll(final List<AuthenticationRequirementHolder> holders) {
+            for (final AuthenticationRequirementHolder holder : holders) {
+                remove(holder);
+            }
+        }
+
+        void apply() {
+            if (!this.removed.isEmpty() || !this.added.isEmpty()) {
+                applyChanges(this.removed, this.added);
+            }
+        }
+    }
+
+    /**
+     * Action type for the queued execution. Actions with a lower priority
+     * value are processed first, a removed service should not wait behind
+     * the recalculation of the mappings.
      */
     public enum ActionType {
-        ADDED,
-        MODIFIED,
-        REMOVED,
-        UPDATE
+        ADDED(0),
+        MODIFIED(1),
+        REMOVED(0),
+        UPDATE(2);
+
+        final int priority;
+
+        ActionType(final int priority) {
+            this.priority = priority;
+        }
     }
 
     /**
@@ -481,9 +1155,19 @@ public class AuthenticationRequirementsManager extends PathBasedHolderCache<Auth
 
         public final ServiceReference<?> reference;
 
+        /** Time in nanoseconds the action was first queued */
+        final long queued;
+
         public Action(final ActionType type, final ServiceReference<?> ref) {
             this.type = type;
             this.reference = ref;
+            this.queued = System.nanoTime();
+        }
+
+        Action(final Action action, final long queued) {
+            this.type = action.type;
+            this.reference = action.reference;
+            this.queued = queued;
         }
 
         @Override
@@ -0,0 +1,172 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.auth.core.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceReference;
+
+/**
+ * The <code>AuthenticationRequirementsSnapshot</code> reads and writes the
+ * mapped authentication requirement paths of registered services to a file
+ * in a compact binary format. After a restart the snapshot provides the
+ * paths of a service until they are recalculated with the live mappings.
+ * <p>
+ * Services are identified across restarts by the symbolic name of the
+ * registering bundle and their service PID, as service ids are not stable.
+ * Services without a service PID are not part of the snapshot, as the
+ * component name is shared by all instances of a factory component. A
+ * snapshot entry is only valid for a service if the auth requirements of
+ * the service are unchanged.
+ */
+final class AuthenticationRequirementsSnapshot {
+
+    /** Magic number at the start of a snapshot file ("SLAR") */
+    private static final int MAGIC = 0x534C4152;
+
+    /** Version of the snapshot format */
+    private static final int VERSION = 1;
+
+    private AuthenticationRequirementsSnapshot() {}
+
+    /**
+     * Snapshot of a single service
+     */
+    static final class Entry {
+
+        /** The auth requirements property of the service */
+        final String[] requirements;
+
+        /** The mapped paths of the auth requirements */
+        final Set<String> paths;
+
+        Entry(final String[] requirements, final Set<String> paths) {
+            this.requirements = requirements;
+            this.paths = paths;
+        }
+
+        /**
+         * Returns whether the entry is valid for a service with the given
+         * auth requirements property
+         */
+        boolean matches(final String[] requirements) {
+            return Arrays.equals(this.requirements, requirements);
+        }
+    }
+
+    /**
+     * Returns the key identifying the service across restarts or
+     * <code>null</code> if the service has no stable identity.
+     * @param ref The service reference
+     */
+    static String key(final ServiceReference<?> ref) {
+        final Bundle bundle = ref.getBundle();
+        final Object id = ref.getProperty(Constants.SERVICE_PID);
+        if (bundle == null || bundle.getSymbolicName() == null || !(id instanceof String)) {
+            return null;
+        }
+        return bundle.getSymbolicName().concat("/").concat((String) id);
+    }
+
+    /**
+     * Reads a snapshot
+     * @param file The snapshot file
+     * @return The entries by key, empty if the file does not exist
+     * @throws IOException If the file cannot be read or has an unknown format
+     */
+    static Map<String, Entry> read(final File file) throws IOException {
+        if (!file.isFile()) {
+            return Collections.emptyMap();
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Unsupported snapshot format in " + file);
+            }
+            final int count = in.readInt();
+            final Map<String, Entry> entries = new ConcurrentHashMap<>();
+            for (int i = 0; i < count; i++) {
+                final String key = in.readUTF();
+                final String[] requirements = new String[in.readInt()];
+                for (int r = 0; r < requirements.length; r++) {
+                    requirements[r] = in.readUTF();
+                }
+                final int pathCount = in.readInt();
+                final Set<String> paths = new LinkedHashSet<>();
+                for (int p = 0; p < pathCount; p++) {
+                    paths.add(in.readUTF());
+                }
+                entries.put(key, new Entry(requirements, paths));
+            }
+            return entries;
+        }
+    }
+
+    /**
+     * Writes a snapshot. The file is replaced atomically if supported by the
+     * file system.
+     * @param file The snapshot file
+     * @param entries The entries by key
+     * @throws IOException If the file cannot be written
+     */
+    static void write(final File file, final Map<String, Entry> entries) throws IOException {
+        final File tmp = new File(file.getPath().concat(".tmp"));
+        try (DataOutputStream out =
+                new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp.toPath())))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(entries.size());
+            for (final Map.Entry<String, Entry> entry : entries.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeInt(entry.getValue().requirements.length);
+                for (final String requirement : entry.getValue().requirements) {
+                    out.writeUTF(requirement);
+                }
+                out.writeInt(entry.getValue().paths.size());
+                for (final String path : entry.getValue().paths) {
+                    out.writeUTF(path);
+                }
+            }
+        }
+        try {
+            Files.move(
+                    tmp.toPath(),
+                    file.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (final AtomicMoveNotSupportedException amnse) {
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
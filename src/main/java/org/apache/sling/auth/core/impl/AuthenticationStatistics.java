@@ -0,0 +1,233 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.auth.core.impl;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * The <code>AuthenticationStatistics</code> keep the outcome and latency of
+ * authentications over a sliding window of time.
+ * <p>
+ * The window is split into a ring of {@link #BUCKETS} buckets each covering
+ * {@link #BUCKET_SECONDS} seconds. Each bucket counts the successful and
+ * failed authentications and keeps a histogram of the latencies with bins
+ * growing exponentially, four bins per power of two microseconds. Recording
+ * is lock free, a bucket is reset when it is reused for a later period of
+ * time.
+ */
+public final class AuthenticationStatistics {
+
+    /** The number of buckets of the sliding window */
+    static final int BUCKETS = 10;
+
+    /** The time in seconds covered by each bucket */
+    static final int BUCKET_SECONDS = 30;
+
+    /** The longest window in seconds a snapshot can cover */
+    public static final int MAX_WINDOW_SECONDS = (BUCKETS - 1) * BUCKET_SECONDS;
+
+    /** The number of histogram bins per power of two */
+    private static final int SUB_BINS = 4;
+
+    /** The number of histogram bins, covering latencies up to 2^32 micros */
+    private static final int BINS = 33 * SUB_BINS;
+
+    private static final int SUCCESSES = BINS;
+
+    private static final int FAILURES = BINS + 1;
+
+    private static final int SLOTS = BINS + 2;
+
+    private static final long BUCKET_NANOS = TimeUnit.SECONDS.toNanos(BUCKET_SECONDS);
+
+    private final LongSupplier clock;
+
+    /** The period of time each bucket currently covers */
+    private final AtomicLong[] periods = new AtomicLong[BUCKETS];
+
+    /** The histogram bins and outcome counters of all buckets */
+    private final AtomicLongArray counters = new AtomicLongArray(BUCKETS * SLOTS);
+
+    public AuthenticationStatistics() {
+        this(System::nanoTime);
+    }
+
+    AuthenticationStatistics(final LongSupplier clock) {
+        this.clock = clock;
+        for (int i = 0; i < BUCKETS; i++) {
+            this.periods[i] = new AtomicLong(Long.MIN_VALUE);
+        }
+    }
+
+    /** Records the latency of an authentication */
+    public void recordLatency(final long nanos) {
+        increment(bin(TimeUnit.NANOSECONDS.toMicros(Math.max(0, nanos))));
+    }
+
+    /** Records the outcome of an authentication */
+    public void recordOutcome(final boolean success) {
+        increment(success ? SUCCESSES : FAILURES);
+    }
+
+    /**
+     * Returns the statistics of the authentications recorded in the last
+     * <code>windowSeconds</code> seconds.
+     *
+     * @param windowSeconds The length of the window, limited to
+     *            {@link #MAX_WINDOW_SECONDS}. The window is rounded up to
+     *            complete buckets and includes the current, partial bucket.
+     */
+    public Snapshot snapshot(final int windowSeconds) {
+        final int window = Math.max(1, Math.min(windowSeconds, MAX_WINDOW_SECONDS));
+        final int buckets = (window + BUCKET_SECONDS - 1) / BUCKET_SECONDS + 1;
+        final long current = period();
+
+        final long[] bins = new long[BINS];
+        long successes = 0;
+        long failures = 0;
+        for (long period = current - buckets + 1; period <= current; period++) {
+            final int bucket = index(period);
+            if (this.periods[bucket].get() != period) {
+                continue;
+            }
+            final int base = bucket * SLOTS;
+            for (int bin = 0; bin < BINS; bin++) {
+                bins[bin] += this.counters.get(base + bin);
+            }
+            successes += this.counters.get(base + SUCCESSES);
+            failures += this.counters.get(base + FAILURES);
+        }
+        return new Snapshot(bins, successes, failures);
+    }
+
+    private void increment(final int slot) {
+        final long period = period();
+        final int bucket = index(period);
+        final AtomicLong bucketPeriod = this.periods[bucket];
+        long previous = bucketPeriod.get();
+        while (previous < period) {
+            if (bucketPeriod.compareAndSet(previous, period)) {
+                // first to use the bucket for this period, clear old counts
+                final int base = bucket * SLOTS;
+                for (int i = 0; i < SLOTS; i++) {
+                    this.counters.set(base + i, 0);
+                }
+                break;
+            }
+            previous = bucketPeriod.get();
+        }
+        if (bucketPeriod.get() == period) {
+            this.counters.incrementAndGet(bucket * SLOTS + slot);
+        }
+    }
+
+    private long period() {
+        return Math.floorDiv(this.clock.getAsLong(), BUCKET_NANOS);
+    }
+
+    private static int index(final long period) {
+        return (int) Math.floorMod(period, (long) BUCKETS);
+    }
+
+    /** Returns the histogram bin of the latency */
+    static int bin(final long micros) {
+        if (micros < SUB_BINS) {
+            return (int) micros;
+        }
+        final int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        final int sub = (int) (micros >>> (exponent - 2)) & (SUB_BINS - 1);
+        return Math.min(BINS - 1, (exponent - 1) * SUB_BINS + sub);
+    }
+
+    /** Returns the largest latency in micros falling into the bin */
+    static long upperBound(final int bin) {
+        if (bin < SUB_BINS) {
+            return bin;
+        }
+        final int exponent = bin / SUB_BINS + 1;
+        final long sub = bin % SUB_BINS;
+        return ((SUB_BINS + sub + 1) << (exponent - 2)) - 1;
+    }
+
+    /** The authentications of a window of time */
+    public static final class Snapshot {
+
+        private final long[] bins;
+
+        private final long successes;
+
+        private final long failures;
+
+        Snapshot(final long[] bins, final long successes, final long failures) {
+            this.bins = bins;
+            this.successes = successes;
+            this.failures = failures;
+        }
+
+        /** Returns the number of successful authentications */
+        public long getSuccesses() {
+            return this.successes;
+        }
+
+        /** Returns the number of failed authentications */
+        public long getFailures() {
+            return this.failures;
+        }
+
+        /** Returns the ratio of failed authentications, 0 if there were none */
+        public double getFailureRatio() {
+            final long total = this.successes + this.failures;
+            return total == 0 ? 0 : (double) this.failures / total;
+        }
+
+        /** Returns the number of authentications with a recorded latency */
+        public long getLatencyCount() {
+            long count = 0;
+            for (final long bin : this.bins) {
+                count += bin;
+            }
+            return count;
+        }
+
+        /**
+         * Returns an upper bound of the latency in milliseconds of the given
+         * percentile of the authentications, 0 if there were none.
+         *
+         * @param percentile The percentile between 0 and 1, for example 0.99
+         */
+        public double getLatencyPercentileMillis(final double percentile) {
+            final long count = getLatencyCount();
+            if (count == 0) {
+                return 0;
+            }
+            final long rank = Math.max(1, (long) Math.ceil(percentile * count));
+            long seen = 0;
+            for (int bin = 0; bin < this.bins.length; bin++) {
+                seen += this.bins[bin];
+                if (seen >= rank) {
+                    return upperBound(bin) / 1000d;
+                }
+            }
+            return upperBound(this.bins.length - 1) / 1000d;
+        }
+    }
+}
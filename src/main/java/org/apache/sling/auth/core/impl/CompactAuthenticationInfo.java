@@ -0,0 +1,549 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.auth.core.impl;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.auth.core.spi.AuthenticationInfo;
+
+/**
+ * The <code>CompactAuthenticationInfo</code> is an {@link AuthenticationInfo}
+ * storing the authentication type, user name, password and the feedback
+ * handler set by the {@link SlingAuthenticator} in fields. Any other property
+ * is stored in a map created on demand.
+ * <p>
+ * None of the storage inherited from <code>HashMap</code> is used, so all
+ * methods of the <code>Map</code> interface are overwritten. The
+ * <code>equals</code>, <code>hashCode</code> and <code>toString</code> methods
+ * inherited from <code>AbstractMap</code> are based on {@link #entrySet()}.
+ * Instances of this class are serialized as plain {@link AuthenticationInfo}
+ * objects.
+ */
+@SuppressWarnings("serial")
+final class CompactAuthenticationInfo extends AuthenticationInfo {
+
+    /** The property names stored in fields, in iteration order */
+    private static final String[] SLOT_KEYS = {
+        AUTH_TYPE,
+        ResourceResolverFactory.USER,
+        ResourceResolverFactory.PASSWORD,
+        SlingAuthenticator.AUTH_INFO_PROP_FEEDBACK_HANDLER
+    };
+
+    private static final int SLOT_AUTH_TYPE = 0;
+
+    private static final int SLOT_USER = 1;
+
+    private static final int SLOT_PASSWORD = 2;
+
+    private static final int SLOT_FEEDBACK_HANDLER = 3;
+
+    /** The values of the properties stored in fields */
+    private transient Object[] slots = new Object[SLOT_KEYS.length];
+
+    /** Bit mask of the slots present in the map, the auth type is always present */
+    private transient int present = 1 << SLOT_AUTH_TYPE;
+
+    /** Other properties, created on demand */
+    private transient Map<String, Object> extra;
+
+    private transient int modCount;
+
+    CompactAuthenticationInfo(final String authType, final String userId, final char[] password) {
+        super();
+        this.slots[SLOT_AUTH_TYPE] = authType;
+        if (userId != null) {
+            this.setSlot(SLOT_USER, userId);
+        }
+        if (password != null) {
+            this.setSlot(SLOT_PASSWORD, password);
+        }
+    }
+
+    private static int slot(final Object key) {
+        for (int i = 0; i < SLOT_KEYS.length; i++) {
+            if (SLOT_KEYS[i].equals(key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean isPresent(final int slot) {
+        return (this.present & (1 << slot)) != 0;
+    }
+
+    private Object setSlot(final int slot, final Object value) {
+        final Object old = this.slots[slot];
+        this.slots[slot] = value;
+        if (!isPresent(slot)) {
+            this.present |= 1 << slot;
+            this.modCount++;
+        }
+        return old;
+    }
+
+    private Object clearSlot(final int slot) {
+        final Object old = this.slots[slot];
+        this.slots[slot] = null;
+        if (isPresent(slot)) {
+            this.present &= ~(1 << slot);
+            this.modCount++;
+        }
+        return old;
+    }
+
+    private static void checkType(final String key, final Object value) {
+        if (AUTH_TYPE.equals(key) && !(value instanceof String)) {
+            throw new IllegalArgumentException(AUTH_TYPE + " property must be a String");
+        }
+
+        if (ResourceResolverFactory.USER.equals(key) && !(value instanceof String)) {
+            throw new IllegalArgumentException(ResourceResolverFactory.USER + " property must be a String");
+        }
+
+        if (ResourceResolverFactory.PASSWORD.equals(key) && !(value instanceof char[])) {
+            throw new IllegalArgumentException(ResourceResolverFactory.PASSWORD + " property must be a char[]");
+        }
+    }
+
+    // ---------- Map
+
+    @Override
+    public int size() {
+        return Integer.bitCount(this.present) + (this.extra == null ? 0 : this.extra.size());
+    }
+
+    @Override
+    public boolean isEmpty() {
+        // the auth type is always present
+        return false;
+    }
+
+    @Override
+    public Object get(final Object key) {
+        final int slot = slot(key);
+        if (slot >= 0) {
+            return this.slots[slot];
+        }
+        return this.extra == null ? null : this.extra.get(key);
+    }
+
+    @Override
+    public Object getOrDefault(final Object key, final Object defaultValue) {
+        return containsKey(key) ? get(key) : defaultValue;
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        final int slot = slot(key);
+        if (slot >= 0) {
+            return isPresent(slot);
+        }
+        return this.extra != null && this.extra.containsKey(key);
+    }
+
+    @Override
+    public boolean containsValue(final Object value) {
+        for (int i = 0; i < SLOT_KEYS.length; i++) {
+            if (isPresent(i) && Objects.equals(value, this.slots[i])) {
+                return true;
+            }
+        }
+        return this.extra != null && this.extra.containsValue(value);
+    }
+
+    @Override
+    public Object put(final String key, final Object value) {
+        checkType(key, value);
+
+        final int slot = slot(key);
+        if (slot >= 0) {
+            return setSlot(slot, value);
+        }
+        if (this.extra == null) {
+            this.extra = new HashMap<>(4);
+        }
+        final int size = this.extra.size();
+        final Object old = this.extra.put(key, value);
+        if (size != this.extra.size()) {
+            this.modCount++;
+        }
+        return old;
+    }
+
+    @Override
+    public void putAll(final Map<? extends String, ? extends Object> m) {
+        for (final Map.Entry<? extends String, ? extends Object> entry : m.entrySet()) {
+            put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @Override
+    public Object remove(final Object key) {
+        final int slot = slot(key);
+        if (slot == SLOT_AUTH_TYPE) {
+            // don't remove the auth type from the map
+            return null;
+        } else if (slot >= 0) {
+            return clearSlot(slot);
+        } else if (this.extra != null && this.extra.containsKey(key)) {
+            this.modCount++;
+            return this.extra.remove(key);
+        }
+        return null;
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < SLOT_KEYS.length; i++) {
+            if (i != SLOT_AUTH_TYPE) {
+                clearSlot(i);
+            }
+        }
+        if (this.extra != null && !this.extra.isEmpty()) {
+            this.extra = null;
+            this.modCount++;
+        }
+    }
+
+    @Override
+    public Object putIfAbsent(final String key, final Object value) {
+        final Object current = get(key);
+        return current == null ? put(key, value) : current;
+    }
+
+    @Override
+    public boolean remove(final Object key, final Object value) {
+        if (containsKey(key) && Objects.equals(get(key), value)) {
+            remove(key);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean replace(final String key, final Object oldValue, final Object newValue) {
+        if (containsKey(key) && Objects.equals(get(key), oldValue)) {
+            put(key, newValue);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public Object replace(final String key, final Object value) {
+        return containsKey(key) ? put(key, value) : null;
+    }
+
+    @Override
+    public Object computeIfAbsent(final String key, final Function<? super String, ? extends Object> mappingFunction) {
+        Objects.requireNonNull(mappingFunction);
+        final Object current = get(key);
+        if (current == null) {
+            final Object value = mappingFunction.apply(key);
+            if (value != null) {
+                put(key, value);
+            }
+            return value;
+        }
+        return current;
+    }
+
+    @Override
+    public Object computeIfPresent(
+            final String key, final BiFunction<? super String, ? super Object, ? extends Object> remappingFunction) {
+        Objects.requireNonNull(remappingFunction);
+        final Object current = get(key);
+        if (current != null) {
+            final Object value = remappingFunction.apply(key, current);
+            if (value != null) {
+                put(key, value);
+            } else {
+                remove(key);
+            }
+            return value;
+        }
+        return null;
+    }
+
+    @Override
+    public Object compute(
+            final String key, final BiFunction<? super String, ? super Object, ? extends Object> remappingFunction) {
+        Objects.requireNonNull(remappingFunction);
+        final Object current = get(key);
+        final Object value = remappingFunction.apply(key, current);
+        if (value != null) {
+            put(key, value);
+        } else if (current != null || containsKey(key)) {
+            remove(key);
+        }
+        return value;
+    }
+
+    @Override
+    public Object merge(
+            final String key,
+            final Object value,
+            final BiFunction<? super Object, ? super Object, ? extends Object> remappingFunction) {
+        Objects.requireNonNull(remappingFunction);
+        Objects.requireNonNull(value);
+        final Object current = get(key);
+        final Object newValue = current == null ? value : remappingFunction.apply(current, value);
+        if (newValue == null) {
+            remove(key);
+        } else {
+            put(key, newValue);
+        }
+        return newValue;
+    }
+
+    @Override
+    public void forEach(final BiConsumer<? super String, ? super Object> action) {
+        Objects.requireNonNull(action);
+        for (final Map.Entry<String, Object> entry : entrySet()) {
+            action.accept(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @Override
+    public void replaceAll(final BiFunction<? super String, ? super Object, ? extends Object> function) {
+        Objects.requireNonNull(function);
+        for (final Map.Entry<String, Object> entry : entrySet()) {
+            entry.setValue(function.apply(entry.getKey(), entry.getValue()));
+        }
+    }
+
+    @Override
+    public Set<String> keySet() {
+        return new AbstractSet<String>() {
+            @Override
+            public Iterator<String> iterator() {
+                final Iterator<Map.Entry<String, Object>> entries = new EntryIterator();
+                return new Iterator<String>() {
+                    @Override
+                    public boolean hasNext() {
+                        return entries.hasNext();
+                    }
+
+                    @Override
+                    public String next() {
+                        return entries.next().getKey();
+                    }
+
+                    @Override
+                    public void remove() {
+                        entries.remove();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return CompactAuthenticationInfo.this.size();
+            }
+
+            @Override
+            public boolean contains(final Object o) {
+                return containsKey(o);
+            }
+        };
+    }
+
+    @Override
+    public Collection<Object> values() {
+        return new AbstractCollection<Object>() {
+            @Override
+            public Iterator<Object> iterator() {
+                final Iterator<Map.Entry<String, Object>> entries = new EntryIterator();
+                return new Iterator<Object>() {
+                    @Override
+                    public boolean hasNext() {
+                        return entries.hasNext();
+                    }
+
+                    @Override
+                    public Object next() {
+                        return entries.next().getValue();
+                    }
+
+                    @Override
+                    public void remove() {
+                        entries.remove();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return CompactAuthenticationInfo.this.size();
+            }
+
+            @Override
+            public boolean contains(final Object o) {
+                return containsValue(o);
+            }
+        };
+    }
+
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet() {
+        return new AbstractSet<Map.Entry<String, Object>>() {
+            @Override
+            public Iterator<Map.Entry<String, Object>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return CompactAuthenticationInfo.this.size();
+            }
+        };
+    }
+
+    /**
+     * Returns a copy of this instance. The <code>HashMap</code> implementation
+     * is not used since it would copy the properties into the unused storage.
+     */
+    @Override
+    public Object clone() {
+        final CompactAuthenticationInfo clone = new CompactAuthenticationInfo(getAuthType(), null, null);
+        clone.slots = this.slots.clone();
+        clone.present = this.present;
+        clone.extra = this.extra == null ? null : new HashMap<>(this.extra);
+        return clone;
+    }
+
+    /**
+     * Serializes this instance as a plain {@link AuthenticationInfo} since the
+     * fields of this class are not part of the serialized form of the map.
+     */
+    private Object writeReplace() {
+        final AuthenticationInfo info = new AuthenticationInfo(getAuthType());
+        for (final Map.Entry<String, Object> entry : entrySet()) {
+            if (!AUTH_TYPE.equals(entry.getKey())) {
+                info.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return info;
+    }
+
+    /**
+     * Iterates the properties stored in fields followed by the other
+     * properties.
+     */
+    private final class EntryIterator implements Iterator<Map.Entry<String, Object>> {
+
+        private final Iterator<Map.Entry<String, Object>> extraIterator =
+                extra == null ? null : extra.entrySet().iterator();
+
+        private int expectedModCount = modCount;
+
+        private int nextSlot = advance(0);
+
+        private int lastSlot = -1;
+
+        private boolean lastExtra;
+
+        private int advance(int slot) {
+            while (slot < SLOT_KEYS.length && !isPresent(slot)) {
+                slot++;
+            }
+            return slot;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.nextSlot < SLOT_KEYS.length || (this.extraIterator != null && this.extraIterator.hasNext());
+        }
+
+        @Override
+        public Map.Entry<String, Object> next() {
+            if (this.expectedModCount != modCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (this.nextSlot < SLOT_KEYS.length) {
+                this.lastSlot = this.nextSlot;
+                this.lastExtra = false;
+                this.nextSlot = advance(this.nextSlot + 1);
+                return new SlotEntry(this.lastSlot);
+            }
+            if (this.extraIterator != null) {
+                final Map.Entry<String, Object> entry = this.extraIterator.next();
+                this.lastSlot = -1;
+                this.lastExtra = true;
+                return entry;
+            }
+            throw new NoSuchElementException();
+        }
+
+        @Override
+        public void remove() {
+            if (this.lastExtra) {
+                this.extraIterator.remove();
+                this.lastExtra = false;
+                modCount++;
+            } else if (this.lastSlot > SLOT_AUTH_TYPE) {
+                clearSlot(this.lastSlot);
+                this.lastSlot = -1;
+            } else if (this.lastSlot == SLOT_AUTH_TYPE) {
+                // the auth type cannot be removed, like remove(AUTH_TYPE)
+                this.lastSlot = -1;
+                return;
+            } else {
+                throw new IllegalStateException();
+            }
+            this.expectedModCount = modCount;
+        }
+    }
+
+    /**
+     * Entry for a property stored in a field.
+     */
+    private final class SlotEntry extends AbstractMap.SimpleEntry<String, Object> {
+
+        private final int slot;
+
+        SlotEntry(final int slot) {
+            super(SLOT_KEYS[slot], slots[slot]);
+            this.slot = slot;
+        }
+
+        @Override
+        public Object setValue(final Object value) {
+            checkType(SLOT_KEYS[this.slot], value);
+            super.setValue(value);
+            return setSlot(this.slot, value);
+        }
+    }
+}
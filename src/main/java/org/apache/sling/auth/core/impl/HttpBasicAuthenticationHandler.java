@@ -19,11 +19,10 @@
 package org.apache.sling.auth.core.impl;
 
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import org.apache.commons.codec.binary.Base64;
 import org.apache.sling.auth.core.AuthUtil;
 import org.apache.sling.auth.core.spi.AuthenticationInfo;
 import org.apache.sling.auth.core.spi.DefaultJakartaAuthenticationFeedbackHandler;
@@ -49,16 +48,13 @@ class HttpBasicAuthenticationHandler extends DefaultJakartaAuthenticationFeedbac
 
     private static final String HEADER_WWW_AUTHENTICATE = "WWW-Authenticate";
 
-    private static final String HEADER_AUTHORIZATION = "Authorization";
+    static final String HEADER_AUTHORIZATION = "Authorization";
 
     private static final String AUTHENTICATION_SCHEME_BASIC = "Basic";
 
     /** default log */
     private final Logger log = LoggerFactory.getLogger(getClass());
 
-    /** The realm to send back with the 401 response */
-    private final String realm;
-
     /**
      * Whether this authentication handler is fully enabled and sends back 401
      * responses from the
@@ -68,9 +64,12 @@ class HttpBasicAuthenticationHandler extends DefaultJakartaAuthenticationFeedbac
      */
     private final boolean fullSupport;
 
+    /** The WWW-Authenticate header with the realm to send back with the 401 response */
+    private final String challenge;
+
     HttpBasicAuthenticationHandler(final String realm, final boolean fullSupport) {
-        this.realm = realm;
         this.fullSupport = fullSupport;
+        this.challenge = AUTHENTICATION_SCHEME_BASIC + " realm=\"" + realm + "\"";
     }
 
     // ----------- AuthenticationHandler interface ----------------------------
@@ -269,7 +268,7 @@ class HttpBasicAuthenticationHandler extends DefaultJakartaAuthenticationFeedbac
             // error handler in which case sendError would result in an error
             // handler loop and thus be ignored.
             response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
-            response.setHeader(HEADER_WWW_AUTHENTICATE, AUTHENTICATION_SCHEME_BASIC + " realm=\"" + this.realm + "\"");
+            response.setHeader(HEADER_WWW_AUTHENTICATE, this.challenge);
 
             try {
                 response.flushBuffer();
@@ -295,45 +294,125 @@ class HttpBasicAuthenticationHandler extends DefaultJakartaAuthenticationFeedbac
     protected AuthenticationInfo extractCredentials(HttpServletRequest request) {
 
         // Return immediately if the header is missing
-        String authHeader = request.getHeader(HEADER_AUTHORIZATION);
+        final String authHeader = request.getHeader(HEADER_AUTHORIZATION);
         if (authHeader == null || authHeader.length() == 0) {
             return null;
         }
 
         // Get the authType (Basic, Digest) and authInfo (user/password) from
-        // the header
-        authHeader = authHeader.trim();
-        int blank = authHeader.indexOf(' ');
-        if (blank <= 0) {
+        // the header without creating intermediate strings
+        int start = 0;
+        int end = authHeader.length();
+        while (start < end && authHeader.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && authHeader.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        final int blank = authHeader.indexOf(' ', start);
+        if (blank <= start || blank >= end) {
             return null;
         }
-        String authType = authHeader.substring(0, blank);
-        String authInfo = authHeader.substring(blank).trim();
 
         // Check whether authorization type matches
-        if (!authType.equalsIgnoreCase(AUTHENTICATION_SCHEME_BASIC)) {
+        if (blank - start != AUTHENTICATION_SCHEME_BASIC.length()
+                || !authHeader.regionMatches(
+                        true, start, AUTHENTICATION_SCHEME_BASIC, 0, AUTHENTICATION_SCHEME_BASIC.length())) {
             return null;
         }
 
-        // Base64 decode and split on colon
+        int infoStart = blank;
+        while (infoStart < end && authHeader.charAt(infoStart) <= ' ') {
+            infoStart++;
+        }
 
-        // we cannot use default base64, since we need iso encoding
-        // (nb: ISO-8859-1 is required as per API spec to be available)
-        byte[] encoded = authInfo.getBytes(StandardCharsets.ISO_8859_1);
-        byte[] bytes = Base64.decodeBase64(encoded);
-        String decoded = new String(bytes, StandardCharsets.ISO_8859_1);
+        // Base64 decode straight into characters since the decoded
+        // credentials are ISO-8859-1 encoded and split on colon
+        final char[] decoded = new char[((end - infoStart + 3) / 4) * 3];
+        try {
+            final int length = decodeBase64(authHeader, infoStart, end, decoded);
+            if (length < 0) {
+                log.debug("extractCredentials: Ignoring malformed HTTP Basic credentials");
+                return null;
+            }
 
-        final int colIdx = decoded.indexOf(':');
-        final String userId;
-        final char[] password;
-        if (colIdx < 0) {
-            userId = decoded;
-            password = new char[0];
-        } else {
-            userId = decoded.substring(0, colIdx);
-            password = decoded.substring(colIdx + 1).toCharArray();
+            int colIdx = 0;
+            while (colIdx < length && decoded[colIdx] != ':') {
+                colIdx++;
+            }
+            final String userId = new String(decoded, 0, colIdx);
+            final char[] password =
+                    colIdx < length ? Arrays.copyOfRange(decoded, colIdx + 1, length) : new char[0];
+
+            return new CompactAuthenticationInfo(HttpServletRequest.BASIC_AUTH, userId, password);
+        } finally {
+            // don't leave the password on the heap
+            Arrays.fill(decoded, '\0');
         }
+    }
 
-        return new AuthenticationInfo(HttpServletRequest.BASIC_AUTH, userId, password);
+    /**
+     * Decodes the Base64 encoded characters between <code>from</code>
+     * (inclusive) and <code>to</code> (exclusive) of <code>value</code> into
+     * <code>target</code>, one character per decoded byte. Both the standard
+     * and the URL safe alphabet are accepted and padding is optional.
+     *
+     * @return the number of decoded characters or -1 if the value is not
+     *         valid Base64
+     */
+    static int decodeBase64(final String value, final int from, final int to, final char[] target) {
+        int length = 0;
+        int bits = 0;
+        int count = 0;
+        int pos = from;
+        for (; pos < to; pos++) {
+            final char c = value.charAt(pos);
+            if (c == '=') {
+                break;
+            }
+            final int digit = base64Digit(c);
+            if (digit < 0) {
+                return -1;
+            }
+            bits = (bits << 6) | digit;
+            if (++count == 4) {
+                target[length++] = (char) ((bits >> 16) & 0xff);
+                target[length++] = (char) ((bits >> 8) & 0xff);
+                target[length++] = (char) (bits & 0xff);
+                bits = 0;
+                count = 0;
+            }
+        }
+
+        // padding is only allowed to complete the last quantum
+        final int padding = to - pos;
+        if (padding > 0 && (count < 2 || count + padding != 4 || (padding == 2 && value.charAt(pos + 1) != '='))) {
+            return -1;
+        }
+
+        if (count == 1) {
+            return -1;
+        } else if (count == 2) {
+            target[length++] = (char) ((bits >> 4) & 0xff);
+        } else if (count == 3) {
+            target[length++] = (char) ((bits >> 10) & 0xff);
+            target[length++] = (char) ((bits >> 2) & 0xff);
+        }
+        return length;
+    }
+
+    private static int base64Digit(final char c) {
+        if (c >= 'A' && c <= 'Z') {
+            return c - 'A';
+        } else if (c >= 'a' && c <= 'z') {
+            return c - 'a' + 26;
+        } else if (c >= '0' && c <= '9') {
+            return c - '0' + 52;
+        } else if (c == '+' || c == '-') {
+            return 62;
+        } else if (c == '/' || c == '_') {
+            return 63;
+        }
+        return -1;
     }
 }
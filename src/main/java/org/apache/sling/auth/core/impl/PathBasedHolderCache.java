@@ -20,63 +20,135 @@ package org.apache.sling.auth.core.impl;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import jakarta.servlet.http.HttpServletRequest;
 
 public class PathBasedHolderCache<T extends PathBasedHolder> {
 
     /**
-     * The cache is a concurrent map of concurrent maps.
-     * As the final value, the sorted set is replaced on each change, reading of the
-     * cache does not need to be synchronized. Updating of the cache is synchronized.
+     * The cache is an immutable snapshot of maps by protocol and host to
+     * sorted sets of holders. The snapshot is replaced on each change, so
+     * reading the cache does not need any locking. Updating the cache is
+     * guarded by the {@link #updateLock} which, unlike a monitor, does not
+     * pin virtual threads while held.
      */
-    private final Map<String, Map<String, SortedSet<T>>> cache = new ConcurrentHashMap<>();
+    private volatile Map<String, Map<String, SortedSet<T>>> cache = Collections.emptyMap();
+
+    /** Lock serializing updates of the cache */
+    private final Lock updateLock = new ReentrantLock();
 
     protected void clear() {
-        cache.clear();
+        this.updateLock.lock();
+        try {
+            this.cache = Collections.emptyMap();
+        } finally {
+            this.updateLock.unlock();
+        }
     }
 
-    public synchronized void addHolder(final T holder) {
-        final Map<String, SortedSet<T>> byHostMap =
-                cache.computeIfAbsent(holder.protocol, protocol -> new ConcurrentHashMap<>());
+    public void addHolder(final T holder) {
+        this.applyChanges(null, Collections.singleton(holder));
+    }
 
-        // preset with current list
-        final SortedSet<T> currentPathSet = byHostMap.get(holder.host);
-        final SortedSet<T> byPathSet = new TreeSet<>();
-        if (currentPathSet != null) {
-            byPathSet.addAll(currentPathSet);
+    public void removeHolder(final T holder) {
+        this.applyChanges(Collections.singleton(holder), null);
+    }
+
+    /**
+     * Removes and adds holders in a single update of the cache. Concurrent
+     * readers either see none or all of the changes.
+     *
+     * @param removed The holders to remove, may be <code>null</code>
+     * @param added The holders to add, may be <code>null</code>
+     */
+    public void applyChanges(final Collection<T> removed, final Collection<T> added) {
+        this.updateLock.lock();
+        try {
+            final Update update = new Update(this.cache);
+            if (removed != null) {
+                for (final T holder : removed) {
+                    final SortedSet<T> set = update.get(holder, false);
+                    if (set != null) {
+                        set.remove(holder);
+                        // remove if empty
+                        if (set.isEmpty()) {
+                            update.cache.get(holder.protocol).remove(holder.host);
+                        }
+                    }
+                }
+            }
+            if (added != null) {
+                for (final T holder : added) {
+                    update.get(holder, true).add(holder);
+                }
+            }
+            this.cache = update.cache;
+        } finally {
+            this.updateLock.unlock();
         }
+    }
 
-        // add the new holder
-        byPathSet.add(holder);
+    /**
+     * A copy-on-write update of the cache. The maps and sets of the current
+     * snapshot are never changed, they are copied at most once per update.
+     */
+    private final class Update {
 
-        // replace old set with new set
-        byHostMap.put(holder.host, byPathSet);
-    }
+        final Map<String, Map<String, SortedSet<T>>> cache;
 
-    public synchronized void removeHolder(final T holder) {
-        final Map<String, SortedSet<T>> byHostMap = cache.get(holder.protocol);
-        if (byHostMap != null) {
-            final SortedSet<T> byPathSet = byHostMap.get(holder.host);
-            if (byPathSet != null) {
-
-                // create a new set without the removed holder
-                final SortedSet<T> set = new TreeSet<>();
-                set.addAll(byPathSet);
-                set.remove(holder);
-
-                // replace the old set with the new one (or remove if empty)
-                if (set.isEmpty()) {
-                    byHostMap.remove(holder.host);
-                } else {
-                    byHostMap.put(holder.host, set);
-                }
+        private final Set<Object> copies = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        Update(final Map<String, Map<String, SortedSet<T>>> current) {
+            this.cache = new HashMap<>(current);
+        }
+
+        /**
+         * Returns the modifiable set of holders for the protocol and host of
+         * the holder.
+         * @param holder The holder
+         * @param create Whether to create the set if missing
+         * @return The set or <code>null</code> if missing and not created
+         */
+        SortedSet<T> get(final T holder, final boolean create) {
+            Map<String, SortedSet<T>> byHostMap = this.cache.get(holder.protocol);
+            if (byHostMap == null && !create) {
+                return null;
+            }
+            SortedSet<T> byPathSet = byHostMap == null ? null : byHostMap.get(holder.host);
+            if (byPathSet == null && !create) {
+                return null;
+            }
+
+            if (byHostMap == null) {
+                byHostMap = new HashMap<>();
+                this.copies.add(byHostMap);
+                this.cache.put(holder.protocol, byHostMap);
+            } else if (!this.copies.contains(byHostMap)) {
+                byHostMap = new HashMap<>(byHostMap);
+                this.copies.add(byHostMap);
+                this.cache.put(holder.protocol, byHostMap);
+            }
+
+            if (byPathSet == null) {
+                byPathSet = new TreeSet<>();
+                this.copies.add(byPathSet);
+                byHostMap.put(holder.host, byPathSet);
+            } else if (!this.copies.contains(byPathSet)) {
+                byPathSet = new TreeSet<>(byPathSet);
+                this.copies.add(byPathSet);
+                byHostMap.put(holder.host, byPathSet);
             }
+            return byPathSet;
         }
     }
 
@@ -91,6 +163,8 @@ public class PathBasedHolderCache<T extends PathBasedHolder> {
         @SuppressWarnings("unchecked")
         final SortedSet<T>[] result = new SortedSet[4];
 
+        // use a consistent snapshot
+        final Map<String, Map<String, SortedSet<T>>> cache = this.cache;
         final Map<String, SortedSet<T>> byHostMap = cache.get(request.getScheme());
         if (byHostMap != null) {
             result[0] = byHostMap.get(hostname);
@@ -106,7 +180,7 @@ public class PathBasedHolderCache<T extends PathBasedHolder> {
 
     public List<T> getHolders() {
         final List<T> result = new ArrayList<>();
-        for (Map<String, SortedSet<T>> byHostEntry : cache.values()) {
+        for (Map<String, SortedSet<T>> byHostEntry : this.cache.values()) {
             for (SortedSet<T> holderSet : byHostEntry.values()) {
                 result.addAll(holderSet);
             }
@@ -0,0 +1,227 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.auth.core.impl;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceUtil;
+import org.apache.sling.auth.core.AuthenticationSupport;
+
+/**
+ * The <code>RedirectTargetCache</code> remembers whether redirect targets
+ * validated by <code>AuthUtil.isRedirectValid</code> resolve to existing
+ * resources such that repeated redirects to the same landing pages do not
+ * resolve the target again.
+ * <p>
+ * Decisions are cached per scheme, host, port, user and path because the
+ * resolution depends on the resource resolver mappings and the access
+ * rights of the user. Entries expire after a configurable time to live and
+ * all entries are dropped if the resource resolver mappings change. The
+ * number of entries is bounded: if the cache is full and no expired entries
+ * can be removed, new decisions are not cached. Removing expired entries
+ * is attempted at most once per second while the cache is full.
+ * <p>
+ * The cache itself is never handed out of this package. The
+ * {@link SlingAuthenticator} provides <code>AuthUtil</code> with a single
+ * {@link #resourceExists(HttpServletRequest, String) function} shared by
+ * all requests, which only answers whether a path exists.
+ */
+final class RedirectTargetCache {
+
+    /** Minimum time in nanoseconds between removing expired entries of a full cache */
+    private static final long EXPUNGE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /** Time in nanoseconds before which expired entries are not removed again */
+    private volatile long nextExpunge;
+
+    /** The mapping generation, incremented whenever the cache is invalidated */
+    private final AtomicLong generation = new AtomicLong();
+
+    private volatile int maxEntries;
+
+    private volatile long ttlNanos;
+
+    /**
+     * Configures the cache, dropping all cached decisions.
+     *
+     * @param maxEntries The maximum number of cached decisions. Zero or less
+     *            disables the cache.
+     * @param ttlSeconds The time in seconds a decision is cached. Zero or less
+     *            disables the cache.
+     */
+    void configure(final int maxEntries, final long ttlSeconds) {
+        if (maxEntries > 0 && ttlSeconds > 0) {
+            this.maxEntries = maxEntries;
+            this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        } else {
+            this.maxEntries = 0;
+            this.ttlNanos = 0;
+        }
+        this.invalidate();
+    }
+
+    /** Returns <code>true</code> if decisions are cached */
+    boolean isEnabled() {
+        return this.maxEntries > 0;
+    }
+
+    /** Drops all cached decisions, for example if the mappings change */
+    void invalidate() {
+        this.generation.incrementAndGet();
+        this.entries.clear();
+    }
+
+    /**
+     * Returns the current mapping generation to be passed to
+     * {@link #put(String, long, boolean)} after resolving the target.
+     */
+    long getGeneration() {
+        return this.generation.get();
+    }
+
+    /**
+     * Returns the key for the decision about the <code>path</code>
+     */
+    static String key(
+            final String scheme, final String host, final int port, final String userId, final String path) {
+        return new StringBuilder(path.length() + 64)
+                .append(scheme)
+                .append("://")
+                .append(host)
+                .append(':')
+                .append(port)
+                .append('\n')
+                .append(userId)
+                .append('\n')
+                .append(path)
+                .toString();
+    }
+
+    /**
+     * Returns whether the target identified by the <code>key</code> resolves
+     * to an existing resource or <code>null</code> if the decision is not
+     * cached or has expired.
+     */
+    Boolean get(final String key) {
+        final Entry entry = this.entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.isExpired(System.nanoTime())) {
+            this.entries.remove(key, entry);
+            return null;
+        }
+        return entry.exists;
+    }
+
+    /**
+     * Caches the decision for the target identified by the <code>key</code>.
+     * The decision is dropped if the cache has been invalidated since the
+     * <code>generation</code> was retrieved.
+     */
+    void put(final String key, final long generation, final boolean exists) {
+        final int max = this.maxEntries;
+        if (max <= 0) {
+            return;
+        }
+
+        final long now = System.nanoTime();
+        if (this.entries.size() >= max && !this.entries.containsKey(key)) {
+            if (now - this.nextExpunge < 0) {
+                return;
+            }
+            this.nextExpunge = now + EXPUNGE_INTERVAL_NANOS;
+            this.expunge(now);
+            if (this.entries.size() >= max) {
+                return;
+            }
+        }
+
+        final Entry entry = new Entry(exists, now + this.ttlNanos);
+        this.entries.put(key, entry);
+
+        // drop the decision again if the mappings changed while resolving
+        if (generation != this.generation.get()) {
+            this.entries.remove(key, entry);
+        }
+    }
+
+    /**
+     * Returns whether the path resolves to an existing resource with the
+     * resource resolver of the request, using the cache.
+     *
+     * @param request The request providing the resource resolver
+     * @param path The path to resolve
+     * @return <code>false</code> if the path does not resolve or the request
+     *         does not provide a resource resolver
+     */
+    boolean resourceExists(final HttpServletRequest request, final String path) {
+        final Object attribute = request.getAttribute(AuthenticationSupport.REQUEST_ATTRIBUTE_RESOLVER);
+        if (!(attribute instanceof ResourceResolver)) {
+            return false;
+        }
+        final ResourceResolver resolver = (ResourceResolver) attribute;
+        final String key = key(
+                request.getScheme(), request.getServerName(), request.getServerPort(), resolver.getUserID(), path);
+        Boolean exists = this.get(key);
+        if (exists == null) {
+            final long generation = this.getGeneration();
+            exists = !ResourceUtil.isNonExistingResource(resolver.resolve(request, path));
+            this.put(key, generation, exists);
+        }
+        return exists;
+    }
+
+    /** Returns the number of cached decisions, including expired ones */
+    int size() {
+        return this.entries.size();
+    }
+
+    private void expunge(final long now) {
+        for (final Iterator<Entry> iterator = this.entries.values().iterator(); iterator.hasNext(); ) {
+            if (iterator.next().isExpired(now)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static final class Entry {
+
+        private final boolean exists;
+
+        private final long expires;
+
+        Entry(final boolean exists, final long expires) {
+            this.exists = exists;
+            this.expires = expires;
+        }
+
+        boolean isExpired(final long now) {
+            return now - this.expires >= 0;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.auth.core.impl;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.sling.api.resource.ResourceResolver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The <code>ResourceResolverCloser</code> closes the resource resolvers of
+ * finished requests on a small pool of background threads such that the
+ * request thread can be returned to the container without waiting for the
+ * resolver (and its session) to be released.
+ * <p>
+ * The number of resolvers waiting to be closed is bounded. If the queue is
+ * full (or the closer has already been shut down) the resolver is closed
+ * synchronously on the calling thread.
+ */
+final class ResourceResolverCloser {
+
+    /** Prefix of the names of the background threads */
+    private static final String THREAD_NAME_PREFIX = "sling-auth-resolver-closer-";
+
+    /** Time after which idle background threads terminate */
+    private static final long KEEP_ALIVE_SECONDS = 60;
+
+    private static final Logger LOG = LoggerFactory.getLogger(ResourceResolverCloser.class);
+
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Creates a new closer
+     * @param threads The maximum number of background threads, at least one
+     *            thread is used
+     * @param queueSize The maximum number of resolvers waiting to be closed,
+     *            at least one resolver is queued
+     */
+    ResourceResolverCloser(final int threads, final int queueSize) {
+        final int poolSize = Math.max(1, threads);
+        final AtomicInteger threadCounter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                poolSize,
+                poolSize,
+                KEEP_ALIVE_SECONDS,
+                TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueSize)),
+                runnable -> {
+                    final Thread thread = new Thread(runnable, THREAD_NAME_PREFIX + threadCounter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Hands the resolver over to the background threads to be closed. If the
+     * resolver cannot be queued it is closed on the calling thread.
+     *
+     * @param resolver The resolver to close
+     * @param metrics The metrics to report the close latency to, may be
+     *            <code>null</code>
+     */
+    void close(final ResourceResolver resolver, final SlingAuthenticationMetrics metrics) {
+        try {
+            this.executor.execute(() -> doClose(resolver, metrics));
+        } catch (final RejectedExecutionException ree) {
+            LOG.debug("close: Closer queue is full, closing resolver on the request thread");
+            doClose(resolver, metrics);
+        }
+    }
+
+    /**
+     * Returns the number of resolvers currently waiting to be closed, exposed
+     * as a gauge by the {@link SlingAuthenticator}.
+     */
+    int getBacklog() {
+        return this.executor.getQueue().size();
+    }
+
+    /**
+     * Stops accepting new resolvers. Resolvers already queued are still
+     * closed by the background threads.
+     */
+    void shutdown() {
+        this.executor.shutdown();
+    }
+
+    private static void doClose(final ResourceResolver resolver, final SlingAuthenticationMetrics metrics) {
+        final long start = System.nanoTime();
+        try {
+            resolver.close();
+        } catch (final RuntimeException re) {
+            LOG.warn("doClose: Failed closing resource resolver", re);
+        } finally {
+            if (metrics != null) {
+                metrics.resolverClosed(System.nanoTime() - start);
+            }
+        }
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.auth.core.impl;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.sling.api.resource.ResourceResolver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The <code>ResourceResolverTracker</code> keeps track of the resource
+ * resolvers handed out by the {@link SlingAuthenticator} to detect resolvers
+ * which are never closed, for example because down-stream code replaced or
+ * removed the request attribute.
+ * <p>
+ * Each resolver is tracked through a {@link TrackedResolver handle} set as
+ * request attribute. When the request ends, the authenticator notifies the
+ * handle about the resolver it closes. If this is not the tracked resolver
+ * and the tracked resolver is still live, it is reported as leaked together
+ * with the authentication type and request path it was created for. If the
+ * handle itself is lost, the resolver is checked once the handle has been
+ * garbage collected. Resolvers closed by down-stream code are never reported.
+ * Capturing the allocation site is comparatively expensive and is therefore
+ * only done for every n-th resolver.
+ */
+final class ResourceResolverTracker {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ResourceResolverTracker.class);
+
+    private final ReferenceQueue<TrackedResolver> queue = new ReferenceQueue<>();
+
+    private final Set<Tracking> open = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong trackCounter = new AtomicLong();
+
+    private final AtomicLong leakedCounter = new AtomicLong();
+
+    private final int samplingRate;
+
+    /**
+     * Creates a new tracker
+     * @param samplingRate Capture the allocation site of every n-th resolver.
+     *            If this is zero or negative no allocation site is captured.
+     */
+    ResourceResolverTracker(final int samplingRate) {
+        this.samplingRate = samplingRate;
+    }
+
+    /**
+     * Starts tracking the resolver.
+     *
+     * @param resolver The resolver handed out to the request
+     * @param authType The authentication type of the request, may be
+     *            <code>null</code> for anonymous requests
+     * @param path The path of the request
+     * @return The tracking handle to be {@link TrackedResolver#closed(ResourceResolver) notified}
+     *         when the resolver is closed
+     */
+    TrackedResolver track(final ResourceResolver resolver, final String authType, final String path) {
+        final long count = this.trackCounter.incrementAndGet();
+        this.expunge();
+
+        final Throwable site = (this.samplingRate > 0 && count % this.samplingRate == 0)
+                ? new Throwable("Resource resolver allocation site")
+                : null;
+        final TrackedResolver tracked = new TrackedResolver(resolver, authType, path, site);
+        this.open.add(tracked.tracking);
+        return tracked;
+    }
+
+    /**
+     * Returns the number of resolvers handed out and not closed yet, exposed
+     * as a gauge by the {@link SlingAuthenticator}.
+     */
+    int getOpenCount() {
+        this.expunge();
+        return this.open.size();
+    }
+
+    /**
+     * Returns the number of resolvers reported as leaked
+     */
+    long getLeakedCount() {
+        this.expunge();
+        return this.leakedCounter.get();
+    }
+
+    /**
+     * Checks the resolvers whose handle has been garbage collected without
+     * having been notified.
+     */
+    private void expunge() {
+        Tracking tracking;
+        while ((tracking = (Tracking) this.queue.poll()) != null) {
+            tracking.release(true);
+        }
+    }
+
+    /**
+     * The tracking handle of a single resolver. It only refers to the
+     * tracking state such that it can be garbage collected independently.
+     */
+    final class TrackedResolver {
+
+        private final Tracking tracking;
+
+        private TrackedResolver(
+                final ResourceResolver resolver, final String authType, final String path, final Throwable site) {
+            this.tracking = new Tracking(this, resolver, authType, path, site);
+        }
+
+        /**
+         * Notifies the tracker that the authenticator is closing the given
+         * resolver. If this is not the tracked resolver, the tracked resolver
+         * is reported as leaked unless it has been closed already.
+         *
+         * @param resolver The resolver being closed
+         */
+        void closed(final ResourceResolver resolver) {
+            this.tracking.clear();
+            if (this.tracking.resolver == resolver) {
+                this.tracking.release(false);
+            } else {
+                LOG.debug("closed: Resource resolver for request {} has been replaced", this.tracking.path);
+                this.tracking.release(true);
+            }
+        }
+    }
+
+    /**
+     * The tracking state of a single resolver, enqueued once its handle has
+     * been garbage collected. It keeps the resolver reachable until then, so
+     * the resolver can still be checked for having been closed.
+     */
+    private final class Tracking extends WeakReference<TrackedResolver> {
+
+        private final ResourceResolver resolver;
+
+        private final String authType;
+
+        private final String path;
+
+        private final Throwable site;
+
+        private Tracking(
+                final TrackedResolver tracked,
+                final ResourceResolver resolver,
+                final String authType,
+                final String path,
+                final Throwable site) {
+            super(tracked, queue);
+            this.resolver = resolver;
+            this.authType = authType;
+            this.path = path;
+            this.site = site;
+        }
+
+        /**
+         * Stops tracking the resolver, reporting it as leaked if requested
+         * and the resolver is still live.
+         */
+        private void release(final boolean check) {
+            if (open.remove(this) && check && this.resolver.isLive()) {
+                leakedCounter.incrementAndGet();
+                if (this.site != null) {
+                    LOG.warn(
+                            "Resource resolver for request {} (authType={}) has not been closed by the authenticator",
+                            this.path,
+                            this.authType,
+                            this.site);
+                } else {
+                    LOG.warn(
+                            "Resource resolver for request {} (authType={}) has not been closed by the authenticator",
+                            this.path,
+                            this.authType);
+                }
+            }
+        }
+    }
+}
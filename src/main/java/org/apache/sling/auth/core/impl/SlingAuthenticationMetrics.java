@@ -19,6 +19,7 @@
 package org.apache.sling.auth.core.impl;
 
 import java.io.Closeable;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.sling.commons.metrics.Meter;
 import org.apache.sling.commons.metrics.MetricsService;
@@ -34,28 +35,62 @@ public class SlingAuthenticationMetrics {
     static final String AUTHENTICATE_TIMER_NAME = "sling.auth.core.authenticate.timer";
     static final String AUTHENTICATE_SUCCESS_METER_NAME = "sling.auth.core.authenticate.success";
     static final String AUTHENTICATE_FAILED_METER_NAME = "sling.auth.core.authenticate.failed";
+    static final String RESOLVER_CLOSE_TIMER_NAME = "sling.auth.core.resolver.close.timer";
 
     private final Timer authenticateTimer;
     private final Meter authenticateSuccess;
     private final Meter authenticateFailed;
+    private final Timer resolverCloseTimer;
+    private final AuthenticationStatistics statistics = new AuthenticationStatistics();
 
     @Activate
     public SlingAuthenticationMetrics(@Reference @NotNull MetricsService metricsService) {
         authenticateTimer = metricsService.timer(AUTHENTICATE_TIMER_NAME);
         authenticateSuccess = metricsService.meter(AUTHENTICATE_SUCCESS_METER_NAME);
         authenticateFailed = metricsService.meter(AUTHENTICATE_FAILED_METER_NAME);
+        resolverCloseTimer = metricsService.timer(RESOLVER_CLOSE_TIMER_NAME);
     }
 
     @NotNull
     Closeable authenticationTimerContext() {
-        return authenticateTimer.time();
+        final Timer.Context context = authenticateTimer.time();
+        final long start = System.nanoTime();
+        return () -> {
+            context.close();
+            statistics.recordLatency(System.nanoTime() - start);
+        };
     }
 
     void authenticateCompleted(boolean success) {
         if (success) {
+            statistics.recordOutcome(true);
             authenticateSuccess.mark();
         } else {
             authenticateFailed.mark();
         }
     }
+
+    /**
+     * Records an authentication failed because the credentials were
+     * rejected. Requests terminated otherwise, for example by a challenge
+     * for credentials or a redirect, are not failures of the statistics.
+     */
+    void loginFailed() {
+        statistics.recordOutcome(false);
+    }
+
+    void resolverClosed(long durationNanos) {
+        resolverCloseTimer.update(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the outcome and latency of the authentications over a sliding
+     * window, for example to be checked by health checks. The outcomes are
+     * the requests processed after authentication and the requests with
+     * rejected credentials.
+     */
+    @NotNull
+    public AuthenticationStatistics getStatistics() {
+        return statistics;
+    }
 }
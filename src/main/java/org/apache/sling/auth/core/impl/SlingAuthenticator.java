@@ -26,9 +26,15 @@ import java.net.URLEncoder;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Dictionary;
 import java.util.HashMap;
+import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.function.BiPredicate;
 
 import jakarta.servlet.ServletRequest;
 import jakarta.servlet.ServletRequestEvent;
@@ -56,12 +62,16 @@ import org.apache.sling.auth.core.spi.AuthenticationHandler.FAILURE_REASON_CODES
 import org.apache.sling.auth.core.spi.AuthenticationInfo;
 import org.apache.sling.auth.core.spi.AuthenticationInfoPostProcessor;
 import org.apache.sling.auth.core.spi.DefaultJakartaAuthenticationFeedbackHandler;
+import org.apache.sling.auth.core.spi.JakartaAsyncAuthenticationHandler;
 import org.apache.sling.auth.core.spi.JakartaAuthenticationFeedbackHandler;
 import org.apache.sling.auth.core.spi.JakartaAuthenticationHandler;
 import org.apache.sling.auth.core.spi.JakartaAuthenticationInfoPostProcessor;
+import org.apache.sling.commons.metrics.Gauge;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceRegistration;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
 import org.osgi.service.component.annotations.FieldOption;
 import org.osgi.service.component.annotations.Modified;
 import org.osgi.service.component.annotations.Reference;
@@ -207,6 +217,16 @@ public class SlingAuthenticator implements Authenticator, AuthenticationSupport,
                         + " default value is \"Sling (Development)\".")
         String auth_http_realm() default "Sling (Development)"; // NOSONAR
 
+        @AttributeDefinition(
+                name = "Fast HTTP Basic Challenge",
+                description = "Whether requests from non-browser clients without an Authorization"
+                        + " header and without cookies are answered with the HTTP Basic 401 response"
+                        + " immediately if anonymous access is not allowed for the request. No"
+                        + " authentication handler is asked for credentials for such requests. This"
+                        + " only applies if HTTP Basic Authentication is fully enabled. The default"
+                        + " is \"false\".")
+        boolean auth_http_fast_challenge() default false; // NOSONAR
+
         @AttributeDefinition(
                 name = "Authentication URI Suffices",
                 description = "A list of request URI suffixes intended to"
@@ -218,6 +238,129 @@ public class SlingAuthenticator implements Authenticator, AuthenticationSupport,
                         + " just \"/j_security_check\" which is the suffix defined by the Servlet API"
                         + " specification used for FORM based authentication.")
         String[] auth_uri_suffix() default DEFAULT_AUTH_URI_SUFFIX; // NOSONAR
+
+        @AttributeDefinition(
+                name = "Close Resolvers Asynchronously",
+                description = "Whether the resource resolver of a request is closed on a"
+                        + " background thread once the request has finished instead of on the"
+                        + " request thread. If the background queue is full, the resolver is"
+                        + " closed on the request thread. The default is \"false\".")
+        boolean auth_resolver_close_async() default false; // NOSONAR
+
+        @AttributeDefinition(
+                name = "Resolver Closer Threads",
+                description = "The number of background threads closing resource resolvers"
+                        + " if asynchronous closing is enabled. The default is 2.")
+        int auth_resolver_close_threads() default DEFAULT_RESOLVER_CLOSE_THREADS; // NOSONAR
+
+        @AttributeDefinition(
+                name = "Resolver Closer Queue Size",
+                description = "The maximum number of resource resolvers waiting to be closed"
+                        + " if asynchronous closing is enabled. The default is 1000.")
+        int auth_resolver_close_queue() default DEFAULT_RESOLVER_CLOSE_QUEUE; // NOSONAR
+
+        @AttributeDefinition(
+                name = "Track Resolvers",
+                description = "Whether resource resolvers handed out to requests are tracked to"
+                        + " detect resolvers which are never closed, for example because the"
+                        + " request attribute has been replaced. Leaked resolvers are logged"
+                        + " when the request ends or, if the tracking request attribute has been"
+                        + " removed, once it has been garbage collected. The default is \"false\".")
+        boolean auth_resolver_tracker_enabled() default false; // NOSONAR
+
+        @AttributeDefinition(
+                name = "Resolver Tracker Sampling",
+                description = "Captures the allocation site of every n-th tracked resource"
+                        + " resolver to be logged if it leaks. A value of zero or less disables"
+                        + " capturing allocation sites. The default is 100.")
+        int auth_resolver_tracker_sampling() default DEFAULT_RESOLVER_TRACKER_SAMPLING; // NOSONAR
+
+        @AttributeDefinition(
+                name = "Redirect Target Cache Size",
+                description = "The maximum number of cached decisions whether a redirect target"
+                        + " resolves to an existing resource. Decisions are cached per host, user"
+                        + " and path and dropped whenever the resource resolver mappings change."
+                        + " A value of zero or less disables the cache. The default is 500.")
+        int auth_redirect_cache_size() default DEFAULT_REDIRECT_CACHE_SIZE; // NOSONAR
+
+        @AttributeDefinition(
+                name = "Redirect Target Cache TTL",
+                description = "The time in seconds a decision whether a redirect target resolves"
+                        + " to an existing resource is cached. A value of zero or less disables"
+                        + " the cache. The default is 60.")
+        long auth_redirect_cache_ttl() default DEFAULT_REDIRECT_CACHE_TTL; // NOSONAR
+
+        @AttributeDefinition(
+                name = "Browser User Agents",
+                description = "Substrings of the User-Agent header identifying browsers. Browsers"
+                        + " are sent to a login form while other clients are asked for HTTP Basic"
+                        + " credentials. The default is \"Mozilla\" and \"Opera\".")
+        String[] auth_browser_agents() default { // NOSONAR
+            UserAgentClassifier.BROWSER_AGENT_MOZILLA, UserAgentClassifier.BROWSER_AGENT_OPERA
+        };
+
+        @AttributeDefinition(
+                name = "Non-Browser User Agents",
+                description = "Substrings of the User-Agent header identifying clients which are"
+                        + " never considered browsers even if they match a browser user agent,"
+                        + " for example mobile SDKs embedding a browser engine. The default is"
+                        + " empty.")
+        String[] auth_non_browser_agents() default {}; // NOSONAR
+
+        @AttributeDefinition(
+                name = "User Agent Cache Size",
+                description = "The maximum number of User-Agent values whose classification as"
+                        + " browser or non-browser is cached. A value of zero or less disables"
+                        + " the cache. The default is 1000.")
+        int auth_user_agent_cache_size() default DEFAULT_USER_AGENT_CACHE_SIZE; // NOSONAR
+
+        @AttributeDefinition(
+                name = "Mapping Change Debounce",
+                description = "The time in milliseconds without further resource mapping changes after"
+                        + " which the mapped authentication requirements are recalculated. A burst of"
+                        + " mapping changes is applied in a single recalculation which is delayed by"
+                        + " at most ten times this value. A value of zero or less recalculates on each"
+                        + " change. The default is 500.")
+        long auth_mapping_debounce() default DEFAULT_MAPPING_DEBOUNCE; // NOSONAR
+
+        @AttributeDefinition(
+                name = "Mapping Executor",
+                description = "The threads recalculating the mapped authentication requirement paths"
+                        + " of registered services: \"single\" uses the background thread processing"
+                        + " the requirement changes and \"pool\" a bounded pool of threads. The"
+                        + " default is \"pool\".",
+                options = {
+                    @Option(label = "Single Thread", value = AuthenticationRequirementsManager.EXECUTOR_SINGLE),
+                    @Option(label = "Thread Pool", value = AuthenticationRequirementsManager.EXECUTOR_POOL)
+                })
+        String auth_mapping_executor() default AuthenticationRequirementsManager.EXECUTOR_POOL; // NOSONAR
+
+        @AttributeDefinition(
+                name = "Mapping Parallelism",
+                description = "The number of partitions the mapped authentication requirement paths"
+                        + " of registered services are recalculated in concurrently after a resource"
+                        + " mapping change, which is also the size of the thread pool. Each partition"
+                        + " uses its own service resource resolver. A value of one or less"
+                        + " recalculates on the background thread. The default is 4.")
+        int auth_mapping_parallelism() default DEFAULT_MAPPING_PARALLELISM; // NOSONAR
+
+        @AttributeDefinition(
+                name = "Requirements Snapshot",
+                description = "Whether the mapped authentication requirements of registered services"
+                        + " are saved in the bundle data area and used after a restart until they"
+                        + " are recalculated. A saved entry is only used for a service with the same"
+                        + " bundle, PID and requirements. The default is false.")
+        boolean auth_requirements_snapshot() default false; // NOSONAR
+
+        @AttributeDefinition(
+                name = "Handler Registration Quiet Period",
+                description = "The time in milliseconds without further registrations of"
+                        + " authentication handlers after which newly registered handlers are used."
+                        + " Registrations in a burst, for example at startup, are applied at once and"
+                        + " are delayed by at most ten times this value. Unregistered handlers are"
+                        + " removed immediately. A value of zero or less applies each registration"
+                        + " immediately. The default is 100.")
+        long auth_handler_quiet_period() default DEFAULT_HANDLER_QUIET_PERIOD; // NOSONAR
     }
 
     /** default logger */
@@ -252,6 +395,61 @@ public class SlingAuthenticator implements Authenticator, AuthenticationSupport,
      */
     static final String DEFAULT_AUTH_URI_SUFFIX = "/j_security_check";
 
+    /**
+     * Default number of background threads closing resource resolvers if
+     * asynchronous closing is enabled.
+     */
+    static final int DEFAULT_RESOLVER_CLOSE_THREADS = 2;
+
+    /**
+     * Default maximum number of resource resolvers waiting to be closed if
+     * asynchronous closing is enabled.
+     */
+    static final int DEFAULT_RESOLVER_CLOSE_QUEUE = 1000;
+
+    /**
+     * Default rate at which allocation sites of tracked resource resolvers
+     * are captured.
+     */
+    static final int DEFAULT_RESOLVER_TRACKER_SAMPLING = 100;
+
+    /** Default maximum number of cached redirect target decisions */
+    static final int DEFAULT_REDIRECT_CACHE_SIZE = 500;
+
+    /** Default time in seconds redirect target decisions are cached */
+    static final long DEFAULT_REDIRECT_CACHE_TTL = 60;
+
+    /** Default maximum number of cached User-Agent classifications */
+    static final int DEFAULT_USER_AGENT_CACHE_SIZE = 1000;
+
+    /** Default time in milliseconds mapping changes are debounced */
+    static final long DEFAULT_MAPPING_DEBOUNCE = 500;
+
+    /** Default number of threads recalculating mappings */
+    static final int DEFAULT_MAPPING_PARALLELISM = 4;
+
+    /** Default time in milliseconds handler registrations are buffered */
+    static final long DEFAULT_HANDLER_QUIET_PERIOD = 100;
+
+    /**
+     * The name of the request attribute holding the tracking handle of the
+     * resource resolver if resolver tracking is enabled.
+     */
+    private static final String REQUEST_ATTRIBUTE_RESOLVER_TRACKER = SlingAuthenticator.class.getName() + ".tracker";
+
+    /** The name of the gauge providing the number of tracked open resource resolvers */
+    static final String RESOLVER_OPEN_GAUGE_NAME = "sling.auth.core.resolver.open";
+
+    /** The name of the gauge providing the number of resource resolvers waiting to be closed */
+    static final String RESOLVER_CLOSE_BACKLOG_GAUGE_NAME = "sling.auth.core.resolver.close.backlog";
+
+    /**
+     * The name of the request attribute caching whether the request URI ends
+     * with one of the configured authentication URI suffixes.
+     */
+    private static final String REQUEST_ATTRIBUTE_AUTH_URI_SUFFIX_MATCH =
+            SlingAuthenticator.class.getName() + ".authUriSuffixMatch";
+
     /**
      * The name of the form submission parameter providing the new password of
      * the user (value is "j_newpassword").
@@ -263,7 +461,7 @@ public class SlingAuthenticator implements Authenticator, AuthenticationSupport,
      * {@link org.apache.sling.auth.core.spi.AuthenticationFeedbackHandler}
      * handler to be called back on login failure or success.
      */
-    private static final String AUTH_INFO_PROP_FEEDBACK_HANDLER = "$$sling.auth.AuthenticationFeedbackHandler$$";
+    static final String AUTH_INFO_PROP_FEEDBACK_HANDLER = "$$sling.auth.AuthenticationFeedbackHandler$$";
 
     /** The name of the impersonation parameter */
     private volatile String sudoParameterName;
@@ -280,6 +478,9 @@ public class SlingAuthenticator implements Authenticator, AuthenticationSupport,
      */
     private volatile String[] authUriSuffices; // NOSONAR
 
+    /** The {@link #authUriSuffices} compiled for matching request URIs */
+    private volatile AuthUriSuffixMatcher authUriSuffixMatcher = AuthUriSuffixMatcher.EMPTY;
+
     /**
      * The name of the user to assume for anonymous access. By default this is
      * <code>null</code> to use <code>null</code> credentials and thus use the
@@ -300,6 +501,30 @@ public class SlingAuthenticator implements Authenticator, AuthenticationSupport,
     /** HTTP Basic authentication handler */
     private volatile HttpBasicAuthenticationHandler httpBasicHandler; // NOSONAR
 
+    /** Whether to send the HTTP Basic 401 response without asking any handler */
+    private volatile boolean fastChallenge;
+
+    /** Classifies requests as being sent by browsers or other clients */
+    private volatile UserAgentClassifier userAgentClassifier; // NOSONAR
+
+    /**
+     * The closer for resource resolvers of finished requests. This is
+     * <code>null</code> if resolvers are closed synchronously.
+     */
+    private volatile ResourceResolverCloser resolverCloser; // NOSONAR
+
+    /**
+     * The tracker of resource resolvers handed out to requests. This is
+     * <code>null</code> if resolver tracking is disabled.
+     */
+    private volatile ResourceResolverTracker resolverTracker; // NOSONAR
+
+    /** The registration of the gauge of open resource resolvers */
+    private final ServiceRegistration<?> openResolversGauge;
+
+    /** The registration of the gauge of resource resolvers waiting to be closed */
+    private final ServiceRegistration<?> closeBacklogGauge;
+
     /**
      * The manager for services registered with "sling.auth.requirements" to
      * update the internal authentication requirements
@@ -311,6 +536,20 @@ public class SlingAuthenticator implements Authenticator, AuthenticationSupport,
      */
     private final PathBasedHolderCache<AbstractAuthenticationHandlerHolder> authHandlersManager;
 
+    /**
+     * The cache of redirect target decisions provided to
+     * <code>AuthUtil.isRedirectValid</code>. This may be <code>null</code>.
+     */
+    private final RedirectTargetCache redirectTargetCache;
+
+    /**
+     * The function backed by the {@link #redirectTargetCache} set as the
+     * {@link AuthConstants#ATTR_REQUEST_RESOURCE_EXISTS} request attribute.
+     * It is shared by all requests and reads the resource resolver from the
+     * request. This may be <code>null</code>.
+     */
+    private final BiPredicate<HttpServletRequest, String> resourceExists;
+
     /**
      * JakartaAuthenticationInfoPostProcessor services
      */
@@ -381,7 +620,30 @@ public class SlingAuthenticator implements Authenticator, AuthenticationSupport,
 
         this.authenticationRequirementsManager = authReqManager;
         this.authHandlersManager = authHandlerManager;
+        this.redirectTargetCache = authReqManager.getRedirectTargetCache();
+        this.resourceExists = this.redirectTargetCache == null ? null : this.redirectTargetCache::resourceExists;
         this.modified(config);
+
+        this.openResolversGauge = registerGauge(bundleContext, RESOLVER_OPEN_GAUGE_NAME, this::getOpenResolverCount);
+        this.closeBacklogGauge =
+                registerGauge(bundleContext, RESOLVER_CLOSE_BACKLOG_GAUGE_NAME, this::getResolverCloseBacklog);
+    }
+
+    private static ServiceRegistration<?> registerGauge(
+            final BundleContext bundleContext, final String name, final Gauge<Integer> gauge) {
+        final Dictionary<String, Object> gaugeProps = new Hashtable<>();
+        gaugeProps.put(Gauge.NAME, name);
+        return bundleContext.registerService(Gauge.class, gauge, gaugeProps);
+    }
+
+    private static void unregisterGauge(final ServiceRegistration<?> registration) {
+        if (registration != null) {
+            try {
+                registration.unregister();
+            } catch (final IllegalStateException ise) {
+                // already unregistered
+            }
+        }
     }
 
     @Modified
@@ -414,6 +676,10 @@ public class SlingAuthenticator implements Authenticator, AuthenticationSupport,
         }
 
         this.authUriSuffices = config.auth_uri_suffix();
+        this.authUriSuffixMatcher = AuthUriSuffixMatcher.compile(this.authUriSuffices);
+
+        this.userAgentClassifier = new UserAgentClassifier(
+                config.auth_browser_agents(), config.auth_non_browser_agents(), config.auth_user_agent_cache_size());
 
         if (!config.auth_annonymous()) {
             log.info("modified: Anonymous Access is denied thus HTTP Basic Authentication is fully enabled");
@@ -426,6 +692,60 @@ public class SlingAuthenticator implements Authenticator, AuthenticationSupport,
             this.httpBasicHandler =
                     new HttpBasicAuthenticationHandler(config.auth_http_realm(), HTTP_AUTH_ENABLED.equals(http));
         }
+        this.fastChallenge = config.auth_http_fast_challenge() && HTTP_AUTH_ENABLED.equals(http);
+
+        final ResourceResolverCloser oldCloser = this.resolverCloser;
+        if (config.auth_resolver_close_async()) {
+            log.info(
+                    "modified: Closing resource resolvers asynchronously using {} threads and a queue of {}",
+                    config.auth_resolver_close_threads(),
+                    config.auth_resolver_close_queue());
+            this.resolverCloser = new ResourceResolverCloser(
+                    config.auth_resolver_close_threads(), config.auth_resolver_close_queue());
+        } else {
+            this.resolverCloser = null;
+        }
+        if (oldCloser != null) {
+            oldCloser.shutdown();
+        }
+
+        if (config.auth_resolver_tracker_enabled()) {
+            log.info(
+                    "modified: Tracking resource resolvers, capturing every {}th allocation site",
+                    config.auth_resolver_tracker_sampling());
+            this.resolverTracker = new ResourceResolverTracker(config.auth_resolver_tracker_sampling());
+        } else {
+            this.resolverTracker = null;
+        }
+    }
+
+    @Deactivate
+    private void deactivate() {
+        unregisterGauge(this.openResolversGauge);
+        unregisterGauge(this.closeBacklogGauge);
+        final ResourceResolverCloser closer = this.resolverCloser;
+        this.resolverCloser = null;
+        if (closer != null) {
+            closer.shutdown();
+        }
+    }
+
+    /**
+     * Returns the number of tracked resource resolvers handed out to requests
+     * and not closed yet, <code>0</code> if resolver tracking is disabled.
+     */
+    int getOpenResolverCount() {
+        final ResourceResolverTracker tracker = this.resolverTracker;
+        return tracker == null ? 0 : tracker.getOpenCount();
+    }
+
+    /**
+     * Returns the number of resource resolvers waiting to be closed,
+     * <code>0</code> if resource resolvers are closed synchronously.
+     */
+    int getResolverCloseBacklog() {
+        final ResourceResolverCloser closer = this.resolverCloser;
+        return closer == null ? 0 : closer.getBacklog();
     }
 
     /**
@@ -463,59 +783,213 @@ public class SlingAuthenticator implements Authenticator, AuthenticationSupport,
      */
     @Override
     public boolean handleSecurity(HttpServletRequest request, HttpServletResponse response) {
-        // 0. Nothing to do, if the session is also in the request
-        // this might be the case if the request is handled as a result
-        // of a servlet container include inside another Sling request
-        Object sessionAttr = request.getAttribute(REQUEST_ATTRIBUTE_RESOLVER);
-        if (sessionAttr instanceof ResourceResolver) {
-            log.debug("handleSecurity: Request already authenticated, nothing to do");
+        if (isAuthenticated(request)) {
             return true;
-        } else if (sessionAttr != null) {
-            // warn and remove existing non-session
-            log.warn("handleSecurity: Overwriting existing ResourceResolver attribute ({})", sessionAttr);
-            request.removeAttribute(REQUEST_ATTRIBUTE_RESOLVER);
+        }
+
+        if (fastChallenge(request, response)) {
+            return false;
         }
 
         boolean process = false;
         final SlingAuthenticationMetrics local = this.metricsService;
         final Closeable ctx = local != null ? local.authenticationTimerContext() : null;
         try {
-            process = doHandleSecurity(request, response);
-            if (process && expectAuthenticationHandler(request)) {
-                log.warn("handleSecurity: AuthenticationHandler did not block request; access denied");
-                request.removeAttribute(JakartaAuthenticationHandler.FAILURE_REASON);
-                request.removeAttribute(JakartaAuthenticationHandler.FAILURE_REASON_CODE);
-                AuthUtil.sendInvalid(request, response);
-                process = false;
-            }
+            process = checkAuthenticationHandler(request, response, doHandleSecurity(request, response));
         } finally {
+            authenticationCompleted(local, ctx, process);
+        }
+        return process;
+    }
+
+    /**
+     * Asynchronous variant of
+     * {@link #handleSecurity(HttpServletRequest, HttpServletResponse)}. If no
+     * {@link JakartaAsyncAuthenticationHandler} is applicable to the request,
+     * the blocking variant is called. Otherwise the remainder of the
+     * authentication is run once the asynchronous handler has extracted the
+     * credentials.
+     * <p>
+     * Requests challenged without consulting the authentication handlers are
+     * answered immediately like in the blocking variant.
+     * <p>
+     * If the request is not in asynchronous mode, the calling thread blocks
+     * until the authentication completes and an already completed stage is
+     * returned. The container would otherwise commit the response when the
+     * calling thread returns, before the authentication has sent its
+     * response or set the request attributes.
+     */
+    @Override
+    public CompletionStage<Boolean> handleSecurityAsync(
+            final HttpServletRequest request, final HttpServletResponse response) {
+        if (isAuthenticated(request)) {
+            return CompletableFuture.completedFuture(Boolean.TRUE);
+        }
+
+        if (fastChallenge(request, response)) {
+            return CompletableFuture.completedFuture(Boolean.FALSE);
+        }
+
+        final List<AbstractAuthenticationHandlerHolder> holders = getAsyncApplicableHolders(request);
+        if (holders == null) {
+            return CompletableFuture.completedFuture(handleSecurity(request, response));
+        }
+
+        final SlingAuthenticationMetrics local = this.metricsService;
+        final Closeable ctx = local != null ? local.authenticationTimerContext() : null;
+        CompletableFuture<Boolean> result;
+        try {
+            setAuthUriSuffixAttribute(request);
+            result = extractCredentialsAsync(holders, 0, request, response)
+                    .thenApply(authInfo -> checkAuthenticationHandler(
+                            request, response, doHandleSecurity(request, response, authInfo)))
+                    .toCompletableFuture();
+        } catch (final RuntimeException re) {
+            result = CompletableFuture.failedFuture(re);
+        }
+        result = result.whenComplete(
+                (process, error) -> authenticationCompleted(local, ctx, Boolean.TRUE.equals(process)));
+
+        if (!request.isAsyncStarted()) {
+            log.debug("handleSecurityAsync: Request not in asynchronous mode, waiting for authentication");
+            try {
+                return CompletableFuture.completedFuture(result.join());
+            } catch (final CompletionException ce) {
+                return CompletableFuture.failedFuture(ce.getCause());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Sends the fast challenge if enabled and applicable to the request.
+     *
+     * @return <code>true</code> if the challenge was sent and the request is
+     *         terminated
+     */
+    private boolean fastChallenge(final HttpServletRequest request, final HttpServletResponse response) {
+        if (this.fastChallenge && sendFastChallenge(request, response)) {
+            final SlingAuthenticationMetrics local = this.metricsService;
             if (local != null) {
-                try {
-                    ctx.close();
-                } catch (final IOException e) {
-                    // ignore
-                }
-                local.authenticateCompleted(process);
+                local.authenticateCompleted(false);
             }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns <code>true</code> if the request has already been authenticated.
+     * This might be the case if the request is handled as a result of a
+     * servlet container include inside another Sling request.
+     */
+    private boolean isAuthenticated(final HttpServletRequest request) {
+        Object sessionAttr = request.getAttribute(REQUEST_ATTRIBUTE_RESOLVER);
+        if (sessionAttr instanceof ResourceResolver) {
+            log.debug("handleSecurity: Request already authenticated, nothing to do");
+            return true;
+        } else if (sessionAttr != null) {
+            // warn and remove existing non-session
+            log.warn("handleSecurity: Overwriting existing ResourceResolver attribute ({})", sessionAttr);
+            request.removeAttribute(REQUEST_ATTRIBUTE_RESOLVER);
+        }
+        return false;
+    }
+
+    /**
+     * Sends the HTTP Basic 401 response for requests which cannot be
+     * authenticated other than by HTTP Basic authentication: requests from
+     * non-browser clients without any Authorization header or cookie, which
+     * are neither validation requests nor expected to be handled by an
+     * authentication handler and for which anonymous access is not allowed.
+     *
+     * @return <code>true</code> if the 401 response has been sent
+     */
+    private boolean sendFastChallenge(final HttpServletRequest request, final HttpServletResponse response) {
+        final HttpBasicAuthenticationHandler basic = this.httpBasicHandler;
+        if (basic == null || request.getHeader(HttpBasicAuthenticationHandler.HEADER_AUTHORIZATION) != null) {
+            return false;
+        }
+        final Cookie[] cookies = request.getCookies();
+        if (cookies != null && cookies.length > 0) {
+            return false;
+        }
+        if (this.userAgentClassifier.isBrowserRequest(request)
+                || AuthUtil.isValidateRequest(request)
+                || expectAuthenticationHandler(request)
+                || isAnonAllowed(request)
+                || AuthUtil.getAttributeOrParameter(request, JakartaAuthenticationHandler.REQUEST_LOGIN_PARAMETER, null)
+                        != null) {
+            return false;
+        }
+
+        log.debug("handleSecurity: No credentials from non-browser client, requesting HTTP Basic authentication");
+        return basic.sendUnauthorized(response);
+    }
+
+    /**
+     * Denies access if request processing should continue even though the
+     * request is expected to be handled by an authentication handler.
+     *
+     * @return <code>process</code> unless access is denied
+     */
+    private boolean checkAuthenticationHandler(
+            final HttpServletRequest request, final HttpServletResponse response, final boolean process) {
+        if (process && expectAuthenticationHandler(request)) {
+            log.warn("handleSecurity: AuthenticationHandler did not block request; access denied");
+            request.removeAttribute(JakartaAuthenticationHandler.FAILURE_REASON);
+            request.removeAttribute(JakartaAuthenticationHandler.FAILURE_REASON_CODE);
+            AuthUtil.sendInvalid(request, response);
+            return false;
         }
         return process;
     }
 
-    private boolean doHandleSecurity(HttpServletRequest request, HttpServletResponse response) {
+    private void authenticationCompleted(
+            final SlingAuthenticationMetrics local, final Closeable ctx, final boolean process) {
+        if (local != null) {
+            try {
+                ctx.close();
+            } catch (final IOException e) {
+                // ignore
+            }
+            local.authenticateCompleted(process);
+        }
+    }
 
-        // 0. Check for request attribute; set if not present
+    private void loginFailed() {
+        final SlingAuthenticationMetrics local = this.metricsService;
+        if (local != null) {
+            local.loginFailed();
+        }
+    }
+
+    private void setAuthUriSuffixAttribute(final HttpServletRequest request) {
         Object authUriSufficesAttr = request.getAttribute(AuthConstants.ATTR_REQUEST_AUTH_URI_SUFFIX);
         if (authUriSufficesAttr == null && authUriSuffices != null) {
             request.setAttribute(AuthConstants.ATTR_REQUEST_AUTH_URI_SUFFIX, authUriSuffices);
         }
+    }
+
+    private boolean doHandleSecurity(HttpServletRequest request, HttpServletResponse response) {
+
+        // 0. Check for request attribute; set if not present
+        setAuthUriSuffixAttribute(request);
 
         // 1. Ask all authentication handlers to try to extract credentials
         final AuthenticationInfo authInfo = getAuthenticationInfo(request, response);
 
+        return doHandleSecurity(request, response, authInfo);
+    }
+
+    private boolean doHandleSecurity(
+            final HttpServletRequest request, final HttpServletResponse response, final AuthenticationInfo authInfo) {
+
         // 2. PostProcess credentials
         try {
             postProcess(authInfo, request, response);
         } catch (LoginException e) {
+            loginFailed();
             postLoginFailedEvent(request, authInfo, e);
 
             handleLoginFailure(request, response, authInfo, e);
@@ -551,8 +1025,8 @@ public class SlingAuthenticator implements Authenticator, AuthenticationSupport,
     public void finishSecurity(HttpServletRequest request, HttpServletResponse response) {
         Object resolverAttr = request.getAttribute(REQUEST_ATTRIBUTE_RESOLVER);
         if (resolverAttr instanceof ResourceResolver) {
-            ((ResourceResolver) resolverAttr).close();
             request.removeAttribute(REQUEST_ATTRIBUTE_RESOLVER);
+            closeResolver(request, (ResourceResolver) resolverAttr);
         }
     }
 
@@ -711,13 +1185,36 @@ public class SlingAuthenticator implements Authenticator, AuthenticationSupport,
         ServletRequest request = sre.getServletRequest();
         Object resolverAttr = request.getAttribute(REQUEST_ATTRIBUTE_RESOLVER);
         if (resolverAttr instanceof ResourceResolver) {
-            ((ResourceResolver) resolverAttr).close();
             request.removeAttribute(REQUEST_ATTRIBUTE_RESOLVER);
+            closeResolver(request, (ResourceResolver) resolverAttr);
         }
     }
 
     // ---------- internal
 
+    /**
+     * Closes the resource resolver of a finished request, either directly or
+     * by handing it over to the {@link #resolverCloser} if asynchronous
+     * closing is enabled.
+     *
+     * @param request The request whose resolver is closed
+     * @param resolver The resolver to close
+     */
+    private void closeResolver(final ServletRequest request, final ResourceResolver resolver) {
+        final Object tracked = request.getAttribute(REQUEST_ATTRIBUTE_RESOLVER_TRACKER);
+        if (tracked instanceof ResourceResolverTracker.TrackedResolver) {
+            request.removeAttribute(REQUEST_ATTRIBUTE_RESOLVER_TRACKER);
+            ((ResourceResolverTracker.TrackedResolver) tracked).closed(resolver);
+        }
+
+        final ResourceResolverCloser closer = this.resolverCloser;
+        if (closer != null) {
+            closer.close(resolver, this.metricsService);
+        } else {
+            resolver.close();
+        }
+    }
+
     /**
      * Get the request path from the request
      * @param request The request
@@ -755,18 +1252,88 @@ public class SlingAuthenticator implements Authenticator, AuthenticationSupport,
                     if (holder.isPathRequiresHandler(path)) {
                         final AuthenticationInfo authInfo = holder.extractCredentials(request, response);
                         if (authInfo != null) {
-                            // skip the put call for known read-only objects
-                            if (authInfo != AuthenticationInfo.DOING_AUTH && authInfo != AuthenticationInfo.FAIL_AUTH) {
-                                // add the feedback handler to the info (may be null)
-                                authInfo.put(AUTH_INFO_PROP_FEEDBACK_HANDLER, holder.getFeedbackHandler());
-                            }
-                            return authInfo;
+                            return addFeedbackHandler(holder, authInfo);
                         }
                     }
                 }
             }
         }
 
+        return getDefaultAuthenticationInfo(request, response);
+    }
+
+    /**
+     * Returns the authentication handlers applicable to the request in the
+     * order in which they are asked for credentials, or <code>null</code> if
+     * none of them extracts credentials asynchronously.
+     */
+    private List<AbstractAuthenticationHandlerHolder> getAsyncApplicableHolders(final HttpServletRequest request) {
+        final String path = getPath(request);
+
+        boolean async = false;
+        final List<AbstractAuthenticationHandlerHolder> holders = new ArrayList<>();
+        for (final Collection<AbstractAuthenticationHandlerHolder> local :
+                this.authHandlersManager.findApplicableHolders(request)) {
+            if (local != null) {
+                for (AbstractAuthenticationHandlerHolder holder : local) {
+                    if (holder.isPathRequiresHandler(path)) {
+                        holders.add(holder);
+                        async |= holder.isAsync();
+                    }
+                }
+            }
+        }
+        return async ? holders : null;
+    }
+
+    /**
+     * Asks the authentication handlers starting at <code>index</code> to
+     * extract credentials. Handlers extracting credentials asynchronously are
+     * not waited for, the remaining handlers are asked once the stage
+     * returned by such a handler completes without credentials.
+     */
+    private CompletionStage<AuthenticationInfo> extractCredentialsAsync(
+            final List<AbstractAuthenticationHandlerHolder> holders,
+            final int index,
+            final HttpServletRequest request,
+            final HttpServletResponse response) {
+        for (int i = index; i < holders.size(); i++) {
+            final AbstractAuthenticationHandlerHolder holder = holders.get(i);
+            if (holder.isAsync()) {
+                final int next = i + 1;
+                return holder.extractCredentialsAsync(request, response).thenCompose(authInfo -> {
+                    if (authInfo != null) {
+                        return CompletableFuture.completedFuture(addFeedbackHandler(holder, authInfo));
+                    }
+                    return extractCredentialsAsync(holders, next, request, response);
+                });
+            }
+
+            final AuthenticationInfo authInfo = holder.extractCredentials(request, response);
+            if (authInfo != null) {
+                return CompletableFuture.completedFuture(addFeedbackHandler(holder, authInfo));
+            }
+        }
+
+        return CompletableFuture.completedFuture(getDefaultAuthenticationInfo(request, response));
+    }
+
+    private AuthenticationInfo addFeedbackHandler(
+            final AbstractAuthenticationHandlerHolder holder, final AuthenticationInfo authInfo) {
+        // skip the put call for known read-only objects
+        if (authInfo != AuthenticationInfo.DOING_AUTH && authInfo != AuthenticationInfo.FAIL_AUTH) {
+            // add the feedback handler to the info (may be null)
+            authInfo.put(AUTH_INFO_PROP_FEEDBACK_HANDLER, holder.getFeedbackHandler());
+        }
+        return authInfo;
+    }
+
+    /**
+     * Returns the credentials extracted by the HTTP Basic handler or the
+     * anonymous credentials if no authentication handler extracted any.
+     */
+    private AuthenticationInfo getDefaultAuthenticationInfo(
+            final HttpServletRequest request, final HttpServletResponse response) {
         // check whether the HTTP Basic handler can extract the header
         if (httpBasicHandler != null) {
             final AuthenticationInfo authInfo = httpBasicHandler.extractCredentials(request, response);
@@ -857,6 +1424,7 @@ public class SlingAuthenticator implements Authenticator, AuthenticationSupport,
             return processRequest;
 
         } catch (LoginException re) {
+            loginFailed();
             postLoginFailedEvent(request, authInfo, re);
 
             // handle failure feedback before proceeding to handling the
@@ -877,15 +1445,14 @@ public class SlingAuthenticator implements Authenticator, AuthenticationSupport,
     }
 
     private boolean expectAuthenticationHandler(final HttpServletRequest request) {
-        if (this.authUriSuffices != null) {
-            final String requestUri = request.getRequestURI();
-            for (final String uriSuffix : this.authUriSuffices) {
-                if (requestUri.endsWith(uriSuffix)) {
-                    return true;
-                }
-            }
+        final Object cached = request.getAttribute(REQUEST_ATTRIBUTE_AUTH_URI_SUFFIX_MATCH);
+        if (cached instanceof Boolean) {
+            return (Boolean) cached;
         }
-        return false;
+
+        final boolean match = this.authUriSuffixMatcher.matches(request.getRequestURI());
+        request.setAttribute(REQUEST_ATTRIBUTE_AUTH_URI_SUFFIX_MATCH, match);
+        return match;
     }
 
     /** Try to acquire an anonymous ResourceResolver */
@@ -962,7 +1529,7 @@ public class SlingAuthenticator implements Authenticator, AuthenticationSupport,
      * the user name and password fields are just <code>null</code>.
      */
     private AuthenticationInfo getAnonymousCredentials() {
-        AuthenticationInfo info = new AuthenticationInfo(null);
+        AuthenticationInfo info = new CompactAuthenticationInfo(null, null, null);
         if (this.anonUser != null) {
             info.setUser(this.anonUser);
             info.setPassword(this.anonPassword);
@@ -1108,7 +1675,7 @@ public class SlingAuthenticator implements Authenticator, AuthenticationSupport,
 
         if (!AuthUtil.isValidateRequest(request)) {
 
-            if (AuthUtil.isBrowserRequest(request)) {
+            if (this.userAgentClassifier.isBrowserRequest(request)) {
 
                 if (!AuthUtil.isAjaxRequest(request) && !isLoginLoop(request)) {
                     try {
@@ -1221,6 +1788,18 @@ public class SlingAuthenticator implements Authenticator, AuthenticationSupport,
         // resource resolver for down-stream use
         request.setAttribute(REQUEST_ATTRIBUTE_RESOLVER, resolver);
 
+        final ResourceResolverTracker tracker = this.resolverTracker;
+        if (tracker != null) {
+            request.setAttribute(
+                    REQUEST_ATTRIBUTE_RESOLVER_TRACKER,
+                    tracker.track(resolver, authType, request.getRequestURI()));
+        }
+
+        final RedirectTargetCache cache = this.redirectTargetCache;
+        if (cache != null && cache.isEnabled()) {
+            request.setAttribute(AuthConstants.ATTR_REQUEST_RESOURCE_EXISTS, this.resourceExists);
+        }
+
         log.debug("setAttributes: ResourceResolver stored as request attribute: user={}", resolver.getUserID());
     }
 
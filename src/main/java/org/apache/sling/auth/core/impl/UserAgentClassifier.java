@@ -0,0 +1,191 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.auth.core.impl;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+/**
+ * The <code>UserAgentClassifier</code> decides whether a request is sent by
+ * a browser based on its <code>User-Agent</code> header.
+ * <p>
+ * A <code>User-Agent</code> containing any of the configured non-browser
+ * substrings is never considered a browser. Otherwise it is considered a
+ * browser if it contains any of the configured browser substrings. With the
+ * default rules this is the same decision as taken by
+ * <code>AuthUtil.isBrowserRequest</code>.
+ * <p>
+ * Decisions for recently seen <code>User-Agent</code> values are kept in a
+ * bounded least recently used cache. The cache is split into stripes, each
+ * guarded by its own lock, to reduce contention between concurrent requests.
+ */
+final class UserAgentClassifier {
+
+    /** The substring identifying Mozilla compatible browsers */
+    static final String BROWSER_AGENT_MOZILLA = "Mozilla";
+
+    /** The substring identifying Opera browsers */
+    static final String BROWSER_AGENT_OPERA = "Opera";
+
+    /** The default substrings identifying browsers */
+    static final String[] DEFAULT_BROWSER_AGENTS = {BROWSER_AGENT_MOZILLA, BROWSER_AGENT_OPERA};
+
+    /** The name of the User-Agent request header */
+    private static final String USER_AGENT = "User-Agent";
+
+    /** The number of cache stripes, must be a power of two */
+    private static final int STRIPES = 16;
+
+    /** User-Agent values longer than this are not cached */
+    private static final int MAX_CACHED_LENGTH = 512;
+
+    private final String[] browserAgents;
+
+    private final String[] nonBrowserAgents;
+
+    private final Stripe[] stripes;
+
+    /**
+     * Creates a new classifier
+     *
+     * @param browserAgents The substrings identifying browsers. If this is
+     *            <code>null</code> the {@link #DEFAULT_BROWSER_AGENTS} are
+     *            used.
+     * @param nonBrowserAgents The substrings identifying clients never to be
+     *            considered browsers, may be <code>null</code>
+     * @param cacheSize The maximum number of cached decisions. Zero or less
+     *            disables caching.
+     */
+    UserAgentClassifier(final String[] browserAgents, final String[] nonBrowserAgents, final int cacheSize) {
+        this.browserAgents = clean(browserAgents == null ? DEFAULT_BROWSER_AGENTS : browserAgents);
+        this.nonBrowserAgents = clean(nonBrowserAgents);
+        if (cacheSize > 0) {
+            final int stripeSize = Math.max(1, cacheSize / STRIPES);
+            this.stripes = new Stripe[STRIPES];
+            for (int i = 0; i < STRIPES; i++) {
+                this.stripes[i] = new Stripe(stripeSize);
+            }
+        } else {
+            this.stripes = null;
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if the request is considered to be sent by a
+     * browser
+     */
+    boolean isBrowserRequest(final HttpServletRequest request) {
+        return isBrowser(request.getHeader(USER_AGENT));
+    }
+
+    /**
+     * Returns <code>true</code> if the <code>userAgent</code> is considered
+     * to be a browser
+     */
+    boolean isBrowser(final String userAgent) {
+        if (userAgent == null) {
+            return false;
+        }
+        if (this.stripes == null || userAgent.length() > MAX_CACHED_LENGTH) {
+            return classify(userAgent);
+        }
+
+        final int hash = userAgent.hashCode();
+        final Stripe stripe = this.stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+        final Boolean cached = stripe.get(userAgent);
+        if (cached != null) {
+            return cached;
+        }
+
+        final boolean browser = classify(userAgent);
+        stripe.put(userAgent, browser);
+        return browser;
+    }
+
+    private boolean classify(final String userAgent) {
+        for (final String agent : this.nonBrowserAgents) {
+            if (userAgent.contains(agent)) {
+                return false;
+            }
+        }
+        for (final String agent : this.browserAgents) {
+            if (userAgent.contains(agent)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String[] clean(final String[] agents) {
+        if (agents == null) {
+            return new String[0];
+        }
+        int count = 0;
+        final String[] result = new String[agents.length];
+        for (final String agent : agents) {
+            if (agent != null && !agent.trim().isEmpty()) {
+                result[count++] = agent.trim();
+            }
+        }
+        final String[] cleaned = new String[count];
+        System.arraycopy(result, 0, cleaned, 0, count);
+        return cleaned;
+    }
+
+    /** A least recently used cache segment guarded by its own lock */
+    private static final class Stripe {
+
+        private final Lock lock = new ReentrantLock();
+
+        private final Map<String, Boolean> entries;
+
+        Stripe(final int maxEntries) {
+            this.entries = new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<String, Boolean> eldest) {
+                    return size() > maxEntries;
+                }
+            };
+        }
+
+        Boolean get(final String userAgent) {
+            this.lock.lock();
+            try {
+                return this.entries.get(userAgent);
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        void put(final String userAgent, final boolean browser) {
+            this.lock.lock();
+            try {
+                this.entries.put(userAgent, browser);
+            } finally {
+                this.lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.auth.core.impl.hc;
+
+import org.apache.felix.hc.api.FormattingResultLog;
+import org.apache.felix.hc.api.HealthCheck;
+import org.apache.felix.hc.api.Result;
+import org.apache.sling.auth.core.impl.AuthenticationRequirementsManager;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.ConfigurationPolicy;
+import org.osgi.service.component.annotations.Modified;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+
+/**
+ * {@link HealthCheck} failing while the {@link AuthenticationRequirementsManager}
+ * has not yet applied the authentication requirements of registered services,
+ * for example right after startup. This prevents instances from taking
+ * traffic while only part of the requirements are enforced.
+ */
+@Component(
+        service = HealthCheck.class,
+        name = "org.apache.sling.auth.core.AuthenticationRequirementsBacklogHealthCheck",
+        configurationPolicy = ConfigurationPolicy.REQUIRE)
+@Designate(ocd = AuthenticationRequirementsBacklogHealthCheck.Config.class)
+public class AuthenticationRequirementsBacklogHealthCheck implements HealthCheck {
+
+    public static final String HC_LABEL = "Health Check: Authentication Requirements Backlog";
+
+    @ObjectClassDefinition(
+            name = HC_LABEL,
+            description = "Checks that changes to the authentication requirements of registered services are"
+                    + " applied without a large backlog")
+    @interface Config {
+
+        @AttributeDefinition(name = "Name", description = "Name of this health check.")
+        String hc_name() default "Authentication Requirements Backlog Check"; // NOSONAR
+
+        @AttributeDefinition(
+                name = "Tags",
+                description =
+                        "List of tags for this health check, used to select subsets of health checks for execution e.g. by a composite health check.")
+        String[] hc_tags() default {}; // NOSONAR
+
+        @AttributeDefinition(
+                name = "Maximum Backlog",
+                description = "The number of pending requirement changes above which the check is critical."
+                        + " The default is 50.")
+        int max_backlog() default 50; // NOSONAR
+
+        @AttributeDefinition(
+                name = "Maximum Age",
+                description = "The time in milliseconds the oldest pending requirement change may wait before"
+                        + " the check is critical. The default is 10000.")
+        long max_age() default 10000; // NOSONAR
+    }
+
+    private final AuthenticationRequirementsManager manager;
+
+    private volatile Config config;
+
+    @Activate
+    public AuthenticationRequirementsBacklogHealthCheck(
+            @Reference final AuthenticationRequirementsManager manager, final Config config) {
+        this.manager = manager;
+        this.config = config;
+    }
+
+    @Modified
+    protected void modified(final Config config) {
+        this.config = config;
+    }
+
+    @Override
+    public Result execute() {
+        final Config cfg = this.config;
+        final FormattingResultLog resultLog = new FormattingResultLog();
+
+        final int size = manager.getQueueSize();
+        final long age = manager.getOldestPendingAge();
+        if (size > cfg.max_backlog()) {
+            resultLog.critical("{} authentication requirement changes pending, exceeds {}", size, cfg.max_backlog());
+        }
+        if (age > cfg.max_age()) {
+            resultLog.critical(
+                    "Oldest authentication requirement change pending for {} ms, exceeds {} ms", age, cfg.max_age());
+        }
+        resultLog.debug(
+                "{} authentication requirement changes pending, oldest for {} ms, {} processed",
+                size,
+                age,
+                manager.getProcessedCount());
+
+        return new Result(resultLog);
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.auth.core.impl.hc;
+
+import java.util.Locale;
+
+import org.apache.felix.hc.api.FormattingResultLog;
+import org.apache.felix.hc.api.HealthCheck;
+import org.apache.felix.hc.api.Result;
+import org.apache.sling.auth.core.impl.AuthenticationStatistics;
+import org.apache.sling.auth.core.impl.SlingAuthenticationMetrics;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.ConfigurationPolicy;
+import org.osgi.service.component.annotations.Modified;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+
+/**
+ * {@link HealthCheck} verifying the p99 latency and the failure ratio of the
+ * authentications recorded by the {@link SlingAuthenticationMetrics} over a
+ * sliding window against configured thresholds.
+ * <p>
+ * The failure ratio is the ratio of requests with rejected credentials to
+ * all requests either processed after authentication or with rejected
+ * credentials. Challenges for credentials and redirects, which are part of
+ * the normal login flow, are not counted.
+ */
+@Component(
+        service = HealthCheck.class,
+        name = "org.apache.sling.auth.core.AuthenticationSloHealthCheck",
+        configurationPolicy = ConfigurationPolicy.REQUIRE)
+@Designate(ocd = AuthenticationSloHealthCheck.Config.class)
+public class AuthenticationSloHealthCheck implements HealthCheck {
+
+    public static final String HC_LABEL = "Health Check: Authentication SLO";
+
+    @ObjectClassDefinition(
+            name = HC_LABEL,
+            description = "Checks the latency and the failure ratio of authentications against service level"
+                    + " objectives, used to detect degraded repository logins")
+    @interface Config {
+
+        @AttributeDefinition(name = "Name", description = "Name of this health check.")
+        String hc_name() default "Authentication SLO Check"; // NOSONAR
+
+        @AttributeDefinition(
+                name = "Tags",
+                description =
+                        "List of tags for this health check, used to select subsets of health checks for execution e.g. by a composite health check.")
+        String[] hc_tags() default {}; // NOSONAR
+
+        @AttributeDefinition(
+                name = "Window",
+                description = "The sliding window in seconds over which authentications are checked. The"
+                        + " window is rounded up to 30 seconds and limited to 270 seconds. The default is 120.")
+        int window() default 120; // NOSONAR
+
+        @AttributeDefinition(
+                name = "Minimum Authentications",
+                description = "The minimum number of authentications in the window for the thresholds to be"
+                        + " checked. The default is 20.")
+        long min_authentications() default 20; // NOSONAR
+
+        @AttributeDefinition(
+                name = "Latency Warning Threshold",
+                description = "The p99 latency in milliseconds above which the check warns. The default is 1000.")
+        long latency_warn() default 1000; // NOSONAR
+
+        @AttributeDefinition(
+                name = "Latency Critical Threshold",
+                description = "The p99 latency in milliseconds above which the check is critical. The default"
+                        + " is 5000.")
+        long latency_critical() default 5000; // NOSONAR
+
+        @AttributeDefinition(
+                name = "Failure Ratio Warning Threshold",
+                description = "The ratio of authentications with rejected credentials between 0 and 1 above"
+                        + " which the check warns. Challenges and redirects are not counted. The default is 0.2.")
+        double failure_ratio_warn() default 0.2; // NOSONAR
+
+        @AttributeDefinition(
+                name = "Failure Ratio Critical Threshold",
+                description = "The ratio of authentications with rejected credentials between 0 and 1 above"
+                        + " which the check is critical. Challenges and redirects are not counted. The default is"
+                        + " 0.5.")
+        double failure_ratio_critical() default 0.5; // NOSONAR
+    }
+
+    private final SlingAuthenticationMetrics metrics;
+
+    private volatile Config config;
+
+    @Activate
+    public AuthenticationSloHealthCheck(@Reference final SlingAuthenticationMetrics metrics, final Config config) {
+        this.metrics = metrics;
+        this.config = config;
+    }
+
+    @Modified
+    protected void modified(final Config config) {
+        this.config = config;
+    }
+
+    @Override
+    public Result execute() {
+        final Config cfg = this.config;
+        final FormattingResultLog resultLog = new FormattingResultLog();
+        final AuthenticationStatistics.Snapshot snapshot =
+                metrics.getStatistics().snapshot(cfg.window());
+
+        final long total = snapshot.getSuccesses() + snapshot.getFailures();
+        if (total < cfg.min_authentications()) {
+            resultLog.debug(
+                    "Only {} authentications in the last {} seconds, at least {} required to check the thresholds",
+                    total,
+                    cfg.window(),
+                    cfg.min_authentications());
+            return new Result(resultLog);
+        }
+
+        final double p99 = snapshot.getLatencyPercentileMillis(0.99);
+        final String latency = String.format(Locale.ROOT, "%.1f", p99);
+        if (p99 > cfg.latency_critical()) {
+            resultLog.critical("p99 authentication latency {} ms exceeds {} ms", latency, cfg.latency_critical());
+        } else if (p99 > cfg.latency_warn()) {
+            resultLog.warn("p99 authentication latency {} ms exceeds {} ms", latency, cfg.latency_warn());
+        } else {
+            resultLog.debug("p99 authentication latency {} ms", latency);
+        }
+
+        final double ratio = snapshot.getFailureRatio();
+        final String failures = String.format(Locale.ROOT, "%.3f", ratio);
+        if (ratio > cfg.failure_ratio_critical()) {
+            resultLog.critical(
+                    "Authentication failure ratio {} ({} of {}) exceeds {}",
+                    failures,
+                    snapshot.getFailures(),
+                    total,
+                    cfg.failure_ratio_critical());
+        } else if (ratio > cfg.failure_ratio_warn()) {
+            resultLog.warn(
+                    "Authentication failure ratio {} ({} of {}) exceeds {}",
+                    failures,
+                    snapshot.getFailures(),
+                    total,
+                    cfg.failure_ratio_warn());
+        } else {
+            resultLog.debug("Authentication failure ratio {} ({} of {})", failures, snapshot.getFailures(), total);
+        }
+
+        return new Result(resultLog);
+    }
+}
@@ -23,8 +23,26 @@ import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import javax.jcr.SimpleCredentials;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.felix.hc.api.FormattingResultLog;
 import org.apache.felix.hc.api.HealthCheck;
@@ -33,6 +51,7 @@ import org.apache.sling.jcr.api.SlingRepository;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.ConfigurationPolicy;
+import org.osgi.service.component.annotations.Deactivate;
 import org.osgi.service.component.annotations.Reference;
 import org.osgi.service.metatype.annotations.AttributeDefinition;
 import org.osgi.service.metatype.annotations.Designate;
@@ -74,27 +93,134 @@ public class DefaultLoginsHealthCheck implements HealthCheck {
                                 + "is just to check that the default/demo logins, which passwords are known anyway, are disabled.")
         String[] logins() default "logins";
 
+        @AttributeDefinition(
+                name = "Login Timeout",
+                description = "The time in milliseconds to wait for each login, counted from when the"
+                        + " login starts on a thread. A login which does not complete in time is reported"
+                        + " as a failure. The default is 10000.")
+        long login_timeout() default DEFAULT_LOGIN_TIMEOUT; // NOSONAR
+
+        @AttributeDefinition(
+                name = "Login Threads",
+                description = "The number of logins checked in parallel. Threads blocked by logins"
+                        + " which did not complete in time are replaced by up to the same number of"
+                        + " additional threads. The default is 4.")
+        int login_threads() default DEFAULT_LOGIN_THREADS; // NOSONAR
+
+        @AttributeDefinition(
+                name = "Result Cache TTL",
+                description = "The time in seconds the result of the check is reused for further"
+                        + " executions. A value of zero or less checks the logins on every"
+                        + " execution. The default is 0.")
+        long result_cache_ttl() default 0; // NOSONAR
+
         @AttributeDefinition
         String webconsole_configurationFactory_nameHint() default "Default Logins Check: {logins}"; // NOSONAR
     }
 
+    /** Default time in milliseconds to wait for each login */
+    static final long DEFAULT_LOGIN_TIMEOUT = 10000;
+
+    /** Default number of logins checked in parallel */
+    static final int DEFAULT_LOGIN_THREADS = 4;
+
     private List<String> logins;
 
+    private long loginTimeout = DEFAULT_LOGIN_TIMEOUT;
+
+    private int loginThreads = DEFAULT_LOGIN_THREADS;
+
+    private long resultCacheTtlNanos;
+
+    /** Time in seconds after which idle threads of the executor are stopped */
+    private static final long THREAD_KEEP_ALIVE = 60;
+
+    /**
+     * Executor checking the logins, created on activation. It has twice the
+     * number of login threads, so threads blocked by logins which did not
+     * complete in time can be replaced.
+     */
+    private volatile ExecutorService executor; // NOSONAR
+
+    /** Number of threads blocked by logins which did not complete in time */
+    private final AtomicInteger blockedThreads = new AtomicInteger();
+
+    /** The last result and the time it expires, reused until then */
+    private volatile CachedResult cachedResult; // NOSONAR
+
+    /** Lock ensuring concurrent executions wait for a single check */
+    private final Lock executeLock = new ReentrantLock();
+
     @Reference
     private SlingRepository repository;
 
     @Activate
     protected void activate(Config config) {
         this.logins = Arrays.asList(config.logins());
+        this.loginTimeout = config.login_timeout() > 0 ? config.login_timeout() : DEFAULT_LOGIN_TIMEOUT;
+        this.resultCacheTtlNanos = TimeUnit.SECONDS.toNanos(Math.max(0, config.result_cache_ttl()));
+        this.cachedResult = null;
+
+        this.loginThreads = config.login_threads() > 0 ? config.login_threads() : DEFAULT_LOGIN_THREADS;
+        final AtomicInteger threadCounter = new AtomicInteger();
+        final ThreadPoolExecutor pool = new ThreadPoolExecutor(
+                this.loginThreads * 2,
+                this.loginThreads * 2,
+                THREAD_KEEP_ALIVE,
+                TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                runnable -> {
+                    final Thread thread =
+                            new Thread(runnable, "sling-auth-default-logins-hc-" + threadCounter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        pool.allowCoreThreadTimeOut(true);
+        this.executor = pool;
         LOG.info("Activated, logins={}", logins);
     }
 
+    @Deactivate
+    protected void deactivate() {
+        final ExecutorService service = this.executor;
+        this.executor = null;
+        if (service != null) {
+            service.shutdownNow();
+        }
+    }
+
     @Override
     public Result execute() {
+        if (this.resultCacheTtlNanos <= 0) {
+            return check();
+        }
+
+        CachedResult cached = this.cachedResult;
+        if (cached != null && !cached.isExpired()) {
+            return cached.result;
+        }
+
+        this.executeLock.lock();
+        try {
+            // another execution may have checked the logins meanwhile
+            cached = this.cachedResult;
+            if (cached == null || cached.isExpired()) {
+                cached = new CachedResult(check(), System.nanoTime() + this.resultCacheTtlNanos);
+                this.cachedResult = cached;
+            }
+            return cached.result;
+        } finally {
+            this.executeLock.unlock();
+        }
+    }
+
+    private Result check() {
         FormattingResultLog resultLog = new FormattingResultLog();
         int checked = 0;
         int failures = 0;
 
+        final BlockingQueue<LoginTask> completed = new LinkedBlockingQueue<>();
+        final Deque<LoginTask> pending = new ArrayDeque<>();
         for (String login : logins) {
             final String[] parts = login.split(":");
             if (parts.length != 2) {
@@ -104,23 +230,69 @@ public class DefaultLoginsHealthCheck implements HealthCheck {
             checked++;
             final String username = parts[0].trim();
             final String password = parts[1].trim();
-            final Credentials creds = new SimpleCredentials(username, password.toCharArray());
-            Session s = null;
-            try {
-                s = repository.login(creds);
-                if (s != null) {
-                    failures++;
-                    resultLog.warn("Login as [{}] succeeded, was expecting it to fail", username);
-                } else {
-                    resultLog.debug("Login as [{}] didn't throw an Exception but returned null Session", username);
+            pending.add(new LoginTask(username, () -> login(username, password), completed, blockedThreads));
+        }
+
+        // each login is timed from when it starts on a thread
+        final long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(loginTimeout);
+        final List<LoginTask> running = new ArrayList<>();
+        try {
+            while (!pending.isEmpty() || !running.isEmpty()) {
+                // threads blocked by earlier logins are replaced up to the number of login threads
+                while (running.size() < loginThreads
+                        && running.size() + blockedThreads.get() < loginThreads * 2
+                        && !pending.isEmpty()) {
+                    final LoginTask task = pending.poll();
+                    running.add(task);
+                    start(task);
                 }
-            } catch (RepositoryException re) {
-                resultLog.debug("Login as [{}] failed, as expected", username);
-            } finally {
-                if (s != null) {
-                    s.logout();
+                if (running.isEmpty()) {
+                    // all threads are blocked by logins which did not complete in time
+                    for (final LoginTask task : pending) {
+                        failures++;
+                        resultLog.warn("Login as [{}] not checked, no thread available", task.username);
+                    }
+                    break;
+                }
+
+                final long now = System.nanoTime();
+                long wait = timeoutNanos;
+                final Iterator<LoginTask> iter = running.iterator();
+                while (iter.hasNext()) {
+                    final LoginTask task = iter.next();
+                    if (task.started && !task.isDone()) {
+                        final long remaining = task.startTime + timeoutNanos - now;
+                        if (remaining <= 0) {
+                            // the thread may stay blocked, it is replaced for further logins
+                            iter.remove();
+                            task.abandon();
+                            failures++;
+                            resultLog.warn("Login as [{}] did not complete within {} ms", task.username, loginTimeout);
+                        } else {
+                            wait = Math.min(wait, remaining);
+                        }
+                    }
+                }
+                if (running.isEmpty()) {
+                    continue;
+                }
+
+                LoginTask task = completed.poll(wait, TimeUnit.NANOSECONDS);
+                while (task != null) {
+                    if (running.remove(task) && !report(task, resultLog)) {
+                        failures++;
+                    }
+                    task = completed.poll();
                 }
             }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            running.addAll(pending);
+            for (final LoginTask task : running) {
+                task.cancel(true);
+                failures++;
+                resultLog.warn("Interrupted waiting for login as [{}]", task.username);
+            }
         }
 
         if (checked == 0) {
@@ -133,4 +305,162 @@ public class DefaultLoginsHealthCheck implements HealthCheck {
 
         return new Result(resultLog);
     }
+
+    /**
+     * Logs the outcome of a completed login.
+     * @return <code>true</code> if the login failed as expected
+     */
+    private static boolean report(final LoginTask task, final FormattingResultLog resultLog) {
+        try {
+            final LoginOutcome outcome = task.get();
+            if (outcome.failure != null) {
+                resultLog.debug("Login as [{}] failed, as expected ({} ms)", task.username, outcome.millis);
+            } else if (outcome.succeeded) {
+                resultLog.warn(
+                        "Login as [{}] succeeded, was expecting it to fail ({} ms)", task.username, outcome.millis);
+                return false;
+            } else {
+                resultLog.debug(
+                        "Login as [{}] didn't throw an Exception but returned null Session ({} ms)",
+                        task.username,
+                        outcome.millis);
+            }
+            return true;
+        } catch (ExecutionException | CancellationException e) {
+            final Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+            resultLog.warn("Login as [{}] failed unexpectedly: {}", task.username, String.valueOf(cause));
+            return false;
+        } catch (InterruptedException ie) {
+            // not reached, the task is completed
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Starts the login on a thread of the executor. If the health check has
+     * not been activated, the login is run on the calling thread.
+     */
+    private void start(final LoginTask task) {
+        final ExecutorService service = this.executor;
+        if (service != null) {
+            try {
+                service.execute(task);
+                return;
+            } catch (RejectedExecutionException ree) {
+                // deactivated concurrently, run on the calling thread
+            }
+        }
+        task.run();
+    }
+
+    /**
+     * Logs in with the credentials and immediately logs out again if the login
+     * succeeded.
+     */
+    private LoginOutcome login(final String username, final String password) {
+        final Credentials creds = new SimpleCredentials(username, password.toCharArray());
+        final long start = System.nanoTime();
+        Session s = null;
+        try {
+            s = repository.login(creds);
+            return new LoginOutcome(s != null, null, start);
+        } catch (RepositoryException re) {
+            return new LoginOutcome(false, re, start);
+        } finally {
+            if (s != null) {
+                s.logout();
+            }
+        }
+    }
+
+    /**
+     * A login which records when it starts and queues itself once completed.
+     * An abandoned login is counted as blocking its thread until it returns.
+     */
+    private static final class LoginTask extends FutureTask<LoginOutcome> {
+
+        private final String username;
+
+        private final BlockingQueue<LoginTask> completed;
+
+        private final AtomicInteger blockedThreads;
+
+        /** Whether the login has returned or has been abandoned */
+        private final AtomicBoolean finished = new AtomicBoolean();
+
+        private volatile long startTime;
+
+        private volatile boolean started;
+
+        LoginTask(
+                final String username,
+                final Callable<LoginOutcome> login,
+                final BlockingQueue<LoginTask> completed,
+                final AtomicInteger blockedThreads) {
+            super(login);
+            this.username = username;
+            this.completed = completed;
+            this.blockedThreads = blockedThreads;
+        }
+
+        @Override
+        public void run() {
+            this.startTime = System.nanoTime();
+            this.started = true;
+            try {
+                super.run();
+            } finally {
+                if (!this.finished.compareAndSet(false, true)) {
+                    this.blockedThreads.decrementAndGet();
+                }
+            }
+        }
+
+        /** Cancels the login, its thread is blocked until the login returns */
+        void abandon() {
+            if (this.finished.compareAndSet(false, true)) {
+                this.blockedThreads.incrementAndGet();
+            }
+            this.cancel(true);
+        }
+
+        @Override
+        protected void done() {
+            this.completed.add(this);
+        }
+    }
+
+    /** The outcome of a single login */
+    private static final class LoginOutcome {
+
+        private final boolean succeeded;
+
+        private final RepositoryException failure;
+
+        private final long millis;
+
+        LoginOutcome(final boolean succeeded, final RepositoryException failure, final long start) {
+            this.succeeded = succeeded;
+            this.failure = failure;
+            this.millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        }
+    }
+
+    /** A result reused until it expires */
+    private static final class CachedResult {
+
+        private final Result result;
+
+        private final long expires;
+
+        CachedResult(final Result result, final long expires) {
+            this.result = result;
+            this.expires = expires;
+        }
+
+        boolean isExpired() {
+            return System.nanoTime() - this.expires >= 0;
+        }
+    }
 }
@@ -23,6 +23,8 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Optional;
 import java.util.concurrent.atomic.AtomicReference;
 
 import jakarta.servlet.http.HttpServlet;
@@ -54,11 +56,19 @@ public abstract class AbstractJakartaAuthenticationFormServlet extends HttpServl
     public static final String CUSTOM_FORM_PATH = "custom_login.html";
 
     /**
-     * The raw form used by the {@link #getForm(HttpServletRequest)} method to
-     * fill in with per-request data. This field is set by the
-     * {@link #getRawForm()} method when first loading the form.
+     * The parsed form used by the {@link #getForm(HttpServletRequest)} method
+     * to fill in with per-request data. This field is set by the
+     * {@link #getFormTemplate()} method when first loading the form.
      */
-    private final AtomicReference<String> rawForm = new AtomicReference<>();
+    private final AtomicReference<FormTemplate> formTemplate = new AtomicReference<>();
+
+    /**
+     * The source of the form if it is read from the file returned by
+     * {@link #getFormFile()}. This field is set when first loading the form
+     * and is empty if no file is used.
+     */
+    private final AtomicReference<Optional<FileFormTemplateSource>> formFileSource = // NOSONAR
+            new AtomicReference<>();
 
     /**
      * Prepares and returns the login form. The response is sent as an UTF-8
@@ -112,7 +122,11 @@ public abstract class AbstractJakartaAuthenticationFormServlet extends HttpServl
             response.setHeader("Expires", "0");
 
             // send the form and flush
-            response.getWriter().print(getForm(request));
+            if (isFormStreamed()) {
+                getFormTemplate().render(response.getOutputStream(), getFormValues(request));
+            } else {
+                response.getWriter().print(getForm(request));
+            }
             response.flushBuffer();
         } catch (IOException ioe) {
             log("Unexpected exception caught", ioe);
@@ -128,6 +142,9 @@ public abstract class AbstractJakartaAuthenticationFormServlet extends HttpServl
      * Returns the form to be sent back to the client for login providing an
      * optional informational message and the optional target to redirect to
      * after successfully logging in.
+     * <p>
+     * This method is only used to send the form if {@link #isFormStreamed()}
+     * returns <code>false</code>.
      *
      * @param request The request providing parameters indicating the
      *            informational message and redirection target.
@@ -135,20 +152,42 @@ public abstract class AbstractJakartaAuthenticationFormServlet extends HttpServl
      * @throws IOException If the login form cannot be loaded
      */
     protected String getForm(final HttpServletRequest request) throws IOException {
-        String form = getRawForm();
-
-        final String resource = cleanse(request, getResource(request));
-        final String reason = getReason(request);
-        final String resourceContextPath = cleanse(request, getContextPath(request));
-        final String contextPath = request.getContextPath();
+        final FormTemplate template = getFormTemplate();
+        final StringBuilder form = new StringBuilder(template.getLiteralLength() + 256);
+        template.render(form, getFormValues(request));
+        return form.toString();
+    }
 
-        // replace form placeholders with checked and filtered values
-        form = form.replace("${resource}", escape(resource));
-        form = form.replace("${j_reason}", escape(reason));
-        form = form.replace("${requestContextPath}", escape(resourceContextPath));
-        form = form.replace("${contextPath}", escape(contextPath));
+    /**
+     * Returns the checked and filtered values for the form placeholders
+     * indexed by their {@link FormTemplate} slot.
+     */
+    private String[] getFormValues(final HttpServletRequest request) {
+        final String[] values = new String[4];
+        values[FormTemplate.RESOURCE] = cleanse(request, getResource(request));
+        values[FormTemplate.REASON] = getReason(request);
+        values[FormTemplate.REQUEST_CONTEXT_PATH] = cleanse(request, getContextPath(request));
+        values[FormTemplate.CONTEXT_PATH] = request.getContextPath();
+        return values;
+    }
 
-        return form;
+    /**
+     * Returns <code>true</code> if the parsed login form is streamed to the
+     * response, writing the pre-encoded form and escaping the per-request
+     * values directly into the output stream. Otherwise the form returned by
+     * {@link #getForm(HttpServletRequest)} is printed to the response.
+     * <p>
+     * Implementations overriding {@link #getForm(HttpServletRequest)} must
+     * overwrite this method to return <code>false</code>, otherwise their
+     * form is not used.
+     * <p>
+     * This method returns <code>true</code> and may be overwritten by
+     * implementations.
+     * @return <code>true</code>
+     * @since 1.4.0
+     */
+    protected boolean isFormStreamed() {
+        return true;
     }
 
     /**
@@ -172,40 +211,6 @@ public abstract class AbstractJakartaAuthenticationFormServlet extends HttpServl
         return target;
     }
 
-    /**
-     * Escape the output.
-     * This method does a simple XML escaping for '<', '>' and '&'
-     * and also escapes single and double quotes.
-     * As these characters should never occur in a url this encoding should
-     * be fine.
-     * @param input The string to escape
-     * @return The escaped string or {@code null} if the input is {@code null}
-     */
-    private static String escape(final String input) {
-        if (input == null) {
-            return null;
-        }
-
-        final StringBuilder b = new StringBuilder(input.length());
-        for (int i = 0; i < input.length(); i++) {
-            final char c = input.charAt(i);
-            if (c == '&') {
-                b.append("&amp;");
-            } else if (c == '<') {
-                b.append("&lt;");
-            } else if (c == '>') {
-                b.append("&gt;");
-            } else if (c == '"') {
-                b.append("%22");
-            } else if (c == '\'') {
-                b.append("%27");
-            } else {
-                b.append(c);
-            }
-        }
-        return b.toString();
-    }
-
     /**
      * Returns the path to the resource to which the request should be
      * redirected after successfully completing the form or an empty string if
@@ -262,14 +267,23 @@ public abstract class AbstractJakartaAuthenticationFormServlet extends HttpServl
     }
 
     /**
-     * Load the raw unmodified form from the bundle (through the class loader).
+     * Load the raw unmodified form from the bundle (through the class loader)
+     * and parse it into a template.
      *
-     * @return The raw form as a string
+     * @return The parsed form
      * @throws IOException If an error occurs reading the "file" or if the
      *             class loader cannot provide the form data.
      */
-    private String getRawForm() throws IOException {
-        String value = rawForm.get();
+    private FormTemplate getFormTemplate() throws IOException {
+        final FileFormTemplateSource source = getFormFileSource();
+        if (source != null) {
+            final FormTemplate fileTemplate = source.getTemplate();
+            if (fileTemplate != null) {
+                return fileTemplate;
+            }
+        }
+
+        FormTemplate value = formTemplate.get();
         if (value == null) {
             try (InputStream ins = getLoginFormStream();
                     Reader r = ins == null ? null : new InputStreamReader(ins, StandardCharsets.UTF_8)) {
@@ -282,8 +296,8 @@ public abstract class AbstractJakartaAuthenticationFormServlet extends HttpServl
                         builder.append(cbuf, 0, rd);
                     }
 
-                    value = builder.toString();
-                    rawForm.set(value);
+                    value = FormTemplate.parse(builder.toString());
+                    formTemplate.set(value);
                 }
             }
 
@@ -294,6 +308,44 @@ public abstract class AbstractJakartaAuthenticationFormServlet extends HttpServl
         return value;
     }
 
+    /**
+     * Returns the source of the form read from the {@link #getFormFile()}
+     * or <code>null</code> if the form is loaded through the class loader.
+     */
+    private FileFormTemplateSource getFormFileSource() {
+        Optional<FileFormTemplateSource> source = formFileSource.get();
+        if (source == null) {
+            final Path file = getFormFile();
+            FileFormTemplateSource fileSource = null;
+            if (file != null) {
+                try {
+                    fileSource = FileFormTemplateSource.open(file);
+                } catch (IOException ioe) {
+                    log("Cannot watch login form " + file + ", using the form from the class loader", ioe);
+                }
+            }
+            source = Optional.ofNullable(fileSource);
+            if (!formFileSource.compareAndSet(null, source)) {
+                source.ifPresent(FileFormTemplateSource::close);
+                source = formFileSource.get();
+            }
+        }
+        return source.orElse(null);
+    }
+
+    /**
+     * Stops watching the {@link #getFormFile() form file} if the form is
+     * read from the file system.
+     */
+    @Override
+    public void destroy() {
+        final Optional<FileFormTemplateSource> source = formFileSource.getAndSet(null);
+        if (source != null) {
+            source.ifPresent(FileFormTemplateSource::close);
+        }
+        super.destroy();
+    }
+
     /**
      * Get login form resource as an input stream
      * @return login form input stream or null if not found
@@ -337,4 +389,23 @@ public abstract class AbstractJakartaAuthenticationFormServlet extends HttpServl
     protected String getCustomFormPath() {
         return CUSTOM_FORM_PATH;
     }
+
+    /**
+     * Returns the file in the file system providing the login form or
+     * <code>null</code> to load the form through the class loader.
+     * <p>
+     * If a file is returned, the form is read from the file and read again
+     * whenever the file changes, such that the form can be updated without
+     * restarting the bundle. If the changed file cannot be read the
+     * previous form is still used. As long as the file has never been read
+     * successfully, the form is loaded through the class loader.
+     * <p>
+     * This method is called once when the form is first needed. It returns
+     * <code>null</code> and may be overwritten by implementations.
+     * @return <code>null</code>
+     * @since 1.4.0
+     */
+    protected Path getFormFile() {
+        return null;
+    }
 }
@@ -82,6 +82,19 @@ public class AuthenticationInfo extends HashMap<String, Object> {
      */
     public static final String AUTH_TYPE = "sling.authType";
 
+    /**
+     * Creates an instance of this class without storing any property in the
+     * underlying map. This constructor is intended for subclasses storing the
+     * properties themselves, which therefore overwrite all methods of the
+     * <code>Map</code> interface. Such subclasses must ensure the
+     * {@link #AUTH_TYPE} property is always present.
+     *
+     * @since 1.4.0
+     */
+    protected AuthenticationInfo() {
+        // properties are stored by the subclass
+    }
+
     /**
      * Creates an instance of this class with just the authentication type. To
      * effectively use this instance the user Id with optional password and/or
@@ -281,13 +294,19 @@ public class AuthenticationInfo extends HashMap<String, Object> {
      * {@link AuthenticationInfo} class overwriting all of the
      * methods that may change the state.
      * This acts like kind of a read-only immutable wrapper.
+     * <p>
+     * The read-only views of the keys, values and entries are created once
+     * such that these instances can be shared by any number of threads.
      */
     private static final class ReadOnlyAuthenticationInfo extends AuthenticationInfo {
 
         private final transient Map<String, Object> unmodifiableMap; // NOSONAR
 
-        // used to guard against stack overflow
-        private final transient ThreadLocal<Boolean> stackGuard = new ThreadLocal<>();
+        private final transient Set<String> keySet; // NOSONAR
+
+        private final transient Collection<Object> values; // NOSONAR
+
+        private final transient Set<Entry<String, Object>> entrySet; // NOSONAR
 
         /**
          * Creates an instance of this read-only class with the given
@@ -300,6 +319,16 @@ public class AuthenticationInfo extends HashMap<String, Object> {
             // create an unmodifiable wrapper in order to delegate
             //  all the public api calls that may change the state
             unmodifiableMap = Collections.unmodifiableMap(this);
+            // create the views from a copy since the views of the
+            // unmodifiable map would call back into this instance
+            final Map<String, Object> copy = new HashMap<>();
+            for (final Entry<String, Object> entry : super.entrySet()) {
+                copy.put(entry.getKey(), entry.getValue());
+            }
+            final Map<String, Object> views = Collections.unmodifiableMap(copy);
+            keySet = views.keySet();
+            values = views.values();
+            entrySet = views.entrySet();
         }
 
         @Override
@@ -324,44 +353,17 @@ public class AuthenticationInfo extends HashMap<String, Object> {
 
         @Override
         public Set<String> keySet() {
-            if (Boolean.TRUE.equals(stackGuard.get())) {
-                return super.keySet();
-            } else {
-                try {
-                    stackGuard.set(Boolean.TRUE);
-                    return unmodifiableMap.keySet();
-                } finally {
-                    stackGuard.remove();
-                }
-            }
+            return keySet;
         }
 
         @Override
         public Collection<Object> values() {
-            if (Boolean.TRUE.equals(stackGuard.get())) {
-                return super.values();
-            } else {
-                try {
-                    stackGuard.set(Boolean.TRUE);
-                    return unmodifiableMap.values();
-                } finally {
-                    stackGuard.remove();
-                }
-            }
+            return values;
         }
 
         @Override
         public Set<Entry<String, Object>> entrySet() {
-            if (Boolean.TRUE.equals(stackGuard.get())) {
-                return super.entrySet();
-            } else {
-                try {
-                    stackGuard.set(Boolean.TRUE);
-                    return unmodifiableMap.entrySet();
-                } finally {
-                    stackGuard.remove();
-                }
-            }
+            return entrySet;
         }
 
         @Override
@@ -0,0 +1,185 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.auth.core.spi;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The <code>FileFormTemplateSource</code> provides a login form read from a
+ * file in the file system. The directory of the file is watched and the form
+ * is reloaded and parsed again whenever the file is created or modified. The
+ * new form atomically replaces the previous one.
+ * <p>
+ * Modification events are reported while the file is still being written.
+ * The form is therefore only reloaded once no further event has been
+ * reported for the file during {@link #QUIET_PERIOD_MILLIS}. This prevents
+ * reading a partially written file as long as the writer does not pause for
+ * longer than that. To update the form safely, the new form should be
+ * written to a temporary file in the same directory which is then atomically
+ * renamed to the watched file. The rename is reported as the creation of the
+ * watched file.
+ * <p>
+ * If the file cannot be read, is empty or is not valid UTF-8 the last form
+ * successfully read is kept.
+ */
+final class FileFormTemplateSource implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FileFormTemplateSource.class);
+
+    /**
+     * Time in milliseconds without further events for the file after which
+     * the file is reloaded
+     */
+    static final long QUIET_PERIOD_MILLIS = 500;
+
+    private final Path file;
+
+    private final AtomicReference<FormTemplate> template = new AtomicReference<>();
+
+    private final WatchService watchService;
+
+    private final Thread watcher;
+
+    private FileFormTemplateSource(final Path file, final WatchService watchService) {
+        this.file = file;
+        this.watchService = watchService;
+        this.watcher = new Thread(this::watch, "sling-auth-form-watcher-" + file.getFileName());
+        this.watcher.setDaemon(true);
+    }
+
+    /**
+     * Reads the form from the file and starts watching the file for changes.
+     *
+     * @param file The file providing the login form
+     * @return The source of the login form
+     * @throws IOException If the directory of the file cannot be watched. If
+     *             the file itself cannot be read, the source is still returned
+     *             and provides the form once the file can be read.
+     */
+    static FileFormTemplateSource open(final Path file) throws IOException {
+        final Path absolute = file.toAbsolutePath();
+        final Path directory = absolute.getParent();
+        if (directory == null) {
+            throw new IOException("Cannot watch login form " + file + " without parent directory");
+        }
+
+        final WatchService watchService = directory.getFileSystem().newWatchService();
+        try {
+            directory.register(
+                    watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (final IOException | RuntimeException e) {
+            watchService.close();
+            throw e;
+        }
+
+        final FileFormTemplateSource source = new FileFormTemplateSource(absolute, watchService);
+        source.reload();
+        source.watcher.start();
+        return source;
+    }
+
+    /**
+     * Returns the last successfully read form or <code>null</code> if the
+     * file could not be read yet
+     */
+    FormTemplate getTemplate() {
+        return this.template.get();
+    }
+
+    /**
+     * Reads and parses the file, replacing the current form if successful.
+     *
+     * @return <code>true</code> if the form has been replaced
+     */
+    boolean reload() {
+        try {
+            final String form = StandardCharsets.UTF_8
+                    .newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT)
+                    .decode(ByteBuffer.wrap(Files.readAllBytes(this.file)))
+                    .toString();
+            if (form.isEmpty()) {
+                LOG.warn("reload: Login form {} is empty, keeping the current form", this.file);
+                return false;
+            }
+            this.template.set(FormTemplate.parse(form));
+            LOG.debug("reload: Loaded login form {}", this.file);
+            return true;
+        } catch (final IOException | RuntimeException e) {
+            LOG.warn("reload: Cannot read login form {}, keeping the current form", this.file, e);
+            return false;
+        }
+    }
+
+    /** Stops watching the file */
+    @Override
+    public void close() {
+        try {
+            this.watchService.close();
+        } catch (final IOException ioe) {
+            LOG.debug("close: Failed closing watch service for {}", this.file, ioe);
+        }
+    }
+
+    private void watch() {
+        final Path name = this.file.getFileName();
+        try {
+            boolean changed = false;
+            while (true) {
+                final WatchKey key = changed
+                        ? this.watchService.poll(QUIET_PERIOD_MILLIS, TimeUnit.MILLISECONDS)
+                        : this.watchService.take();
+                if (key == null) {
+                    // no further event during the quiet period, the file is complete
+                    changed = false;
+                    reload();
+                    continue;
+                }
+                for (final WatchEvent<?> event : key.pollEvents()) {
+                    changed |= event.kind() == StandardWatchEventKinds.OVERFLOW || name.equals(event.context());
+                }
+                if (!key.reset()) {
+                    LOG.warn("watch: Directory of login form {} is no longer watched", this.file);
+                    return;
+                }
+            }
+        } catch (final ClosedWatchServiceException cwse) {
+            // closed, stop watching
+        } catch (final InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,236 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.auth.core.spi;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The <code>FormTemplate</code> is a login form parsed into literal segments
+ * and placeholder slots. It is parsed once when the form is loaded and then
+ * rendered for each request by writing the pre-encoded UTF-8 literals and
+ * escaping the per-request values directly into the output.
+ * <p>
+ * The placeholders are <code>${resource}</code>, <code>${j_reason}</code>,
+ * <code>${requestContextPath}</code> and <code>${contextPath}</code>. Other
+ * character sequences, including unknown placeholders, are kept as is.
+ */
+final class FormTemplate {
+
+    /** Slot of the <code>${resource}</code> placeholder */
+    static final int RESOURCE = 0;
+
+    /** Slot of the <code>${j_reason}</code> placeholder */
+    static final int REASON = 1;
+
+    /** Slot of the <code>${requestContextPath}</code> placeholder */
+    static final int REQUEST_CONTEXT_PATH = 2;
+
+    /** Slot of the <code>${contextPath}</code> placeholder */
+    static final int CONTEXT_PATH = 3;
+
+    /** The placeholders indexed by their slot */
+    private static final String[] PLACEHOLDERS = {
+        "${resource}", "${j_reason}", "${requestContextPath}", "${contextPath}"
+    };
+
+    /** The literal segments, one more than there are placeholders */
+    private final String[] literals;
+
+    /** The literal segments encoded in UTF-8 */
+    private final byte[][] encodedLiterals;
+
+    /** The slots of the placeholders following each literal but the last */
+    private final int[] slots;
+
+    private FormTemplate(final String[] literals, final int[] slots) {
+        this.literals = literals;
+        this.slots = slots;
+        this.encodedLiterals = new byte[literals.length][];
+        for (int i = 0; i < literals.length; i++) {
+            this.encodedLiterals[i] = literals[i].getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Parses the raw form into a template
+     *
+     * @param rawForm The raw form
+     * @return The parsed template
+     */
+    static FormTemplate parse(final String rawForm) {
+        final List<String> literals = new ArrayList<>();
+        final List<Integer> slots = new ArrayList<>();
+
+        int start = 0;
+        int pos = rawForm.indexOf("${");
+        while (pos >= 0) {
+            final int slot = placeholderAt(rawForm, pos);
+            if (slot >= 0) {
+                literals.add(rawForm.substring(start, pos));
+                slots.add(slot);
+                start = pos + PLACEHOLDERS[slot].length();
+                pos = rawForm.indexOf("${", start);
+            } else {
+                pos = rawForm.indexOf("${", pos + 2);
+            }
+        }
+        literals.add(rawForm.substring(start));
+
+        final int[] slotArray = new int[slots.size()];
+        for (int i = 0; i < slotArray.length; i++) {
+            slotArray[i] = slots.get(i);
+        }
+        return new FormTemplate(literals.toArray(new String[0]), slotArray);
+    }
+
+    private static int placeholderAt(final String rawForm, final int pos) {
+        for (int slot = 0; slot < PLACEHOLDERS.length; slot++) {
+            if (rawForm.startsWith(PLACEHOLDERS[slot], pos)) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Writes the form to the output stream, replacing the placeholders with
+     * the escaped values of their slots.
+     *
+     * @param out The stream to write the UTF-8 encoded form to
+     * @param values The unescaped values indexed by slot, <code>null</code>
+     *            values are rendered as empty strings
+     * @throws IOException If writing to the stream fails
+     */
+    void render(final OutputStream out, final String[] values) throws IOException {
+        for (int i = 0; i < this.slots.length; i++) {
+            out.write(this.encodedLiterals[i]);
+            escape(values[this.slots[i]], out);
+        }
+        out.write(this.encodedLiterals[this.slots.length]);
+    }
+
+    /**
+     * Appends the form to the string builder, replacing the placeholders with
+     * the escaped values of their slots.
+     *
+     * @param b The builder to append the form to
+     * @param values The unescaped values indexed by slot, <code>null</code>
+     *            values are rendered as empty strings
+     */
+    void render(final StringBuilder b, final String[] values) {
+        for (int i = 0; i < this.slots.length; i++) {
+            b.append(this.literals[i]);
+            escape(values[this.slots[i]], b);
+        }
+        b.append(this.literals[this.slots.length]);
+    }
+
+    /**
+     * Returns the length of the form without the placeholders, used to size
+     * the buffer when rendering into a string
+     */
+    int getLiteralLength() {
+        int length = 0;
+        for (final String literal : this.literals) {
+            length += literal.length();
+        }
+        return length;
+    }
+
+    /**
+     * Escapes the value into the builder. This does a simple XML escaping for
+     * '&lt;', '&gt;' and '&amp;' and URL encodes single and double quotes.
+     */
+    private static void escape(final String input, final StringBuilder b) {
+        if (input == null) {
+            return;
+        }
+        for (int i = 0; i < input.length(); i++) {
+            final char c = input.charAt(i);
+            if (c == '&') {
+                b.append("&amp;");
+            } else if (c == '<') {
+                b.append("&lt;");
+            } else if (c == '>') {
+                b.append("&gt;");
+            } else if (c == '"') {
+                b.append("%22");
+            } else if (c == '\'') {
+                b.append("%27");
+            } else {
+                b.append(c);
+            }
+        }
+    }
+
+    /**
+     * Escapes the value like {@link #escape(String, StringBuilder)} and
+     * writes it UTF-8 encoded to the stream.
+     */
+    private static void escape(final String input, final OutputStream out) throws IOException {
+        if (input == null) {
+            return;
+        }
+        final int length = input.length();
+        for (int i = 0; i < length; i++) {
+            final char c = input.charAt(i);
+            if (c == '&') {
+                writeAscii("&amp;", out);
+            } else if (c == '<') {
+                writeAscii("&lt;", out);
+            } else if (c == '>') {
+                writeAscii("&gt;", out);
+            } else if (c == '"') {
+                writeAscii("%22", out);
+            } else if (c == '\'') {
+                writeAscii("%27", out);
+            } else if (c < 0x80) {
+                out.write(c);
+            } else if (c < 0x800) {
+                out.write(0xc0 | (c >> 6));
+                out.write(0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c)
+                    && i + 1 < length
+                    && Character.isLowSurrogate(input.charAt(i + 1))) {
+                final int cp = Character.toCodePoint(c, input.charAt(++i));
+                out.write(0xf0 | (cp >> 18));
+                out.write(0x80 | ((cp >> 12) & 0x3f));
+                out.write(0x80 | ((cp >> 6) & 0x3f));
+                out.write(0x80 | (cp & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                // unpaired surrogate, replaced like String.getBytes does
+                out.write('?');
+            } else {
+                out.write(0xe0 | (c >> 12));
+                out.write(0x80 | ((c >> 6) & 0x3f));
+                out.write(0x80 | (c & 0x3f));
+            }
+        }
+    }
+
+    private static void writeAscii(final String value, final OutputStream out) throws IOException {
+        for (int i = 0; i < value.length(); i++) {
+            out.write(value.charAt(i));
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.auth.core.spi;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.osgi.annotation.versioning.ConsumerType;
+
+/**
+ * The <code>JakartaAsyncAuthenticationHandler</code> extends the
+ * {@link JakartaAuthenticationHandler} for handlers which extract credentials
+ * using I/O bound operations such as calling out to a token introspection
+ * endpoint.
+ * <p>
+ * Implementations are registered as {@link JakartaAuthenticationHandler}
+ * services. The blocking
+ * {@link #extractCredentials(HttpServletRequest, HttpServletResponse)} method
+ * is still used for requests authenticated through the blocking
+ * {@link org.apache.sling.auth.core.AuthenticationSupport#handleSecurity(HttpServletRequest, HttpServletResponse)}
+ * method. The
+ * {@link #extractCredentialsAsync(HttpServletRequest, HttpServletResponse)}
+ * method is only used by
+ * {@link org.apache.sling.auth.core.AuthenticationSupport#handleSecurityAsync(HttpServletRequest, HttpServletResponse)}.
+ *
+ * @since 1.4.0
+ */
+@ConsumerType
+public interface JakartaAsyncAuthenticationHandler extends JakartaAuthenticationHandler {
+
+    /**
+     * Extracts credential data from the request without blocking the calling
+     * thread. The returned stage completes with the same values as defined for
+     * {@link #extractCredentials(HttpServletRequest, HttpServletResponse)}:
+     * <code>null</code> if no credentials are contained in the request,
+     * {@link AuthenticationInfo#DOING_AUTH} or
+     * {@link AuthenticationInfo#FAIL_AUTH} or the extracted credentials.
+     * <p>
+     * The stage may complete on any thread. The request and response must
+     * therefore only be accessed as permitted by the servlet specification
+     * for asynchronous processing.
+     * <p>
+     * The default implementation calls the blocking
+     * {@link #extractCredentials(HttpServletRequest, HttpServletResponse)}
+     * method.
+     *
+     * @param request The request object containing the information for the
+     *            authentication.
+     * @param response The response object which may be used to send the
+     *            information on the request failure to the user.
+     * @return A stage completing with the credentials or <code>null</code>
+     */
+    default CompletionStage<AuthenticationInfo> extractCredentialsAsync(
+            HttpServletRequest request, HttpServletResponse response) {
+        return CompletableFuture.completedFuture(extractCredentials(request, response));
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.auth.core;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RedirectTargetTest {
+
+    private static final String[] TARGETS = {
+        "/",
+        "/content/page.html",
+        "/content/page.html?x=1&y=2",
+        "/content/page.html?x=//y",
+        "/content/page.html#frag",
+        "/content/page.html?q=[1]#frag?x",
+        "/content/page.html##",
+        "/content/[page].html",
+        "/content/page's.html",
+        "/content/page.html?name='x'",
+        "/content/%41%2f",
+        "/content/%4",
+        "/content/%zz",
+        "/content/%",
+        "/content/päge",
+        "/content/p ge",
+        "/content/p\u0085ge",
+        "/content/ page",
+        "/content/\tpage",
+        "/content/a|b",
+        "/content/a\\b",
+        "/content/a^b",
+        "/content/a{b}",
+        "/content/a`b",
+        "/content/./x",
+        "/content/../x",
+        "/content/.",
+        "/content/..",
+        "/content/...",
+        "/content/.hidden",
+        "/content/x.",
+        "/content//x",
+        "//host/x",
+        "http://host/x",
+        "/x?redirect=http://host/y",
+        "mailto:someone",
+        "javascript:alert(1)",
+        ":x",
+        "relative/path",
+        "/ctx",
+        "/ctx/",
+        "/ctx/x?y",
+        "/ctxother/x",
+        "/ctx?x",
+        "/ctx#x",
+    };
+
+    @Test
+    public void testMatchesReference() {
+        for (final String ctxPath : new String[] {"", "/ctx"}) {
+            for (final String target : TARGETS) {
+                assertMatchesReference(target, ctxPath);
+            }
+        }
+    }
+
+    @Test
+    public void testRandomTargetsMatchReference() {
+        final char[] alphabet = "/.?#%:'\"<>[]a1F ;@&=+$,-_!~*()ä \n".toCharArray();
+        final Random random = new Random(4711);
+        for (int i = 0; i < 100000; i++) {
+            final char[] chars = new char[1 + random.nextInt(12)];
+            chars[0] = '/';
+            for (int j = 1; j < chars.length; j++) {
+                chars[j] = alphabet[random.nextInt(alphabet.length)];
+            }
+            final String target = new String(chars);
+            assertMatchesReference(target, "");
+            assertMatchesReference("/ctx" + target, "/ctx");
+        }
+    }
+
+    @Test
+    public void testPath() {
+        final RedirectTarget redirect = RedirectTarget.scan("/ctx/content/page.html?x=1", "/ctx");
+        assertEquals(RedirectTarget.VALID, redirect.getStatus());
+        assertFalse(redirect.isContextRoot());
+        assertEquals("/content/page.html", redirect.getPath());
+
+        assertTrue(RedirectTarget.scan("/ctx", "/ctx").isContextRoot());
+    }
+
+    private static void assertMatchesReference(final String target, final String ctxPath) {
+        final RedirectTarget redirect = RedirectTarget.scan(target, ctxPath);
+        final int expected = referenceStatus(target, ctxPath);
+        final String message = "Status of '" + target + "' in '" + ctxPath + "'";
+        if (target.startsWith("/") && !target.startsWith("//")) {
+            assertEquals(message, expected, redirect.getStatus());
+        } else {
+            // schemes and authorities are rejected, the reason may differ
+            assertEquals(message, expected == RedirectTarget.VALID, redirect.getStatus() == RedirectTarget.VALID);
+        }
+        if (expected == RedirectTarget.VALID && !redirect.isContextRoot()) {
+            final String path = referencePath(target, ctxPath);
+            assertEquals("Path of '" + target + "'", path, redirect.getPath());
+            assertEquals(
+                    "Unsafe path of '" + target + "'",
+                    Pattern.compile("[<>'\"]").matcher(path).find(),
+                    redirect.isUnsafePath());
+        }
+    }
+
+    /** The checks formerly done by AuthUtil.isRedirectValid */
+    private static int referenceStatus(final String target, final String ctxPath) {
+        try {
+            new URI(target);
+        } catch (URISyntaxException e) {
+            return RedirectTarget.ILLEGAL_CHARACTERS;
+        }
+        if (target.contains("://")) {
+            return RedirectTarget.URL;
+        }
+        if (target.contains("//")
+                || target.contains("/../")
+                || target.contains("/./")
+                || target.endsWith("/.")
+                || target.endsWith("/..")) {
+            return RedirectTarget.NOT_NORMALIZED;
+        }
+        if (ctxPath.length() > 0 && !target.startsWith(ctxPath)) {
+            return RedirectTarget.OUTSIDE_CONTEXT;
+        }
+        if (ctxPath.length() != target.length() && !target.substring(ctxPath.length()).startsWith("/")) {
+            return RedirectTarget.NOT_ABSOLUTE;
+        }
+        return RedirectTarget.VALID;
+    }
+
+    private static String referencePath(final String target, final String ctxPath) {
+        final String localTarget = target.substring(ctxPath.length());
+        final int query = localTarget.indexOf('?');
+        return (query > 0) ? localTarget.substring(0, query) : localTarget;
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.auth.core.impl;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class AuthUriSuffixMatcherTest {
+
+    @Test
+    public void testNoSuffixes() {
+        assertSame(AuthUriSuffixMatcher.EMPTY, AuthUriSuffixMatcher.compile(null));
+        assertSame(AuthUriSuffixMatcher.EMPTY, AuthUriSuffixMatcher.compile(new String[] {null}));
+        assertFalse(AuthUriSuffixMatcher.EMPTY.matches("/content/j_security_check"));
+        assertFalse(AuthUriSuffixMatcher.EMPTY.matches(null));
+    }
+
+    @Test
+    public void testMatches() {
+        final AuthUriSuffixMatcher matcher = AuthUriSuffixMatcher.compile(
+                new String[] {"/j_security_check", "/sso/callback", "/saml_login", "/oauth/callback"});
+
+        assertTrue(matcher.matches("/j_security_check"));
+        assertTrue(matcher.matches("/content/site/j_security_check"));
+        assertTrue(matcher.matches("/app/sso/callback"));
+        assertTrue(matcher.matches("/app/oauth/callback"));
+        assertTrue(matcher.matches("/saml_login"));
+
+        assertFalse(matcher.matches(""));
+        assertFalse(matcher.matches(null));
+        assertFalse(matcher.matches("j_security_check"));
+        assertFalse(matcher.matches("/content/j_security_check.html"));
+        assertFalse(matcher.matches("/app/callback"));
+        assertFalse(matcher.matches("/app/xso/callback"));
+    }
+
+    @Test
+    public void testNestedSuffixes() {
+        final AuthUriSuffixMatcher matcher = AuthUriSuffixMatcher.compile(new String[] {"/login", "/sso/login"});
+
+        assertTrue(matcher.matches("/login"));
+        assertTrue(matcher.matches("/sso/login"));
+        assertTrue(matcher.matches("/other/login"));
+        assertFalse(matcher.matches("/logins"));
+    }
+
+    @Test
+    public void testEmptySuffixMatchesEverything() {
+        // consistent with String.endsWith("")
+        final AuthUriSuffixMatcher matcher = AuthUriSuffixMatcher.compile(new String[] {"/login", ""});
+
+        assertTrue(matcher.matches("/content/page.html"));
+        assertTrue(matcher.matches(""));
+    }
+}
@@ -22,16 +22,25 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import junitx.util.PrivateAccessor;
+import org.apache.sling.auth.core.AuthConstants;
 import org.apache.sling.auth.core.spi.AuthenticationHandler;
 import org.junit.Test;
 import org.osgi.framework.ServiceReference;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class AuthenticationHandlersManagerTest {
@@ -310,4 +319,147 @@ public class AuthenticationHandlersManagerTest {
                 manager, "unbindEngineAuthHandler", new Class[] {ServiceReference.class}, new Object[] {ref1});
         assertTrue(manager.getHolders().isEmpty());
     }
+
+    private void bind(final AuthenticationHandlersManager manager, final ServiceReference<?> ref) throws Throwable {
+        PrivateAccessor.invoke(
+                manager,
+                "bindAuthHandler",
+                new Class[] {AuthenticationHandler.class, ServiceReference.class},
+                new Object[] {mock(AuthenticationHandler.class), ref});
+    }
+
+    @Test
+    public void testBrowserOnlyUsesConfiguredBrowserAgents() throws Throwable {
+        final SlingAuthenticator.Config config = SlingAuthenticatorTest.createDefaultConfig();
+        when(config.auth_http()).thenReturn(SlingAuthenticator.HTTP_AUTH_DISABLED);
+        when(config.auth_browser_agents()).thenReturn(new String[] {"Mozilla"});
+        when(config.auth_non_browser_agents()).thenReturn(new String[] {"Bot"});
+        final AuthenticationHandlersManager manager = new AuthenticationHandlersManager(config);
+
+        final ServiceReference<?> ref = createServiceReference(new String[] {"/path1"});
+        when(ref.getProperty(AuthConstants.AUTH_HANDLER_BROWSER_ONLY)).thenReturn("true");
+        final AuthenticationHandler handler = mock(AuthenticationHandler.class);
+        PrivateAccessor.invoke(
+                manager,
+                "bindAuthHandler",
+                new Class[] {AuthenticationHandler.class, ServiceReference.class},
+                new Object[] {handler, ref});
+        final AbstractAuthenticationHandlerHolder holder = manager.getHolders().get(0);
+
+        final HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getHeader("User-Agent")).thenReturn("Mozilla/5.0 (compatible; Bot/1.0)");
+        assertFalse(holder.requestCredentials(request, mock(HttpServletResponse.class)));
+        verify(handler, never()).requestCredentials(any(), any());
+
+        when(request.getHeader("User-Agent")).thenReturn("Mozilla/5.0");
+        holder.requestCredentials(request, mock(HttpServletResponse.class));
+        verify(handler, times(1)).requestCredentials(any(), any());
+    }
+
+    @Test
+    public void testBufferedRegistration() throws Throwable {
+        final SlingAuthenticator.Config config = SlingAuthenticatorTest.createDefaultConfig();
+        when(config.auth_http()).thenReturn(SlingAuthenticator.HTTP_AUTH_DISABLED);
+        when(config.auth_handler_quiet_period()).thenReturn(100L);
+        final AuthenticationHandlersManager manager = new AuthenticationHandlersManager(config);
+        try {
+            final ServiceReference<?> ref1 = createServiceReference(new String[] {"/path1"});
+            final ServiceReference<?> ref2 = createServiceReference(new String[] {"/path2"});
+            final ServiceReference<?> ref3 = createServiceReference(new String[] {"/path3"});
+            bind(manager, ref1);
+            bind(manager, ref2);
+            bind(manager, ref3);
+
+            // buffered registrations are not used yet, a buffered handler is dropped on unbind
+            assertTrue(manager.getHolders().isEmpty());
+            PrivateAccessor.invoke(
+                    manager, "unbindAuthHandler", new Class[] {ServiceReference.class}, new Object[] {ref3});
+
+            for (int i = 0; i < 100 && manager.getHolders().isEmpty(); i++) {
+                TimeUnit.MILLISECONDS.sleep(10);
+            }
+            assertEquals(2, manager.getHolders().size());
+            assertPaths(manager, new String[] {"/path1", "/path2"}, new ServiceReference<?>[] {ref1, ref2});
+
+            // unregistration is applied immediately
+            PrivateAccessor.invoke(
+                    manager, "unbindAuthHandler", new Class[] {ServiceReference.class}, new Object[] {ref1});
+            assertPaths(manager, new String[] {"/path2"}, new ServiceReference<?>[] {ref2});
+            assertEquals(1, manager.getHolders().size());
+        } finally {
+            manager.deactivate();
+        }
+    }
+
+    private void update(final AuthenticationHandlersManager manager, final ServiceReference<?> ref)
+            throws Throwable {
+        PrivateAccessor.invoke(
+                manager,
+                "updatedAuthHandler",
+                new Class[] {AuthenticationHandler.class, ServiceReference.class},
+                new Object[] {mock(AuthenticationHandler.class), ref});
+    }
+
+    @Test
+    public void testUpdateNotBuffered() throws Throwable {
+        final SlingAuthenticator.Config config = SlingAuthenticatorTest.createDefaultConfig();
+        when(config.auth_http()).thenReturn(SlingAuthenticator.HTTP_AUTH_DISABLED);
+        when(config.auth_handler_quiet_period()).thenReturn(100L);
+        final AuthenticationHandlersManager manager = new AuthenticationHandlersManager(config);
+        try {
+            final ServiceReference<?> ref = createServiceReference(new String[] {"/path1"});
+            bind(manager, ref);
+            for (int i = 0; i < 100 && manager.getHolders().isEmpty(); i++) {
+                TimeUnit.MILLISECONDS.sleep(10);
+            }
+            assertPaths(manager, new String[] {"/path1"}, new ServiceReference<?>[] {ref});
+
+            // the update replaces the holders at once
+            when(ref.getProperty(AuthenticationHandler.PATH_PROPERTY)).thenReturn(new String[] {"/path2", "/path3"});
+            update(manager, ref);
+            assertEquals(2, manager.getHolders().size());
+            assertPaths(manager, new String[] {"/path2", "/path3"}, new ServiceReference<?>[] {ref, ref});
+
+            // an update without paths removes the holders
+            when(ref.getProperty(AuthenticationHandler.PATH_PROPERTY)).thenReturn(null);
+            update(manager, ref);
+            assertTrue(manager.getHolders().isEmpty());
+        } finally {
+            manager.deactivate();
+        }
+    }
+
+    @Test
+    public void testUpdateBufferedRegistration() throws Throwable {
+        final SlingAuthenticator.Config config = SlingAuthenticatorTest.createDefaultConfig();
+        when(config.auth_http()).thenReturn(SlingAuthenticator.HTTP_AUTH_DISABLED);
+        when(config.auth_handler_quiet_period()).thenReturn(60000L);
+        final AuthenticationHandlersManager manager = new AuthenticationHandlersManager(config);
+
+        final ServiceReference<?> ref = createServiceReference(new String[] {"/path1"});
+        bind(manager, ref);
+
+        // the update of a buffered handler stays buffered
+        when(ref.getProperty(AuthenticationHandler.PATH_PROPERTY)).thenReturn(new String[] {"/path2"});
+        update(manager, ref);
+        assertTrue(manager.getHolders().isEmpty());
+
+        manager.deactivate();
+        assertEquals(1, manager.getHolders().size());
+        assertPaths(manager, new String[] {"/path2"}, new ServiceReference<?>[] {ref});
+    }
+
+    @Test
+    public void testDeactivateAppliesBufferedRegistration() throws Throwable {
+        final SlingAuthenticator.Config config = SlingAuthenticatorTest.createDefaultConfig();
+        when(config.auth_http()).thenReturn(SlingAuthenticator.HTTP_AUTH_DISABLED);
+        when(config.auth_handler_quiet_period()).thenReturn(60000L);
+        final AuthenticationHandlersManager manager = new AuthenticationHandlersManager(config);
+
+        bind(manager, createServiceReference(new String[] {"/path1"}));
+        assertTrue(manager.getHolders().isEmpty());
+
+        manager.deactivate();
+        assertEquals(1, manager.getHolders().size());
+    }
 }
@@ -18,17 +18,29 @@
  */
 package org.apache.sling.auth.core.impl;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
+import junitx.util.PrivateAccessor;
 import org.apache.sling.api.resource.LoginException;
 import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.api.resource.ResourceResolverFactory;
 import org.apache.sling.api.resource.mapping.ResourceMapper;
 import org.apache.sling.auth.core.AuthConstants;
+import org.apache.sling.commons.metrics.MetricsService;
+import org.apache.sling.commons.metrics.Timer;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.Constants;
@@ -36,12 +48,25 @@ import org.osgi.framework.ServiceEvent;
 import org.osgi.framework.ServiceReference;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.clearInvocations;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class AuthenticationRequirementsManagerTest {
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     private void assertPaths(
             final PathBasedHolderCache<AuthenticationRequirementHolder> cache,
             final String[] paths,
@@ -540,4 +565,342 @@ public class AuthenticationRequirementsManagerTest {
             true, false
         });
     }
+
+    @Test
+    public void testMappingChangeInvalidatesRedirectTargetCache() throws LoginException {
+        final SlingAuthenticator.Config config = SlingAuthenticatorTest.createDefaultConfig();
+        when(config.auth_redirect_cache_size()).thenReturn(10);
+        when(config.auth_redirect_cache_ttl()).thenReturn(60L);
+        final AuthenticationRequirementsManager manager = new AuthenticationRequirementsManager(
+                createBundleContext(), createFactoryForMapper(null), config, callable -> callable.run());
+
+        final RedirectTargetCache cache = manager.getRedirectTargetCache();
+        final String key = RedirectTargetCache.key("http", "localhost", 80, "admin", "/path1");
+        cache.put(key, cache.getGeneration(), true);
+        assertEquals(Boolean.TRUE, cache.get(key));
+
+        manager.handleEvent(null);
+        assertNull(cache.get(key));
+    }
+
+    @Test
+    public void testQueueMetrics() throws Exception {
+        final List<Runnable> jobs = new ArrayList<>();
+        final ResourceMapper mapper = mock(ResourceMapper.class);
+        final AtomicReference<AuthenticationRequirementsManager> created = new AtomicReference<>();
+        final List<Long> processingAges = new ArrayList<>();
+        when(mapper.getAllMappings("/path1")).thenAnswer(invocation -> {
+            processingAges.add(created.get().getOldestPendingAge());
+            return Collections.singleton("/path1");
+        });
+        final AuthenticationRequirementsManager manager = new AuthenticationRequirementsManager(
+                createBundleContext(),
+                createFactoryForMapper(mapper),
+                SlingAuthenticatorTest.createDefaultConfig(),
+                jobs::add);
+        created.set(manager);
+
+        assertEquals(0, manager.getQueueSize());
+        assertEquals(0, manager.getOldestPendingAge());
+
+        final ServiceReference<?> ref1 = createServiceReference(new String[] {"/path1"});
+        final ServiceReference<?> ref2 = createServiceReference(new String[] {"/path1"});
+        manager.serviceChanged(new ServiceEvent(ServiceEvent.REGISTERED, ref1));
+        TimeUnit.MILLISECONDS.sleep(20);
+        manager.serviceChanged(new ServiceEvent(ServiceEvent.REGISTERED, ref2));
+        // replacing the first action keeps its queue time
+        manager.serviceChanged(new ServiceEvent(ServiceEvent.MODIFIED, ref1));
+
+        assertEquals(2, manager.getQueueSize());
+        assertTrue(manager.getOldestPendingAge() >= 20);
+        assertEquals(0, manager.getProcessedCount());
+
+        assertEquals(1, jobs.size());
+        jobs.get(0).run();
+
+        // the batch being processed is still pending
+        assertFalse(processingAges.isEmpty());
+        for (final long age : processingAges) {
+            assertTrue(age >= 20);
+        }
+        assertEquals(0, manager.getQueueSize());
+        assertEquals(0, manager.getOldestPendingAge());
+        assertEquals(2, manager.getProcessedCount());
+    }
+
+    @Test
+    public void testDebouncedMappingUpdate() throws Exception {
+        final SlingAuthenticator.Config config = SlingAuthenticatorTest.createDefaultConfig();
+        when(config.auth_mapping_debounce()).thenReturn(100L);
+        final ResourceMapper mapper = mock(ResourceMapper.class);
+        when(mapper.getAllMappings("/path1")).thenReturn(Arrays.asList("/path1", "/path2"));
+        final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        try {
+            final AuthenticationRequirementsManager manager = new AuthenticationRequirementsManager(
+                    createBundleContext(), createFactoryForMapper(mapper), config, executor);
+
+            final ServiceReference<?> ref = createServiceReference(new String[] {"/path1"});
+            manager.serviceChanged(new ServiceEvent(ServiceEvent.REGISTERED, ref));
+            verify(mapper, timeout(5000).times(1)).getAllMappings("/path1");
+
+            when(mapper.getAllMappings("/path1")).thenReturn(Arrays.asList("/path1", "/path3"));
+            for (int i = 0; i < 5; i++) {
+                manager.handleEvent(null);
+            }
+            // the burst is not applied before the debounce time has passed
+            assertPaths(manager, new String[] {"/path1", "/path2"}, new ServiceReference<?>[] {ref, ref});
+
+            TimeUnit.MILLISECONDS.sleep(500);
+            verify(mapper, times(2)).getAllMappings("/path1");
+            assertPaths(manager, new String[] {"/path1", "/path3"}, new ServiceReference<?>[] {ref, ref});
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testParallelMappingUpdate() throws Exception {
+        final SlingAuthenticator.Config config = SlingAuthenticatorTest.createDefaultConfig();
+        when(config.auth_mapping_parallelism()).thenReturn(3);
+        final ResourceMapper mapper = mock(ResourceMapper.class);
+        final ResourceResolverFactory factory = createFactoryForMapper(mapper);
+        final AuthenticationRequirementsManager manager = new AuthenticationRequirementsManager(
+                createBundleContext(), factory, config, callable -> callable.run());
+        try {
+            final List<String> paths = new ArrayList<>();
+            final List<ServiceReference<?>> refs = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                final String path = "/path" + i;
+                when(mapper.getAllMappings(path)).thenReturn(Collections.singleton(path));
+                final ServiceReference<?> ref = createServiceReference(new String[] {path});
+                manager.serviceChanged(new ServiceEvent(ServiceEvent.REGISTERED, ref));
+                paths.add(path);
+                refs.add(ref);
+            }
+            verify(factory, times(5)).getServiceResourceResolver(null);
+
+            for (int i = 0; i < 5; i++) {
+                final String path = "/path" + i;
+                when(mapper.getAllMappings(path)).thenReturn(Arrays.asList(path, path + "/mapped"));
+                paths.add(path + "/mapped");
+                refs.add(refs.get(i));
+            }
+            manager.handleEvent(null);
+
+            // one resolver for the background thread and one per partition
+            verify(factory, times(9)).getServiceResourceResolver(null);
+            assertPaths(manager, paths.toArray(new String[0]), refs.toArray(new ServiceReference<?>[0]));
+        } finally {
+            manager.stop(createBundleContext());
+        }
+    }
+
+    @Test
+    public void testMappingsCachedUntilMappingChange() throws LoginException {
+        final ResourceMapper mapper = mock(ResourceMapper.class);
+        when(mapper.getAllMappings("/path1")).thenReturn(Arrays.asList("/path1", "/path2"));
+        final AuthenticationRequirementsManager manager = new AuthenticationRequirementsManager(
+                createBundleContext(),
+                createFactoryForMapper(mapper),
+                SlingAuthenticatorTest.createDefaultConfig(),
+                callable -> callable.run());
+
+        final ServiceReference<?> ref1 = createServiceReference(new String[] {"/path1"});
+        final ServiceReference<?> ref2 = createServiceReference(new String[] {"/path1"});
+        manager.serviceChanged(new ServiceEvent(ServiceEvent.REGISTERED, ref1));
+        manager.serviceChanged(new ServiceEvent(ServiceEvent.REGISTERED, ref2));
+        verify(mapper, times(1)).getAllMappings("/path1");
+        assertEquals(7, manager.getHolders().size());
+
+        when(mapper.getAllMappings("/path1")).thenReturn(Arrays.asList("/path1", "/path3"));
+        manager.handleEvent(null);
+        verify(mapper, times(2)).getAllMappings("/path1");
+        assertEquals(7, manager.getHolders().size());
+        assertTrue(manager.getHolders().stream().anyMatch(h -> "/path3".equals(h.path)));
+        assertTrue(manager.getHolders().stream().noneMatch(h -> "/path2".equals(h.path)));
+    }
+
+    @Test
+    public void testModifiedServiceAppliedAtOnce() throws LoginException {
+        final ResourceMapper mapper = mock(ResourceMapper.class);
+        when(mapper.getAllMappings("/path1")).thenReturn(Arrays.asList("/path1", "/path1a", "/path1b"));
+        when(mapper.getAllMappings("/path2")).thenReturn(Arrays.asList("/path2", "/path2a", "/path2b"));
+        final AuthenticationRequirementsManager manager = spy(new AuthenticationRequirementsManager(
+                createBundleContext(),
+                createFactoryForMapper(mapper),
+                SlingAuthenticatorTest.createDefaultConfig(),
+                callable -> callable.run()));
+
+        final ServiceReference<?> ref = createServiceReference(new String[] {"/path1"});
+        manager.serviceChanged(new ServiceEvent(ServiceEvent.REGISTERED, ref));
+        verify(manager, times(1)).applyChanges(any(), any());
+        assertPaths(manager, new String[] {"/path1", "/path1a", "/path1b"}, new ServiceReference<?>[] {ref, ref, ref});
+
+        clearInvocations(manager);
+        when(ref.getProperty(AuthConstants.AUTH_REQUIREMENTS)).thenReturn(new String[] {"/path2"});
+        manager.serviceChanged(new ServiceEvent(ServiceEvent.MODIFIED, ref));
+        verify(manager, times(1)).applyChanges(any(), any());
+        assertPaths(manager, new String[] {"/path2", "/path2a", "/path2b"}, new ServiceReference<?>[] {ref, ref, ref});
+
+        clearInvocations(manager);
+        manager.serviceChanged(new ServiceEvent(ServiceEvent.UNREGISTERING, ref));
+        verify(manager, times(1)).applyChanges(any(), any());
+        assertEquals(3, manager.getHolders().size());
+    }
+
+    private ServiceReference<?> createSnapshotServiceReference(final String[] paths) {
+        final ServiceReference<?> ref = createServiceReference(paths);
+        when(ref.getProperty(Constants.SERVICE_PID)).thenReturn("org.example.Servlet");
+        when(ref.getBundle().getSymbolicName()).thenReturn("org.example");
+        return ref;
+    }
+
+    @Test
+    public void testRequirementsSnapshot() throws Exception {
+        final File file = new File(folder.getRoot(), "auth-requirements.snapshot");
+        final BundleContext context = createBundleContext();
+        when(context.getDataFile("auth-requirements.snapshot")).thenReturn(file);
+        final SlingAuthenticator.Config config = SlingAuthenticatorTest.createDefaultConfig();
+        when(config.auth_requirements_snapshot()).thenReturn(true);
+
+        final ResourceMapper mapper = mock(ResourceMapper.class);
+        when(mapper.getAllMappings("/path1")).thenReturn(Arrays.asList("/path1", "/path2"));
+        final AuthenticationRequirementsManager manager = new AuthenticationRequirementsManager(
+                context, createFactoryForMapper(mapper), config, callable -> callable.run());
+        final ServiceReference<?> ref = createSnapshotServiceReference(new String[] {"/path1"});
+        manager.serviceChanged(new ServiceEvent(ServiceEvent.REGISTERED, ref));
+        assertTrue(file.isFile());
+
+        // restart with the service registered, the snapshot is restored by the queue
+        final ServiceReference<?> restartedRef = createSnapshotServiceReference(new String[] {"/path1"});
+        when(context.getAllServiceReferences(null, "(".concat(AuthConstants.AUTH_REQUIREMENTS).concat("=*)")))
+                .thenReturn(new ServiceReference<?>[] {restartedRef});
+        final ServiceReference<?>[] restartedRefs = new ServiceReference<?>[] {restartedRef, restartedRef};
+        final List<Runnable> jobs = new ArrayList<>();
+        final AtomicReference<AuthenticationRequirementsManager> restarted = new AtomicReference<>();
+        final List<AuthenticationRequirementHolder> restoredHolders = new ArrayList<>();
+        when(mapper.getAllMappings("/path1")).thenAnswer(invocation -> {
+            restoredHolders.addAll(restarted.get().getHolders());
+            return Arrays.asList("/path1", "/path3");
+        });
+        restarted.set(
+                new AuthenticationRequirementsManager(context, createFactoryForMapper(mapper), config, jobs::add));
+        assertEquals(3, restarted.get().getHolders().size());
+
+        // the snapshot is used until live processing replaces it
+        jobs.get(0).run();
+        assertEquals(5, restoredHolders.size());
+        final Set<String> restoredPaths = new HashSet<>();
+        for (final AuthenticationRequirementHolder holder : restoredHolders) {
+            restoredPaths.add(holder.path);
+        }
+        assertTrue(restoredPaths.containsAll(Arrays.asList("/path1", "/path2")));
+        assertPaths(restarted.get(), new String[] {"/path1", "/path3"}, restartedRefs);
+    }
+
+    @Test
+    public void testRequirementsSnapshotChangedRequirements() throws Exception {
+        final File file = new File(folder.getRoot(), "auth-requirements.snapshot");
+        final BundleContext context = createBundleContext();
+        when(context.getDataFile("auth-requirements.snapshot")).thenReturn(file);
+        final SlingAuthenticator.Config config = SlingAuthenticatorTest.createDefaultConfig();
+        when(config.auth_requirements_snapshot()).thenReturn(true);
+
+        final AuthenticationRequirementsManager manager = new AuthenticationRequirementsManager(
+                context, createFactoryForMapper(null), config, callable -> callable.run());
+        manager.serviceChanged(
+                new ServiceEvent(ServiceEvent.REGISTERED, createSnapshotServiceReference(new String[] {"/path1"})));
+
+        final ServiceReference<?> changedRef = createSnapshotServiceReference(new String[] {"/path2"});
+        when(context.getAllServiceReferences(null, "(".concat(AuthConstants.AUTH_REQUIREMENTS).concat("=*)")))
+                .thenReturn(new ServiceReference<?>[] {changedRef});
+        final AuthenticationRequirementsManager restarted = new AuthenticationRequirementsManager(
+                context, createFactoryForMapper(null), config, runnable -> {});
+        assertEquals(3, restarted.getHolders().size());
+    }
+
+    @Test
+    public void testOwnedExecutor() throws Exception {
+        final SlingAuthenticator.Config config = SlingAuthenticatorTest.createDefaultConfig();
+        when(config.auth_mapping_executor()).thenReturn(AuthenticationRequirementsManager.EXECUTOR_POOL);
+        when(config.auth_mapping_parallelism()).thenReturn(2);
+        final List<String> threads = Collections.synchronizedList(new ArrayList<>());
+        final ResourceMapper mapper = mock(ResourceMapper.class);
+        when(mapper.getAllMappings("/path1")).thenAnswer(invocation -> {
+            threads.add(Thread.currentThread().getName());
+            return Collections.singleton("/path1");
+        });
+        final BundleContext context = createBundleContext();
+        final AuthenticationRequirementsManager manager =
+                new AuthenticationRequirementsManager(context, createFactoryForMapper(mapper), config);
+        final MetricsService metricsService = mock(MetricsService.class);
+        final Timer waitTimer = mock(Timer.class);
+        final Timer taskTimer = mock(Timer.class);
+        when(metricsService.timer(AuthenticationRequirementsManager.TASK_WAIT_TIMER_NAME))
+                .thenReturn(waitTimer);
+        when(metricsService.timer(AuthenticationRequirementsManager.TASK_TIMER_NAME))
+                .thenReturn(taskTimer);
+        PrivateAccessor.setField(manager, "metricsService", metricsService);
+
+        final ServiceReference<?> ref = createServiceReference(new String[] {"/path1"});
+        manager.serviceChanged(new ServiceEvent(ServiceEvent.REGISTERED, ref));
+        verify(mapper, timeout(5000)).getAllMappings("/path1");
+        assertEquals(Collections.singletonList("sling-auth-requirements-queue"), threads);
+        for (int i = 0; i < 100 && manager.getProcessedCount() == 0; i++) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        assertEquals(1, manager.getProcessedCount());
+        verify(waitTimer, times(1)).update(anyLong(), eq(TimeUnit.NANOSECONDS));
+        verify(taskTimer, times(1)).update(anyLong(), eq(TimeUnit.NANOSECONDS));
+
+        manager.stop(context);
+        // changes after stopping are ignored
+        manager.serviceChanged(
+                new ServiceEvent(ServiceEvent.REGISTERED, createServiceReference(new String[] {"/path2"})));
+        assertEquals(1, manager.getProcessedCount());
+    }
+
+    @Test
+    public void testPrioritizedBatchProcessing() throws LoginException {
+        final List<Runnable> jobs = new ArrayList<>();
+        final ResourceMapper mapper = mock(ResourceMapper.class);
+        when(mapper.getAllMappings("/path1")).thenReturn(Arrays.asList("/path1", "/path1a"));
+        when(mapper.getAllMappings("/path2")).thenReturn(Arrays.asList("/path2", "/path2a"));
+        final AuthenticationRequirementsManager created = new AuthenticationRequirementsManager(
+                createBundleContext(),
+                createFactoryForMapper(mapper),
+                SlingAuthenticatorTest.createDefaultConfig(),
+                jobs::add);
+        // drain the initial queue before spying
+        jobs.remove(0).run();
+        final AuthenticationRequirementsManager manager = spy(created);
+
+        final ServiceReference<?> ref1 = createServiceReference(new String[] {"/path1"});
+        final ServiceReference<?> ref2 = createServiceReference(new String[] {"/path2"});
+        manager.serviceChanged(new ServiceEvent(ServiceEvent.REGISTERED, ref1));
+        manager.serviceChanged(new ServiceEvent(ServiceEvent.REGISTERED, ref2));
+        jobs.remove(0).run();
+        verify(manager, times(1)).applyChanges(any(), any());
+        assertPaths(manager, new String[] {"/path1", "/path1a", "/path2", "/path2a"}, new ServiceReference<?>[] {
+            ref1, ref1, ref2, ref2
+        });
+
+        // the mapping update is queued first but processed after the removal
+        // which is applied before the mapping update starts
+        clearInvocations(manager, mapper);
+        final List<Boolean> removedDuringUpdate = new ArrayList<>();
+        when(mapper.getAllMappings("/path1")).thenAnswer(invocation -> {
+            removedDuringUpdate.add(manager.getHolders().stream().noneMatch(h -> ref2.equals(h.serviceReference)));
+            return Arrays.asList("/path1", "/path1b");
+        });
+        manager.handleEvent(null);
+        manager.serviceChanged(new ServiceEvent(ServiceEvent.UNREGISTERING, ref2));
+        assertEquals(2, manager.getQueueSize());
+        jobs.remove(0).run();
+
+        assertEquals(Collections.singletonList(true), removedDuringUpdate);
+        verify(mapper, times(0)).getAllMappings("/path2");
+        verify(manager, times(2)).applyChanges(any(), any());
+        assertPaths(manager, new String[] {"/path1", "/path1b"}, new ServiceReference<?>[] {ref1, ref1});
+    }
 }
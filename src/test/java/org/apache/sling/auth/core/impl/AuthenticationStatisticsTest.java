@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.auth.core.impl;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AuthenticationStatisticsTest {
+
+    private final AtomicLong now = new AtomicLong(TimeUnit.HOURS.toNanos(1));
+
+    private final AuthenticationStatistics statistics = new AuthenticationStatistics(now::get);
+
+    @Test
+    public void testBins() {
+        long previousUpper = -1;
+        for (int bin = 0; bin < 60; bin++) {
+            final long upper = AuthenticationStatistics.upperBound(bin);
+            assertTrue(upper > previousUpper);
+            assertEquals(bin, AuthenticationStatistics.bin(previousUpper + 1));
+            assertEquals(bin, AuthenticationStatistics.bin(upper));
+            previousUpper = upper;
+        }
+    }
+
+    @Test
+    public void testPercentile() {
+        for (int i = 0; i < 99; i++) {
+            statistics.recordLatency(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        statistics.recordLatency(TimeUnit.SECONDS.toNanos(3));
+
+        final AuthenticationStatistics.Snapshot snapshot = statistics.snapshot(60);
+        assertEquals(100, snapshot.getLatencyCount());
+        final double p99 = snapshot.getLatencyPercentileMillis(0.99);
+        assertTrue("p99 " + p99, p99 >= 10 && p99 < 12.5);
+        final double max = snapshot.getLatencyPercentileMillis(1);
+        assertTrue("max " + max, max >= 3000 && max < 3750);
+    }
+
+    @Test
+    public void testOutcomes() {
+        statistics.recordOutcome(true);
+        statistics.recordOutcome(true);
+        statistics.recordOutcome(true);
+        statistics.recordOutcome(false);
+
+        final AuthenticationStatistics.Snapshot snapshot = statistics.snapshot(60);
+        assertEquals(3, snapshot.getSuccesses());
+        assertEquals(1, snapshot.getFailures());
+        assertEquals(0.25, snapshot.getFailureRatio(), 0.0001);
+    }
+
+    @Test
+    public void testSlidingWindow() {
+        statistics.recordOutcome(false);
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(AuthenticationStatistics.BUCKET_SECONDS));
+        statistics.recordOutcome(true);
+        assertEquals(1, statistics.snapshot(30).getFailures());
+        assertEquals(1, statistics.snapshot(30).getSuccesses());
+
+        // the failure leaves the short window first
+        now.addAndGet(TimeUnit.SECONDS.toNanos(AuthenticationStatistics.BUCKET_SECONDS));
+        assertEquals(0, statistics.snapshot(30).getFailures());
+        assertEquals(1, statistics.snapshot(30).getSuccesses());
+        assertEquals(1, statistics.snapshot(90).getFailures());
+
+        // buckets are reused once the ring wraps around
+        now.addAndGet(TimeUnit.SECONDS.toNanos(
+                (long) AuthenticationStatistics.BUCKETS * AuthenticationStatistics.BUCKET_SECONDS));
+        statistics.recordOutcome(true);
+        final AuthenticationStatistics.Snapshot snapshot =
+                statistics.snapshot(AuthenticationStatistics.MAX_WINDOW_SECONDS);
+        assertEquals(0, snapshot.getFailures());
+        assertEquals(1, snapshot.getSuccesses());
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.auth.core.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.auth.core.spi.AuthenticationInfo;
+import org.junit.Assume;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CompactAuthenticationInfoTest {
+
+    private static final String FEEDBACK = SlingAuthenticator.AUTH_INFO_PROP_FEEDBACK_HANDLER;
+
+    @Test
+    public void testSameAsAuthenticationInfo() {
+        final char[] pwd = "secret".toCharArray();
+        final AuthenticationInfo expected = new AuthenticationInfo("BASIC", "admin", pwd);
+        final AuthenticationInfo info = new CompactAuthenticationInfo("BASIC", "admin", pwd);
+        assertEquals(expected, info);
+        assertEquals(info, expected);
+        assertEquals(expected.hashCode(), info.hashCode());
+        assertEquals(3, info.size());
+
+        for (final AuthenticationInfo map : new AuthenticationInfo[] {expected, info}) {
+            map.put(FEEDBACK, null);
+            map.put("custom", "value");
+            map.putIfAbsent("custom", "other");
+            map.merge("count", 1, (a, b) -> (Integer) a + (Integer) b);
+            map.merge("count", 1, (a, b) -> (Integer) a + (Integer) b);
+            map.computeIfAbsent("computed", k -> k + "!");
+            map.computeIfPresent("computed", (k, v) -> null);
+            map.remove(AuthenticationInfo.AUTH_TYPE);
+            map.remove(ResourceResolverFactory.PASSWORD);
+        }
+        assertEquals(expected, info);
+        assertEquals(new HashMap<>(expected), new HashMap<>(info));
+        assertEquals(5, info.size());
+        assertTrue(info.containsKey(FEEDBACK));
+        assertNull(info.get(FEEDBACK));
+        assertEquals(2, info.get("count"));
+        assertFalse(info.containsKey("computed"));
+        assertNull(info.getPassword());
+        assertEquals("BASIC", info.getAuthType());
+    }
+
+    @Test
+    public void testTypeChecks() {
+        final AuthenticationInfo info = new CompactAuthenticationInfo(null, null, null);
+        assertNull(info.getAuthType());
+        assertTrue(info.containsKey(AuthenticationInfo.AUTH_TYPE));
+        assertEquals(1, info.size());
+
+        try {
+            info.put(ResourceResolverFactory.USER, 1);
+            fail("Expected IllegalArgumentException");
+        } catch (final IllegalArgumentException iae) {
+            // expected
+        }
+        try {
+            info.put(ResourceResolverFactory.PASSWORD, "secret");
+            fail("Expected IllegalArgumentException");
+        } catch (final IllegalArgumentException iae) {
+            // expected
+        }
+        for (final Map.Entry<String, Object> entry : info.entrySet()) {
+            try {
+                entry.setValue(1);
+                fail("Expected IllegalArgumentException");
+            } catch (final IllegalArgumentException iae) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testClear() {
+        final AuthenticationInfo info = new CompactAuthenticationInfo("test", "name", new char[6]);
+        info.put("custom", "value");
+        info.clear();
+
+        assertEquals(1, info.size());
+        assertEquals("test", info.getAuthType());
+        assertFalse(info.containsKey(ResourceResolverFactory.USER));
+        assertFalse(info.containsKey("custom"));
+    }
+
+    @Test
+    public void testIteratorRemove() {
+        final AuthenticationInfo info = new CompactAuthenticationInfo("test", "name", null);
+        info.put("custom", "value");
+
+        for (final Iterator<String> i = info.keySet().iterator(); i.hasNext(); ) {
+            i.next();
+            i.remove();
+        }
+        assertEquals(1, info.size());
+        assertEquals("test", info.getAuthType());
+    }
+
+    @Test
+    public void testClone() {
+        final AuthenticationInfo info = new CompactAuthenticationInfo("test", "name", null);
+        info.put("custom", "value");
+
+        final AuthenticationInfo clone = (AuthenticationInfo) info.clone();
+        assertEquals(info, clone);
+
+        clone.setUser("other");
+        clone.put("custom", "other");
+        assertEquals("name", info.getUser());
+        assertEquals("value", info.get("custom"));
+    }
+
+    @Test
+    public void testSerialization() throws Exception {
+        final AuthenticationInfo info = new CompactAuthenticationInfo("test", "name", "pwd".toCharArray());
+        info.put("custom", "value");
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(out)) {
+            oos.writeObject(info);
+        }
+        final AuthenticationInfo read;
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            read = (AuthenticationInfo) ois.readObject();
+        }
+        assertSame(AuthenticationInfo.class, read.getClass());
+        assertEquals("test", read.getAuthType());
+        assertEquals("name", read.getUser());
+        assertArrayEquals("pwd".toCharArray(), read.getPassword());
+        assertEquals("value", read.get("custom"));
+    }
+
+    @Test
+    public void testAllocation() {
+        final java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        final com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+
+        final char[] pwd = "secret".toCharArray();
+        final Object feedback = new Object();
+        final AuthenticationInfo[] infos = new AuthenticationInfo[10000];
+
+        // warm up
+        for (int run = 0; run < 5; run++) {
+            allocate(infos, false, pwd, feedback);
+            allocate(infos, true, pwd, feedback);
+        }
+
+        final long plain = allocated(threadBean, infos, false, pwd, feedback);
+        final long compact = allocated(threadBean, infos, true, pwd, feedback);
+        assertTrue("Compact: " + compact + " bytes, plain: " + plain + " bytes", compact < plain / 2);
+    }
+
+    private static long allocated(
+            final com.sun.management.ThreadMXBean threadBean,
+            final AuthenticationInfo[] infos,
+            final boolean compact,
+            final char[] pwd,
+            final Object feedback) {
+        final long threadId = Thread.currentThread().getId();
+        final long before = threadBean.getThreadAllocatedBytes(threadId);
+        allocate(infos, compact, pwd, feedback);
+        return threadBean.getThreadAllocatedBytes(threadId) - before;
+    }
+
+    private static void allocate(
+            final AuthenticationInfo[] infos, final boolean compact, final char[] pwd, final Object feedback) {
+        for (int i = 0; i < infos.length; i++) {
+            final AuthenticationInfo info = compact
+                    ? new CompactAuthenticationInfo("BASIC", "admin", pwd)
+                    : new AuthenticationInfo("BASIC", "admin", pwd);
+            info.put(FEEDBACK, feedback);
+            infos[i] = info;
+        }
+    }
+}
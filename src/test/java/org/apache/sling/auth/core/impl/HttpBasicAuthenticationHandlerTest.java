@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.auth.core.impl;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.commons.codec.binary.Base64;
+import org.apache.sling.auth.core.spi.AuthenticationInfo;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class HttpBasicAuthenticationHandlerTest {
+
+    private final HttpBasicAuthenticationHandler handler = new HttpBasicAuthenticationHandler("Sling", true);
+
+    private AuthenticationInfo extract(final String header) {
+        final HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getHeader("Authorization")).thenReturn(header);
+        return handler.extractCredentials(request);
+    }
+
+    private static String encode(final String credentials) {
+        return Base64.encodeBase64String(credentials.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    private static void assertCredentials(final AuthenticationInfo info, final String user, final String password) {
+        assertNotNull(info);
+        assertEquals(HttpServletRequest.BASIC_AUTH, info.getAuthType());
+        assertEquals(user, info.getUser());
+        assertArrayEquals(password.toCharArray(), info.getPassword());
+    }
+
+    @Test
+    public void testCredentials() {
+        assertCredentials(extract("Basic " + encode("admin:admin")), "admin", "admin");
+        assertCredentials(extract("  basic    " + encode("admin:se:cret") + "  "), "admin", "se:cret");
+        assertCredentials(extract("BASIC " + encode("admin:")), "admin", "");
+        assertCredentials(extract("Basic " + encode("admin")), "admin", "");
+        assertCredentials(extract("Basic " + encode(":secret")), "", "secret");
+        assertCredentials(extract("Basic " + encode("j\u00f6rg:pa\u00dfword")), "j\u00f6rg", "pa\u00dfword");
+    }
+
+    @Test
+    public void testPadding() {
+        // unpadded and URL safe encodings are accepted
+        assertCredentials(extract("Basic YTpi"), "a", "b");
+        assertCredentials(extract("Basic YTpiYw=="), "a", "bc");
+        assertCredentials(extract("Basic YTpiYw"), "a", "bc");
+        assertCredentials(extract("Basic YTpiY2Q="), "a", "bcd");
+        assertCredentials(extract("Basic YTpiY2Q"), "a", "bcd");
+        final String urlSafe =
+                Base64.encodeBase64URLSafeString("a:\u00ff\u00fe".getBytes(StandardCharsets.ISO_8859_1));
+        assertCredentials(extract("Basic " + urlSafe), "a", "\u00ff\u00fe");
+    }
+
+    @Test
+    public void testNoCredentials() {
+        assertNull(extract(null));
+        assertNull(extract(""));
+        assertNull(extract("Basic"));
+        assertNull(extract("Basic   "));
+        assertNull(extract("Bearer " + encode("admin:admin")));
+        assertNull(extract("Basics " + encode("admin:admin")));
+    }
+
+    @Test
+    public void testMalformed() {
+        assertNull(extract("Basic YTpi!"));
+        assertNull(extract("Basic YTp iYw=="));
+        assertNull(extract("Basic YTpiY"));
+        assertNull(extract("Basic YT=iYw=="));
+        assertNull(extract("Basic YTpiYw="));
+        assertNull(extract("Basic YTpiYw==="));
+        assertNull(extract("Basic YTpiY2Q=="));
+        assertNull(extract("Basic YTpi===="));
+    }
+
+    @Test
+    public void testSameAsCommonsCodec() {
+        final Random random = new Random(42);
+        for (int i = 0; i < 1000; i++) {
+            final byte[] bytes = new byte[random.nextInt(40)];
+            random.nextBytes(bytes);
+            final String encoded = Base64.encodeBase64String(bytes);
+
+            final char[] decoded = new char[((encoded.length() + 3) / 4) * 3];
+            final int length = HttpBasicAuthenticationHandler.decodeBase64(encoded, 0, encoded.length(), decoded);
+            assertEquals(
+                    new String(Base64.decodeBase64(encoded), StandardCharsets.ISO_8859_1),
+                    new String(decoded, 0, length));
+        }
+    }
+
+    @Test
+    public void testSendUnauthorized() throws Exception {
+        final HttpServletResponse response = mock(HttpServletResponse.class);
+        assertTrue(handler.sendUnauthorized(response));
+        verify(response).setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+        verify(response).setHeader("WWW-Authenticate", "Basic realm=\"Sling\"");
+        verify(response).flushBuffer();
+    }
+}
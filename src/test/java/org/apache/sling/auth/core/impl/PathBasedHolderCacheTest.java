@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.auth.core.impl;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class PathBasedHolderCacheTest {
+
+    private final PathBasedHolderCache<AuthenticationRequirementHolder> cache = new PathBasedHolderCache<>();
+
+    private static HttpServletRequest newRequest() {
+        final HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getServerName()).thenReturn("localhost");
+        when(request.getServerPort()).thenReturn(80);
+        when(request.getScheme()).thenReturn("http");
+        return request;
+    }
+
+    @Test
+    public void testApplyChanges() {
+        final AuthenticationRequirementHolder root = new AuthenticationRequirementHolder("/", true, null);
+        final AuthenticationRequirementHolder content = new AuthenticationRequirementHolder("/content", true, null);
+        final AuthenticationRequirementHolder apps = new AuthenticationRequirementHolder("/apps", true, null);
+        final AuthenticationRequirementHolder host =
+                new AuthenticationRequirementHolder("http://localhost/libs", true, null);
+
+        cache.applyChanges(null, Arrays.asList(root, content));
+        assertEquals(2, cache.getHolders().size());
+
+        cache.applyChanges(Collections.singleton(content), Arrays.asList(apps, host));
+        assertEquals(3, cache.getHolders().size());
+        assertTrue(cache.getHolders().containsAll(Arrays.asList(root, apps, host)));
+
+        final Collection<AuthenticationRequirementHolder>[] holders = cache.findApplicableHolders(newRequest());
+        assertEquals(Collections.singletonList(host), Arrays.asList(holders[0].toArray()));
+        assertNull(holders[1]);
+        assertNull(holders[2]);
+        assertEquals(2, holders[3].size());
+
+        cache.applyChanges(Collections.singleton(host), null);
+        assertNull(cache.findApplicableHolders(newRequest())[0]);
+        assertEquals(2, cache.getHolders().size());
+    }
+
+    @Test
+    public void testSnapshotUnchangedByUpdate() {
+        final AuthenticationRequirementHolder root = new AuthenticationRequirementHolder("/", true, null);
+        cache.addHolder(root);
+
+        final Collection<AuthenticationRequirementHolder>[] before = cache.findApplicableHolders(newRequest());
+        assertEquals(1, before[3].size());
+
+        cache.addHolder(new AuthenticationRequirementHolder("/content", true, null));
+        cache.removeHolder(root);
+
+        // holders returned before the update are not affected
+        assertEquals(1, before[3].size());
+        assertTrue(before[3].contains(root));
+
+        final Collection<AuthenticationRequirementHolder>[] after = cache.findApplicableHolders(newRequest());
+        assertEquals(1, after[3].size());
+        assertFalse(after[3].contains(root));
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.auth.core.impl;
+
+import java.util.function.BiPredicate;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.SyntheticResource;
+import org.apache.sling.auth.core.AuthConstants;
+import org.apache.sling.auth.core.AuthUtil;
+import org.apache.sling.auth.core.AuthenticationSupport;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class RedirectTargetCacheTest {
+
+    private static final String KEY = RedirectTargetCache.key("http", "localhost", 80, "admin", "/content/page");
+
+    @Test
+    public void testDisabled() {
+        final RedirectTargetCache cache = new RedirectTargetCache();
+        assertFalse(cache.isEnabled());
+        cache.put(KEY, cache.getGeneration(), true);
+        assertNull(cache.get(KEY));
+
+        cache.configure(10, 0);
+        assertFalse(cache.isEnabled());
+        cache.configure(0, 10);
+        assertFalse(cache.isEnabled());
+    }
+
+    @Test
+    public void testPutGet() {
+        final RedirectTargetCache cache = new RedirectTargetCache();
+        cache.configure(10, 60);
+        assertTrue(cache.isEnabled());
+
+        cache.put(KEY, cache.getGeneration(), true);
+        assertEquals(Boolean.TRUE, cache.get(KEY));
+
+        final String other = RedirectTargetCache.key("http", "localhost", 80, "anonymous", "/content/page");
+        assertNull(cache.get(other));
+        cache.put(other, cache.getGeneration(), false);
+        assertEquals(Boolean.FALSE, cache.get(other));
+    }
+
+    @Test
+    public void testBounded() {
+        final RedirectTargetCache cache = new RedirectTargetCache();
+        cache.configure(2, 60);
+        for (int i = 0; i < 5; i++) {
+            cache.put(
+                    RedirectTargetCache.key("http", "localhost", 80, "admin", "/page" + i),
+                    cache.getGeneration(),
+                    true);
+        }
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testInvalidate() {
+        final RedirectTargetCache cache = new RedirectTargetCache();
+        cache.configure(10, 60);
+        cache.put(KEY, cache.getGeneration(), true);
+
+        cache.invalidate();
+        assertNull(cache.get(KEY));
+    }
+
+    @Test
+    public void testStaleGenerationNotCached() {
+        final RedirectTargetCache cache = new RedirectTargetCache();
+        cache.configure(10, 60);
+
+        // the mappings change while the target is being resolved
+        final long generation = cache.getGeneration();
+        cache.invalidate();
+        cache.put(KEY, generation, true);
+
+        assertNull(cache.get(KEY));
+    }
+
+    @Test
+    public void testRedirectValidUsesCache() {
+        final RedirectTargetCache cache = new RedirectTargetCache();
+        cache.configure(10, 60);
+
+        final ResourceResolver resolver = Mockito.mock(ResourceResolver.class);
+        Mockito.when(resolver.getUserID()).thenReturn("admin");
+        Mockito.when(resolver.resolve((HttpServletRequest) Mockito.any(), Mockito.eq("/content/it's")))
+                .thenReturn(new SyntheticResource(resolver, "/content/it's", "test"));
+
+        final HttpServletRequest request = Mockito.mock(HttpServletRequest.class);
+        Mockito.when(request.getContextPath()).thenReturn("");
+        Mockito.when(request.getScheme()).thenReturn("http");
+        Mockito.when(request.getServerName()).thenReturn("localhost");
+        Mockito.when(request.getServerPort()).thenReturn(80);
+        Mockito.when(request.getAttribute(AuthenticationSupport.REQUEST_ATTRIBUTE_RESOLVER))
+                .thenReturn(resolver);
+        Mockito.when(request.getAttribute(AuthConstants.ATTR_REQUEST_RESOURCE_EXISTS))
+                .thenReturn((BiPredicate<HttpServletRequest, String>) cache::resourceExists);
+
+        assertTrue(AuthUtil.isRedirectValid(request, "/content/it's"));
+        assertTrue(AuthUtil.isRedirectValid(request, "/content/it's?x=1"));
+        Mockito.verify(resolver, Mockito.times(1)).resolve((HttpServletRequest) Mockito.any(), Mockito.anyString());
+
+        // mapping changes drop the decision
+        cache.invalidate();
+        assertTrue(AuthUtil.isRedirectValid(request, "/content/it's"));
+        Mockito.verify(resolver, Mockito.times(2)).resolve((HttpServletRequest) Mockito.any(), Mockito.anyString());
+    }
+}
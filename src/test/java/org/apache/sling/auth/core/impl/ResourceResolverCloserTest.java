@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.auth.core.impl;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.sling.api.resource.ResourceResolver;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+public class ResourceResolverCloserTest {
+
+    @Test
+    public void testCloseInBackground() {
+        final ResourceResolverCloser closer = new ResourceResolverCloser(1, 10);
+        try {
+            final ResourceResolver resolver = mock(ResourceResolver.class);
+            final SlingAuthenticationMetrics metrics = mock(SlingAuthenticationMetrics.class);
+
+            closer.close(resolver, metrics);
+
+            verify(resolver, timeout(5000)).close();
+            verify(metrics, timeout(5000)).resolverClosed(anyLong());
+        } finally {
+            closer.shutdown();
+        }
+    }
+
+    @Test
+    public void testCloseOnCallerIfQueueFull() throws InterruptedException {
+        final ResourceResolverCloser closer = new ResourceResolverCloser(1, 1);
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        try {
+            // occupy the single closer thread
+            final ResourceResolver blocking = mock(ResourceResolver.class);
+            doAnswer(invocation -> {
+                        blocked.countDown();
+                        release.await();
+                        return null;
+                    })
+                    .when(blocking)
+                    .close();
+            closer.close(blocking, null);
+            assertTrue(blocked.await(5, TimeUnit.SECONDS));
+
+            // fill the queue
+            final ResourceResolver queued = mock(ResourceResolver.class);
+            closer.close(queued, null);
+            assertEquals(1, closer.getBacklog());
+
+            // closed on the calling thread
+            final ResourceResolver rejected = mock(ResourceResolver.class);
+            closer.close(rejected, null);
+            verify(rejected).close();
+
+            release.countDown();
+            verify(queued, timeout(5000)).close();
+            assertEquals(0, closer.getBacklog());
+        } finally {
+            release.countDown();
+            closer.shutdown();
+        }
+    }
+
+    @Test
+    public void testCloseAfterShutdown() {
+        final ResourceResolverCloser closer = new ResourceResolverCloser(1, 10);
+        closer.shutdown();
+
+        final ResourceResolver resolver = mock(ResourceResolver.class);
+        closer.close(resolver, null);
+        verify(resolver).close();
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.auth.core.impl;
+
+import java.lang.reflect.Proxy;
+
+import org.apache.sling.api.resource.ResourceResolver;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ResourceResolverTrackerTest {
+
+    private final ResourceResolverTracker tracker = new ResourceResolverTracker(1);
+
+    @Test
+    public void testClosed() {
+        final ResourceResolver resolver = mock(ResourceResolver.class);
+        final ResourceResolverTracker.TrackedResolver tracked = tracker.track(resolver, "BASIC", "/content");
+        assertEquals(1, tracker.getOpenCount());
+
+        tracked.closed(resolver);
+        assertEquals(0, tracker.getOpenCount());
+
+        // closing twice is harmless
+        tracked.closed(resolver);
+        assertEquals(0, tracker.getOpenCount());
+        assertEquals(0, tracker.getLeakedCount());
+    }
+
+    @Test
+    public void testReplaced() {
+        final ResourceResolver resolver = mock(ResourceResolver.class);
+        when(resolver.isLive()).thenReturn(true);
+        final ResourceResolverTracker.TrackedResolver tracked = tracker.track(resolver, null, "/content");
+
+        tracked.closed(mock(ResourceResolver.class));
+        assertEquals(0, tracker.getOpenCount());
+        assertEquals(1, tracker.getLeakedCount());
+    }
+
+    @Test
+    public void testReplacedAndClosed() {
+        final ResourceResolver resolver = mock(ResourceResolver.class);
+        when(resolver.isLive()).thenReturn(false);
+        final ResourceResolverTracker.TrackedResolver tracked = tracker.track(resolver, null, "/content");
+
+        tracked.closed(mock(ResourceResolver.class));
+        assertEquals(0, tracker.getOpenCount());
+        assertEquals(0, tracker.getLeakedCount());
+    }
+
+    @Test
+    public void testLeaked() throws InterruptedException {
+        tracker.track(newResolver(true), "BASIC", "/content");
+        awaitExpunged();
+        assertEquals(1, tracker.getLeakedCount());
+    }
+
+    @Test
+    public void testClosedElsewhereNotLeaked() throws InterruptedException {
+        // the handle is lost but the resolver has been closed by down-stream code
+        tracker.track(newResolver(false), "BASIC", "/content");
+        awaitExpunged();
+        assertEquals(0, tracker.getLeakedCount());
+    }
+
+    private void awaitExpunged() throws InterruptedException {
+        assertEquals(1, tracker.getOpenCount());
+        for (int i = 0; i < 100 && tracker.getOpenCount() > 0; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertEquals(0, tracker.getOpenCount());
+    }
+
+    private static ResourceResolver newResolver(final boolean live) {
+        return (ResourceResolver) Proxy.newProxyInstance(
+                ResourceResolverTrackerTest.class.getClassLoader(),
+                new Class<?>[] {ResourceResolver.class},
+                (proxy, method, args) -> "isLive".equals(method.getName()) ? live : null);
+    }
+}
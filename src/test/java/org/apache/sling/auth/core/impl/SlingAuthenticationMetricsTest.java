@@ -20,6 +20,7 @@ package org.apache.sling.auth.core.impl;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.sling.commons.metrics.Meter;
 import org.apache.sling.commons.metrics.MetricsService;
@@ -29,6 +30,9 @@ import org.junit.Test;
 
 import static org.apache.sling.auth.core.impl.SlingAuthenticationMetrics.AUTHENTICATE_FAILED_METER_NAME;
 import static org.apache.sling.auth.core.impl.SlingAuthenticationMetrics.AUTHENTICATE_SUCCESS_METER_NAME;
+import static org.apache.sling.auth.core.impl.SlingAuthenticationMetrics.AUTHENTICATE_TIMER_NAME;
+import static org.apache.sling.auth.core.impl.SlingAuthenticationMetrics.RESOLVER_CLOSE_TIMER_NAME;
+import static org.junit.Assert.assertEquals;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
@@ -44,6 +48,7 @@ public class SlingAuthenticationMetricsTest {
     private Meter failedMeter = mock(Meter.class);
     private Timer.Context ctx = mock(Timer.Context.class);
     private Timer timer = mock(Timer.class);
+    private Timer closeTimer = mock(Timer.class);
     private final MetricsService metricsService = mock(MetricsService.class);
 
     private SlingAuthenticationMetrics metrics;
@@ -53,11 +58,12 @@ public class SlingAuthenticationMetricsTest {
         when(timer.time()).thenReturn(ctx);
         when(metricsService.meter(AUTHENTICATE_SUCCESS_METER_NAME)).thenReturn(successMeter);
         when(metricsService.meter(AUTHENTICATE_FAILED_METER_NAME)).thenReturn(failedMeter);
-        when(metricsService.timer(anyString())).thenReturn(timer);
+        when(metricsService.timer(AUTHENTICATE_TIMER_NAME)).thenReturn(timer);
+        when(metricsService.timer(RESOLVER_CLOSE_TIMER_NAME)).thenReturn(closeTimer);
 
         metrics = new SlingAuthenticationMetrics(metricsService);
 
-        verify(metricsService).timer(anyString());
+        verify(metricsService, times(2)).timer(anyString());
         verify(metricsService, times(2)).meter(anyString());
     }
 
@@ -89,4 +95,27 @@ public class SlingAuthenticationMetricsTest {
         verifyNoMoreInteractions(timer, ctx);
         verifyNoInteractions(successMeter, failedMeter);
     }
+
+    @Test
+    public void testResolverClose() {
+        metrics.resolverClosed(42);
+        verify(closeTimer).update(42, TimeUnit.NANOSECONDS);
+
+        verifyNoMoreInteractions(closeTimer);
+        verifyNoInteractions(timer, ctx, successMeter, failedMeter);
+    }
+
+    @Test
+    public void testStatistics() throws IOException {
+        metrics.authenticationTimerContext().close();
+        metrics.authenticateCompleted(true);
+        // challenges and redirects are not failures
+        metrics.authenticateCompleted(false);
+        metrics.loginFailed();
+
+        final AuthenticationStatistics.Snapshot snapshot = metrics.getStatistics().snapshot(60);
+        assertEquals(1, snapshot.getLatencyCount());
+        assertEquals(1, snapshot.getSuccesses());
+        assertEquals(1, snapshot.getFailures());
+    }
 }
@@ -0,0 +1,190 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.auth.core.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.auth.core.spi.AuthenticationInfo;
+import org.apache.sling.auth.core.spi.JakartaAuthenticationFeedbackHandler;
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the authenticator on many concurrent request threads while the
+ * authentication handlers applicable to the requests are registered,
+ * replaced and unregistered. Each request must see a consistent set of
+ * handlers.
+ * <p>
+ * The build targets Java 17, which rules out virtual threads. The requests
+ * are therefore run on a large pool of platform threads.
+ */
+public class SlingAuthenticatorConcurrencyTest {
+
+    private static final int THREADS = 200;
+
+    private static final int REQUESTS = 2000;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+    /** The names of the handlers asked for credentials by the current request */
+    private static final ThreadLocal<List<String>> ASKED = ThreadLocal.withInitial(ArrayList::new);
+
+    @After
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testHandleSecurityWhileRegistering() throws Exception {
+        final SlingAuthenticator.Config config = SlingAuthenticatorTest.createDefaultConfig();
+
+        final BundleContext context = Mockito.mock(BundleContext.class);
+        final Bundle bundle = Mockito.mock(Bundle.class);
+        Mockito.when(context.getBundle()).thenReturn(bundle);
+
+        final ResourceResolverFactory factory = Mockito.mock(ResourceResolverFactory.class);
+        Mockito.when(factory.getResourceResolver(Mockito.any())).thenAnswer(invocation -> newResolver());
+
+        final AuthenticationRequirementsManager requirements =
+                new AuthenticationRequirementsManager(context, null, config, Runnable::run);
+        final AuthenticationHandlersManager handlers = new AuthenticationHandlersManager(config);
+        final SlingAuthenticator authenticator =
+                new SlingAuthenticator(requirements, handlers, factory, context, config);
+
+        // one of the handlers "first" and "second" is always registered for
+        // the request, they are replaced by each other in a single update.
+        // The handler "page" is registered and unregistered.
+        final AbstractAuthenticationHandlerHolder first = newHolder("/content", "first");
+        final AbstractAuthenticationHandlerHolder second = newHolder("/content", "second");
+        final AbstractAuthenticationHandlerHolder page = newHolder("/content/page.html", "page");
+        handlers.addHolder(first);
+
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final CountDownLatch registering = new CountDownLatch(1);
+        final Thread registrar = new Thread(() -> {
+            AbstractAuthenticationHandlerHolder current = first;
+            while (running.get()) {
+                final AbstractAuthenticationHandlerHolder next = current == first ? second : first;
+                handlers.applyChanges(Collections.singleton(current), Collections.singleton(next));
+                current = next;
+                handlers.addHolder(page);
+                registering.countDown();
+                handlers.removeHolder(page);
+            }
+        });
+        registrar.start();
+        assertTrue(registering.await(10, TimeUnit.SECONDS));
+
+        final Set<List<String>> observed = ConcurrentHashMap.newKeySet();
+        final List<Future<Boolean>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < REQUESTS; i++) {
+                results.add(executor.submit(() -> {
+                    final List<String> asked = ASKED.get();
+                    asked.clear();
+                    final HttpServletRequest request = newRequest();
+                    final boolean processed =
+                            authenticator.handleSecurity(request, Mockito.mock(HttpServletResponse.class));
+                    observed.add(new ArrayList<>(asked));
+                    return processed;
+                }));
+            }
+
+            int processed = 0;
+            for (final Future<Boolean> result : results) {
+                if (result.get(60, TimeUnit.SECONDS)) {
+                    processed++;
+                }
+            }
+            assertEquals(REQUESTS, processed);
+
+            // the page handler is present or absent, exactly one of the
+            // replaced handlers is asked after it
+            final Set<List<String>> consistent = Set.of(
+                    List.of("first"), List.of("second"), List.of("page", "first"), List.of("page", "second"));
+            for (final List<String> asked : observed) {
+                assertTrue("Inconsistent handlers " + asked, consistent.contains(asked));
+            }
+        } finally {
+            running.set(false);
+            registrar.join(10000);
+        }
+    }
+
+    private static HttpServletRequest newRequest() {
+        final HttpServletRequest request = Mockito.mock(HttpServletRequest.class);
+        Mockito.when(request.getServerName()).thenReturn("localhost");
+        Mockito.when(request.getServerPort()).thenReturn(80);
+        Mockito.when(request.getScheme()).thenReturn("http");
+        Mockito.when(request.getRequestURI()).thenReturn("/content/page.html");
+        Mockito.when(request.getServletPath()).thenReturn("/content/page.html");
+        return request;
+    }
+
+    private static ResourceResolver newResolver() {
+        final ResourceResolver resolver = Mockito.mock(ResourceResolver.class);
+        Mockito.when(resolver.getUserID()).thenReturn("anonymous");
+        return resolver;
+    }
+
+    private static AbstractAuthenticationHandlerHolder newHolder(final String path, final String name) {
+        return new AbstractAuthenticationHandlerHolder(path, null) {
+
+            @Override
+            protected JakartaAuthenticationFeedbackHandler getFeedbackHandler() {
+                return null;
+            }
+
+            @Override
+            protected AuthenticationInfo doExtractCredentials(
+                    HttpServletRequest request, HttpServletResponse response) {
+                ASKED.get().add(name);
+                return null;
+            }
+
+            @Override
+            protected boolean doRequestCredentials(HttpServletRequest request, HttpServletResponse response) {
+                return false;
+            }
+
+            @Override
+            protected void doDropCredentials(HttpServletRequest request, HttpServletResponse response) {}
+        };
+    }
+}
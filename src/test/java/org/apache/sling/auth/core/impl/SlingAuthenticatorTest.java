@@ -20,6 +20,10 @@ package org.apache.sling.auth.core.impl;
 
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.util.Dictionary;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
 
 import jakarta.servlet.ServletRequest;
 import jakarta.servlet.ServletRequestEvent;
@@ -29,18 +33,23 @@ import jakarta.servlet.http.HttpServletResponse;
 import junitx.util.PrivateAccessor;
 import org.apache.sling.api.SlingJakartaHttpServletRequest;
 import org.apache.sling.api.SlingJakartaHttpServletResponse;
+import org.apache.sling.api.resource.LoginException;
 import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.api.resource.ResourceResolverFactory;
 import org.apache.sling.auth.core.AuthenticationSupport;
 import org.apache.sling.auth.core.spi.AuthenticationInfo;
+import org.apache.sling.auth.core.spi.JakartaAsyncAuthenticationHandler;
 import org.apache.sling.auth.core.spi.JakartaAuthenticationFeedbackHandler;
 import org.apache.sling.auth.core.spi.JakartaAuthenticationHandler;
+import org.apache.sling.commons.metrics.Gauge;
 import org.junit.Assert;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceReference;
+import org.osgi.framework.ServiceRegistration;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -416,8 +425,191 @@ public class SlingAuthenticatorTest {
         assertFalse(argument2.getValue().getSecure());
     }
 
+    @Test
+    public void testHandleSecurityAsync() throws Exception {
+        final CompletableFuture<AuthenticationInfo> credentials = new CompletableFuture<>();
+        final ResourceResolver resolver = Mockito.mock(ResourceResolver.class);
+        final SlingAuthenticator slingAuthenticator = createAsyncSlingAuthenticator(credentials, resolver);
+
+        final HttpServletRequest request = Mockito.mock(HttpServletRequest.class);
+        buildExpectationsForRequest(request, "/content/page.html");
+        Mockito.when(request.getRequestURI()).thenReturn("/content/page.html");
+        Mockito.when(request.isAsyncStarted()).thenReturn(true);
+
+        final CompletableFuture<Boolean> result = slingAuthenticator
+                .handleSecurityAsync(request, Mockito.mock(HttpServletResponse.class))
+                .toCompletableFuture();
+        assertFalse(result.isDone());
+        Mockito.verify(request, never()).setAttribute(AuthenticationSupport.REQUEST_ATTRIBUTE_RESOLVER, resolver);
+
+        credentials.complete(new AuthenticationInfo("TOKEN", "admin"));
+        assertTrue(result.get(5, TimeUnit.SECONDS));
+        Mockito.verify(request, Mockito.atLeastOnce())
+                .setAttribute(AuthenticationSupport.REQUEST_ATTRIBUTE_RESOLVER, resolver);
+    }
+
+    @Test
+    public void testHandleSecurityAsyncNotInAsyncMode() throws Exception {
+        final CompletableFuture<AuthenticationInfo> credentials = new CompletableFuture<>();
+        final ResourceResolver resolver = Mockito.mock(ResourceResolver.class);
+        final SlingAuthenticator slingAuthenticator = createAsyncSlingAuthenticator(credentials, resolver);
+
+        final HttpServletRequest request = Mockito.mock(HttpServletRequest.class);
+        buildExpectationsForRequest(request, "/content/page.html");
+        Mockito.when(request.getRequestURI()).thenReturn("/content/page.html");
+
+        final Thread completer = new Thread(() -> credentials.complete(new AuthenticationInfo("TOKEN", "admin")));
+        completer.start();
+
+        // the request thread waits for the authentication to complete
+        final CompletableFuture<Boolean> result = slingAuthenticator
+                .handleSecurityAsync(request, Mockito.mock(HttpServletResponse.class))
+                .toCompletableFuture();
+        assertTrue(result.isDone());
+        assertTrue(result.get());
+        Mockito.verify(request, Mockito.atLeastOnce())
+                .setAttribute(AuthenticationSupport.REQUEST_ATTRIBUTE_RESOLVER, resolver);
+        completer.join();
+    }
+
+    @Test
+    public void testHandleSecurityAsyncWithoutApplicableAsyncHandler() throws Exception {
+        final CompletableFuture<AuthenticationInfo> credentials = new CompletableFuture<>();
+        final ResourceResolver resolver = Mockito.mock(ResourceResolver.class);
+        final SlingAuthenticator slingAuthenticator = createAsyncSlingAuthenticator(credentials, resolver);
+
+        final HttpServletRequest request = Mockito.mock(HttpServletRequest.class);
+        buildExpectationsForRequest(request, "/apps/page.html");
+        Mockito.when(request.getRequestURI()).thenReturn("/apps/page.html");
+        Mockito.when(request.isAsyncStarted()).thenReturn(true);
+
+        // the blocking variant is used, authenticating anonymously
+        final CompletableFuture<Boolean> result = slingAuthenticator
+                .handleSecurityAsync(request, Mockito.mock(HttpServletResponse.class))
+                .toCompletableFuture();
+        assertTrue(result.isDone());
+        assertTrue(result.get());
+        assertFalse(credentials.isDone());
+    }
+
+    @Test
+    public void testFastChallenge() throws Exception {
+        final SlingAuthenticator.Config config = createDefaultConfig();
+        Mockito.when(config.auth_annonymous()).thenReturn(false);
+        Mockito.when(config.auth_http()).thenReturn(SlingAuthenticator.HTTP_AUTH_ENABLED);
+        Mockito.when(config.auth_http_fast_challenge()).thenReturn(true);
+        final JakartaAuthenticationHandler handler = Mockito.mock(JakartaAuthenticationHandler.class);
+        final AuthenticationHandlersManager handlers = new AuthenticationHandlersManager(config);
+        handlers.addHolder(new AuthenticationHandlerHolder("/content", handler, Mockito.mock(ServiceReference.class)));
+        final SlingAuthenticator slingAuthenticator = new SlingAuthenticator(
+                new AuthenticationRequirementsManager(createBundleContext(), null, config, callable -> callable.run()),
+                handlers,
+                null,
+                Mockito.mock(BundleContext.class),
+                config);
+
+        final HttpServletRequest request = Mockito.mock(HttpServletRequest.class);
+        buildExpectationsForRequest(request, "/content/page.html");
+        Mockito.when(request.getRequestURI()).thenReturn("/content/page.html");
+        Mockito.when(request.getHeader("User-Agent")).thenReturn("curl/8.0");
+        final HttpServletResponse response = Mockito.mock(HttpServletResponse.class);
+
+        assertFalse(slingAuthenticator.handleSecurity(request, response));
+        Mockito.verify(response).setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+        Mockito.verify(handler, never()).extractCredentials(Mockito.any(), Mockito.any());
+
+        // browsers are authenticated as usual
+        final HttpServletRequest browserRequest = Mockito.mock(HttpServletRequest.class);
+        buildExpectationsForRequest(browserRequest, "/content/page.html");
+        Mockito.when(browserRequest.getRequestURI()).thenReturn("/content/page.html");
+        Mockito.when(browserRequest.getHeader("User-Agent")).thenReturn("Mozilla/5.0");
+
+        slingAuthenticator.handleSecurity(browserRequest, Mockito.mock(HttpServletResponse.class));
+        Mockito.verify(handler).extractCredentials(Mockito.eq(browserRequest), Mockito.any());
+    }
+
+    @Test
+    public void testFastChallengeAsync() throws Exception {
+        final SlingAuthenticator.Config config = createDefaultConfig();
+        Mockito.when(config.auth_annonymous()).thenReturn(false);
+        Mockito.when(config.auth_http()).thenReturn(SlingAuthenticator.HTTP_AUTH_ENABLED);
+        Mockito.when(config.auth_http_fast_challenge()).thenReturn(true);
+        final JakartaAsyncAuthenticationHandler handler = Mockito.mock(JakartaAsyncAuthenticationHandler.class);
+        final AuthenticationHandlersManager handlers = new AuthenticationHandlersManager(config);
+        handlers.addHolder(new AuthenticationHandlerHolder("/content", handler, Mockito.mock(ServiceReference.class)));
+        final SlingAuthenticator slingAuthenticator = new SlingAuthenticator(
+                new AuthenticationRequirementsManager(createBundleContext(), null, config, callable -> callable.run()),
+                handlers,
+                null,
+                Mockito.mock(BundleContext.class),
+                config);
+
+        final HttpServletRequest request = Mockito.mock(HttpServletRequest.class);
+        buildExpectationsForRequest(request, "/content/page.html");
+        Mockito.when(request.getRequestURI()).thenReturn("/content/page.html");
+        Mockito.when(request.getHeader("User-Agent")).thenReturn("curl/8.0");
+        Mockito.when(request.isAsyncStarted()).thenReturn(true);
+        final HttpServletResponse response = Mockito.mock(HttpServletResponse.class);
+
+        final CompletableFuture<Boolean> result =
+                slingAuthenticator.handleSecurityAsync(request, response).toCompletableFuture();
+        assertTrue(result.isDone());
+        assertFalse(result.get());
+        Mockito.verify(response).setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+        Mockito.verify(handler, never()).extractCredentialsAsync(Mockito.any(), Mockito.any());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testOpenResolversGauge() throws Throwable {
+        final SlingAuthenticator.Config config = createDefaultConfig();
+        Mockito.when(config.auth_resolver_tracker_enabled()).thenReturn(true);
+        final BundleContext context = Mockito.mock(BundleContext.class);
+        final ServiceRegistration<Gauge> registration = Mockito.mock(ServiceRegistration.class);
+        final ArgumentCaptor<Gauge> gauge = ArgumentCaptor.forClass(Gauge.class);
+        final ArgumentCaptor<Dictionary<String, ?>> properties = ArgumentCaptor.forClass(Dictionary.class);
+        Mockito.when(context.registerService(Mockito.eq(Gauge.class), gauge.capture(), properties.capture()))
+                .thenReturn(registration);
+        final SlingAuthenticator slingAuthenticator = new SlingAuthenticator(
+                new AuthenticationRequirementsManager(createBundleContext(), null, config, callable -> callable.run()),
+                new AuthenticationHandlersManager(config),
+                null,
+                context,
+                config);
+
+        assertEquals(2, properties.getAllValues().size());
+        assertEquals(SlingAuthenticator.RESOLVER_OPEN_GAUGE_NAME, properties.getAllValues().get(0).get(Gauge.NAME));
+        assertEquals(0, gauge.getAllValues().get(0).getValue());
+        assertEquals(
+                SlingAuthenticator.RESOLVER_CLOSE_BACKLOG_GAUGE_NAME,
+                properties.getAllValues().get(1).get(Gauge.NAME));
+        assertEquals(0, gauge.getAllValues().get(1).getValue());
+
+        PrivateAccessor.invoke(slingAuthenticator, "deactivate", new Class[0], new Object[0]);
+        Mockito.verify(registration, Mockito.times(2)).unregister();
+    }
+
     // ---------------------------- PRIVATE METHODS -----------------------------
 
+    private SlingAuthenticator createAsyncSlingAuthenticator(
+            final CompletionStage<AuthenticationInfo> credentials, final ResourceResolver resolver)
+            throws LoginException {
+        final SlingAuthenticator.Config config = createDefaultConfig();
+        final AuthenticationRequirementsManager requirements =
+                new AuthenticationRequirementsManager(createBundleContext(), null, config, callable -> callable.run());
+        final AuthenticationHandlersManager handlers = new AuthenticationHandlersManager(config);
+
+        final JakartaAsyncAuthenticationHandler handler = Mockito.mock(JakartaAsyncAuthenticationHandler.class);
+        Mockito.when(handler.extractCredentialsAsync(Mockito.any(), Mockito.any()))
+                .thenReturn(credentials);
+        handlers.addHolder(new AuthenticationHandlerHolder("/content", handler, Mockito.mock(ServiceReference.class)));
+
+        final ResourceResolverFactory factory = Mockito.mock(ResourceResolverFactory.class);
+        Mockito.when(factory.getResourceResolver(Mockito.any())).thenReturn(resolver);
+
+        return new SlingAuthenticator(requirements, handlers, factory, Mockito.mock(BundleContext.class), config);
+    }
+
     /**
      * Mocks the request to accept method calls on path;
      *
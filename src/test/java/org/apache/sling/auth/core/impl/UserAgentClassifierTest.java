@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.auth.core.impl;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class UserAgentClassifierTest {
+
+    private static final String FIREFOX = "Mozilla/5.0 (X11; Linux x86_64; rv:128.0) Gecko/20100101 Firefox/128.0";
+
+    private static final String SDK = "Mozilla/5.0 (Linux; Android 14) AcmeMobileSDK/3.2";
+
+    @Test
+    public void testDefaultRules() {
+        final UserAgentClassifier classifier = new UserAgentClassifier(null, null, 100);
+        assertTrue(classifier.isBrowser(FIREFOX));
+        assertTrue(classifier.isBrowser("Opera/9.80 (Windows NT 6.1) Presto/2.12.388"));
+        assertTrue(classifier.isBrowser(SDK));
+        assertFalse(classifier.isBrowser("curl/8.5.0"));
+        assertFalse(classifier.isBrowser("Microsoft-WebDAV-MiniRedir/10.0.19045"));
+        assertFalse(classifier.isBrowser(null));
+    }
+
+    @Test
+    public void testNonBrowserAgents() {
+        final UserAgentClassifier classifier =
+                new UserAgentClassifier(new String[] {"Mozilla", "Opera"}, new String[] {"AcmeMobileSDK", ""}, 100);
+        assertTrue(classifier.isBrowser(FIREFOX));
+        assertFalse(classifier.isBrowser(SDK));
+        // cached decisions are the same
+        assertTrue(classifier.isBrowser(FIREFOX));
+        assertFalse(classifier.isBrowser(SDK));
+    }
+
+    @Test
+    public void testUncached() {
+        final UserAgentClassifier classifier = new UserAgentClassifier(new String[] {"Gecko"}, null, 0);
+        assertTrue(classifier.isBrowser(FIREFOX));
+        assertFalse(classifier.isBrowser("Opera/9.80"));
+    }
+
+    @Test
+    public void testBoundedCache() {
+        final UserAgentClassifier classifier = new UserAgentClassifier(null, null, 32);
+        for (int i = 0; i < 10000; i++) {
+            assertTrue(classifier.isBrowser("Mozilla/5.0 build " + i));
+            assertFalse(classifier.isBrowser("client/" + i));
+        }
+        assertTrue(classifier.isBrowser(FIREFOX));
+    }
+
+    @Test
+    public void testRequest() {
+        final UserAgentClassifier classifier = new UserAgentClassifier(null, new String[] {"AcmeMobileSDK"}, 100);
+        final HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getHeader("User-Agent")).thenReturn(SDK);
+        assertFalse(classifier.isBrowserRequest(request));
+
+        when(request.getHeader("User-Agent")).thenReturn(FIREFOX);
+        assertTrue(classifier.isBrowserRequest(request));
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.auth.core.impl.hc;
+
+import org.apache.felix.hc.api.Result;
+import org.apache.sling.auth.core.impl.AuthenticationRequirementsManager;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AuthenticationRequirementsBacklogHealthCheckTest {
+
+    private AuthenticationRequirementsManager manager;
+
+    private AuthenticationRequirementsBacklogHealthCheck.Config config;
+
+    @Before
+    public void setup() {
+        manager = Mockito.mock(AuthenticationRequirementsManager.class);
+        config = Mockito.mock(AuthenticationRequirementsBacklogHealthCheck.Config.class);
+        Mockito.when(config.max_backlog()).thenReturn(10);
+        Mockito.when(config.max_age()).thenReturn(5000L);
+    }
+
+    @Test
+    public void testEmptyQueue() {
+        final Result result = new AuthenticationRequirementsBacklogHealthCheck(manager, config).execute();
+        assertTrue(result.toString(), result.isOk());
+    }
+
+    @Test
+    public void testSmallBacklog() {
+        Mockito.when(manager.getQueueSize()).thenReturn(10);
+        Mockito.when(manager.getOldestPendingAge()).thenReturn(100L);
+        final Result result = new AuthenticationRequirementsBacklogHealthCheck(manager, config).execute();
+        assertTrue(result.toString(), result.isOk());
+    }
+
+    @Test
+    public void testLargeBacklog() {
+        Mockito.when(manager.getQueueSize()).thenReturn(11);
+        final Result result = new AuthenticationRequirementsBacklogHealthCheck(manager, config).execute();
+        assertEquals(Result.Status.CRITICAL, result.getStatus());
+        assertTrue(result.toString().contains("11 authentication requirement changes pending, exceeds 10"));
+    }
+
+    @Test
+    public void testStaleBacklog() {
+        Mockito.when(manager.getQueueSize()).thenReturn(1);
+        Mockito.when(manager.getOldestPendingAge()).thenReturn(6000L);
+        final Result result = new AuthenticationRequirementsBacklogHealthCheck(manager, config).execute();
+        assertEquals(Result.Status.CRITICAL, result.getStatus());
+    }
+}
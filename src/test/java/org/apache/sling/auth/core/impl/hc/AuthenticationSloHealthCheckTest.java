@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.auth.core.impl.hc;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.felix.hc.api.Result;
+import org.apache.sling.auth.core.impl.AuthenticationStatistics;
+import org.apache.sling.auth.core.impl.SlingAuthenticationMetrics;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AuthenticationSloHealthCheckTest {
+
+    private final AuthenticationStatistics statistics = new AuthenticationStatistics();
+
+    private SlingAuthenticationMetrics metrics;
+
+    private AuthenticationSloHealthCheck.Config config;
+
+    @Before
+    public void setup() {
+        metrics = Mockito.mock(SlingAuthenticationMetrics.class);
+        Mockito.when(metrics.getStatistics()).thenReturn(statistics);
+
+        config = Mockito.mock(AuthenticationSloHealthCheck.Config.class);
+        Mockito.when(config.window()).thenReturn(120);
+        Mockito.when(config.min_authentications()).thenReturn(10L);
+        Mockito.when(config.latency_warn()).thenReturn(1000L);
+        Mockito.when(config.latency_critical()).thenReturn(5000L);
+        Mockito.when(config.failure_ratio_warn()).thenReturn(0.2);
+        Mockito.when(config.failure_ratio_critical()).thenReturn(0.5);
+    }
+
+    private void authenticate(final int count, final boolean success, final long millis) {
+        for (int i = 0; i < count; i++) {
+            statistics.recordLatency(TimeUnit.MILLISECONDS.toNanos(millis));
+            statistics.recordOutcome(success);
+        }
+    }
+
+    @Test
+    public void testTooFewAuthentications() {
+        authenticate(5, false, 10);
+        final Result result = new AuthenticationSloHealthCheck(metrics, config).execute();
+        assertTrue(result.isOk());
+    }
+
+    @Test
+    public void testHealthy() {
+        authenticate(20, true, 10);
+        authenticate(2, false, 10);
+        final Result result = new AuthenticationSloHealthCheck(metrics, config).execute();
+        assertTrue(result.toString(), result.isOk());
+    }
+
+    @Test
+    public void testFailureRatioWarn() {
+        authenticate(7, true, 10);
+        authenticate(3, false, 10);
+        final Result result = new AuthenticationSloHealthCheck(metrics, config).execute();
+        assertEquals(Result.Status.WARN, result.getStatus());
+        assertTrue(result.toString().contains("Authentication failure ratio 0.300 (3 of 10) exceeds 0.2"));
+    }
+
+    @Test
+    public void testFailureRatioCritical() {
+        authenticate(2, true, 10);
+        authenticate(8, false, 10);
+        final Result result = new AuthenticationSloHealthCheck(metrics, config).execute();
+        assertEquals(Result.Status.CRITICAL, result.getStatus());
+    }
+
+    @Test
+    public void testLatencyWarn() {
+        authenticate(10, true, 2000);
+        final Result result = new AuthenticationSloHealthCheck(metrics, config).execute();
+        assertEquals(Result.Status.WARN, result.getStatus());
+        assertTrue(result.toString().contains("exceeds 1000 ms"));
+    }
+
+    @Test
+    public void testLatencyCritical() {
+        authenticate(100, true, 10);
+        authenticate(2, true, 8000);
+        final Result result = new AuthenticationSloHealthCheck(metrics, config).execute();
+        assertEquals(Result.Status.CRITICAL, result.getStatus());
+    }
+}
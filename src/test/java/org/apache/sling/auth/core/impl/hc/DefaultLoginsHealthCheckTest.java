@@ -24,6 +24,9 @@ import javax.jcr.Session;
 import javax.jcr.SimpleCredentials;
 
 import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 
 import org.apache.felix.hc.api.Result;
 import org.apache.sling.jcr.api.SlingRepository;
@@ -34,6 +37,7 @@ import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 public class DefaultLoginsHealthCheckTest {
@@ -101,4 +105,130 @@ public class DefaultLoginsHealthCheckTest {
                 "Expected debug in the ResultLog",
                 testResult.toString().contains("DEBUG Login as [throw] failed, as expected"));
     }
+
+    private DefaultLoginsHealthCheck activate(
+            final SlingRepository repo, final long timeout, final long cacheTtl, final String... logins)
+            throws Exception {
+        return activate(repo, timeout, 4, cacheTtl, logins);
+    }
+
+    private DefaultLoginsHealthCheck activate(
+            final SlingRepository repo,
+            final long timeout,
+            final int threads,
+            final long cacheTtl,
+            final String... logins)
+            throws Exception {
+        final DefaultLoginsHealthCheck.Config config = Mockito.mock(DefaultLoginsHealthCheck.Config.class);
+        Mockito.when(config.logins()).thenReturn(logins);
+        Mockito.when(config.login_timeout()).thenReturn(timeout);
+        Mockito.when(config.login_threads()).thenReturn(threads);
+        Mockito.when(config.result_cache_ttl()).thenReturn(cacheTtl);
+        final DefaultLoginsHealthCheck c = new DefaultLoginsHealthCheck();
+        SetField.set(c, "repository", repo);
+        c.activate(config);
+        return c;
+    }
+
+    @Test
+    public void testLoginsRunInParallel() throws Exception {
+        final SlingRepository repo = Mockito.mock(SlingRepository.class);
+        final CountDownLatch allStarted = new CountDownLatch(3);
+        Mockito.when(repo.login(ArgumentMatchers.any(Credentials.class))).thenAnswer(invocation -> {
+            allStarted.countDown();
+            // only completes if all logins run concurrently
+            if (!allStarted.await(10, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Logins not run in parallel");
+            }
+            throw new LoginException("Login Failed");
+        });
+
+        final DefaultLoginsHealthCheck c = activate(repo, 20000, 0, "a:a", "b:b", "c:c");
+        try {
+            final Result result = c.execute();
+            assertTrue("Expecting successful check", result.isOk());
+            assertTrue(result.toString().contains("DEBUG Checked 3 logins, all successful"));
+            assertTrue(Pattern.compile("Login as \\[b\\] failed, as expected \\(\\d+ ms\\)")
+                    .matcher(result.toString())
+                    .find());
+        } finally {
+            c.deactivate();
+        }
+    }
+
+    @Test
+    public void testLoginTimeout() throws Exception {
+        final SlingRepository repo = Mockito.mock(SlingRepository.class);
+        final CountDownLatch release = new CountDownLatch(1);
+        Mockito.when(repo.login(ArgumentMatchers.any(Credentials.class))).thenAnswer(invocation -> {
+            final SimpleCredentials c = (SimpleCredentials) invocation.getArguments()[0];
+            if ("slow".equals(c.getUserID())) {
+                release.await(10, TimeUnit.SECONDS);
+            }
+            throw new LoginException("Login Failed");
+        });
+
+        final DefaultLoginsHealthCheck c = activate(repo, 100, 0, "slow:slow", "fast:fast");
+        try {
+            final Result result = c.execute();
+            assertFalse("Expecting failed check", result.isOk());
+            assertTrue(result.toString().contains("WARN Login as [slow] did not complete within 100 ms"));
+            assertTrue(result.toString().contains("DEBUG Login as [fast] failed, as expected"));
+        } finally {
+            release.countDown();
+            c.deactivate();
+        }
+    }
+
+    @Test
+    public void testLoginTimeoutReplacesBlockedThread() throws Exception {
+        final SlingRepository repo = Mockito.mock(SlingRepository.class);
+        final CountDownLatch release = new CountDownLatch(1);
+        Mockito.when(repo.login(ArgumentMatchers.any(Credentials.class))).thenAnswer(invocation -> {
+            final SimpleCredentials c = (SimpleCredentials) invocation.getArguments()[0];
+            if (c.getUserID().startsWith("slow")) {
+                // not interruptible, like a blocked repository login
+                while (release.getCount() > 0) {
+                    try {
+                        release.await();
+                    } catch (InterruptedException ie) {
+                        // ignore
+                    }
+                }
+            }
+            throw new LoginException("Login Failed");
+        });
+
+        // a single login thread, replaced once
+        final DefaultLoginsHealthCheck c =
+                activate(repo, 100, 1, 0, "slow1:slow", "fast:fast", "slow2:slow", "late:late");
+        try {
+            final Result result = c.execute();
+            assertFalse("Expecting failed check", result.isOk());
+            assertTrue(result.toString().contains("WARN Login as [slow1] did not complete within 100 ms"));
+            assertTrue(result.toString().contains("DEBUG Login as [fast] failed, as expected"));
+            assertTrue(result.toString().contains("WARN Login as [slow2] did not complete within 100 ms"));
+            assertTrue(result.toString().contains("WARN Login as [late] not checked, no thread available"));
+            assertTrue(result.toString().contains("WARN Checked 4 logins, 3 failures"));
+        } finally {
+            release.countDown();
+            c.deactivate();
+        }
+    }
+
+    @Test
+    public void testResultCached() throws Exception {
+        final SlingRepository repo = Mockito.mock(SlingRepository.class);
+        Mockito.when(repo.login(ArgumentMatchers.any(Credentials.class))).thenThrow(new LoginException("Failed"));
+
+        final DefaultLoginsHealthCheck c = activate(repo, 1000, 60, "admin:admin");
+        try {
+            final Result first = c.execute();
+            assertTrue(first.isOk());
+            assertSame(first, c.execute());
+            Mockito.verify(repo, Mockito.times(1)).login(ArgumentMatchers.any(Credentials.class));
+        } finally {
+            c.deactivate();
+        }
+    }
 }
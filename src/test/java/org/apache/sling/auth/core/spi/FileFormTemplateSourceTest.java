@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.auth.core.spi;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FileFormTemplateSourceTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testReloadOnChange() throws Exception {
+        final Path file = folder.getRoot().toPath().resolve("login.html");
+        write(file, "first ${resource}");
+
+        try (FileFormTemplateSource source = FileFormTemplateSource.open(file)) {
+            assertEquals("first /x", render(source.getTemplate()));
+
+            write(file, "second ${resource}");
+            final long timeout = System.currentTimeMillis() + 30000;
+            while (!"second /x".equals(render(source.getTemplate())) && System.currentTimeMillis() < timeout) {
+                Thread.sleep(50);
+            }
+            assertEquals("second /x", render(source.getTemplate()));
+        }
+    }
+
+    @Test
+    public void testReloadOnAtomicRename() throws Exception {
+        final Path file = folder.getRoot().toPath().resolve("login.html");
+        write(file, "first ${resource}");
+
+        try (FileFormTemplateSource source = FileFormTemplateSource.open(file)) {
+            final Path temp = folder.getRoot().toPath().resolve("login.html.tmp");
+            write(temp, "renamed ${resource}");
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            final long timeout = System.currentTimeMillis() + 30000;
+            while (!"renamed /x".equals(render(source.getTemplate())) && System.currentTimeMillis() < timeout) {
+                Thread.sleep(50);
+            }
+            assertEquals("renamed /x", render(source.getTemplate()));
+        }
+    }
+
+    @Test
+    public void testKeepLastGoodForm() throws IOException {
+        final Path file = folder.getRoot().toPath().resolve("login.html");
+        write(file, "good ${resource}");
+
+        try (FileFormTemplateSource source = FileFormTemplateSource.open(file)) {
+            // invalid UTF-8
+            Files.write(file, new byte[] {'b', 'a', 'd', (byte) 0xc3, (byte) 0x28});
+            assertFalse(source.reload());
+            assertEquals("good /x", render(source.getTemplate()));
+
+            write(file, "");
+            assertFalse(source.reload());
+            assertEquals("good /x", render(source.getTemplate()));
+
+            Files.delete(file);
+            assertFalse(source.reload());
+            assertEquals("good /x", render(source.getTemplate()));
+
+            write(file, "better ${resource}");
+            assertTrue(source.reload());
+            assertEquals("better /x", render(source.getTemplate()));
+        }
+    }
+
+    @Test
+    public void testMissingFile() throws IOException {
+        final Path file = folder.getRoot().toPath().resolve("missing.html");
+        try (FileFormTemplateSource source = FileFormTemplateSource.open(file)) {
+            assertNull(source.getTemplate());
+
+            write(file, "late ${resource}");
+            assertTrue(source.reload());
+            assertEquals("late /x", render(source.getTemplate()));
+        }
+    }
+
+    @Test
+    public void testServletUsesFormFile() throws IOException {
+        final Path file = folder.getRoot().toPath().resolve("custom_login.html");
+        write(file, "<p>${j_reason}</p>");
+
+        final AbstractJakartaAuthenticationFormServlet servlet = new AbstractJakartaAuthenticationFormServlet() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected String getReason(final HttpServletRequest request) {
+                return "expired";
+            }
+
+            @Override
+            protected Path getFormFile() {
+                return file;
+            }
+        };
+        try {
+            final HttpServletRequest request = Mockito.mock(HttpServletRequest.class);
+            Mockito.when(request.getContextPath()).thenReturn("");
+            assertEquals("<p>expired</p>", servlet.getForm(request));
+        } finally {
+            servlet.destroy();
+        }
+    }
+
+    private static void write(final Path file, final String content) throws IOException {
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String render(final FormTemplate template) {
+        final StringBuilder b = new StringBuilder();
+        template.render(b, new String[] {"/x", null, null, null});
+        return b.toString();
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.auth.core.spi;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FormTemplateTest {
+
+    private static final String FORM = "<p>${j_reason}</p><form action=\"${requestContextPath}/j_security_check\">"
+            + "<input value=\"${resource}\">${resource}<a href=\"${contextPath}\">${other} $ ${</a></form>";
+
+    @Test
+    public void testRenderMatchesReplace() throws IOException {
+        final String[] values = {"/content/a&b", "Ungültig <\"x\"> 'y' 🔑", "/ctx/content", "/ctx"};
+        final FormTemplate template = FormTemplate.parse(FORM);
+
+        final String expected = FORM.replace("${resource}", escape(values[FormTemplate.RESOURCE]))
+                .replace("${j_reason}", escape(values[FormTemplate.REASON]))
+                .replace("${requestContextPath}", escape(values[FormTemplate.REQUEST_CONTEXT_PATH]))
+                .replace("${contextPath}", escape(values[FormTemplate.CONTEXT_PATH]));
+
+        final StringBuilder b = new StringBuilder();
+        template.render(b, values);
+        assertEquals(expected, b.toString());
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        template.render(out, values);
+        assertEquals(expected, new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testNoPlaceholders() throws IOException {
+        final FormTemplate template = FormTemplate.parse("<html></html>");
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        template.render(out, new String[4]);
+        assertEquals("<html></html>", out.toString(StandardCharsets.UTF_8.name()));
+        assertEquals(13, template.getLiteralLength());
+    }
+
+    @Test
+    public void testNullValues() {
+        final StringBuilder b = new StringBuilder();
+        FormTemplate.parse("[${resource}]").render(b, new String[4]);
+        assertEquals("[]", b.toString());
+    }
+
+    @Test
+    public void testServletStreamsForm() throws IOException {
+        final TestFormServlet servlet = new TestFormServlet();
+        final HttpServletRequest request = Mockito.mock(HttpServletRequest.class);
+        Mockito.when(request.getContextPath()).thenReturn("");
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final HttpServletResponse response = Mockito.mock(HttpServletResponse.class);
+        Mockito.when(response.getOutputStream()).thenReturn(new TestOutputStream(out));
+
+        servlet.doGet(request, response);
+
+        final String form = new String(out.toByteArray(), StandardCharsets.UTF_8);
+        assertEquals(servlet.getForm(request), form);
+        assertTrue(form.contains("<p class=\"reason\">Bad &lt;credentials&gt;</p>"));
+        assertTrue(form.contains("Hilfe für ${unknown}"));
+        assertFalse(form.contains("${j_reason}"));
+        Mockito.verify(response, Mockito.never()).getWriter();
+    }
+
+    @Test
+    public void testServletPrintsOverriddenForm() throws IOException {
+        final TestFormServlet servlet = new TestFormServlet() {
+            @Override
+            protected String getForm(final HttpServletRequest request) {
+                return "custom";
+            }
+
+            @Override
+            protected boolean isFormStreamed() {
+                return false;
+            }
+        };
+        final StringWriter writer = new StringWriter();
+        final HttpServletResponse response = Mockito.mock(HttpServletResponse.class);
+        Mockito.when(response.getWriter()).thenReturn(new PrintWriter(writer));
+
+        servlet.doGet(Mockito.mock(HttpServletRequest.class), response);
+
+        assertEquals("custom", writer.toString());
+        Mockito.verify(response, Mockito.never()).getOutputStream();
+    }
+
+    private static String escape(final String input) {
+        return input.replace("&", "&amp;")
+                .replace("<", "&lt;")
+                .replace(">", "&gt;")
+                .replace("\"", "%22")
+                .replace("'", "%27");
+    }
+
+    @SuppressWarnings("serial")
+    private static class TestFormServlet extends AbstractJakartaAuthenticationFormServlet {
+
+        @Override
+        protected String getReason(final HttpServletRequest request) {
+            return "Bad <credentials>";
+        }
+
+        @Override
+        protected String getDefaultFormPath() {
+            return "test_login.html";
+        }
+    }
+
+    private static class TestOutputStream extends ServletOutputStream {
+
+        private final ByteArrayOutputStream out;
+
+        TestOutputStream(final ByteArrayOutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(final int b) {
+            this.out.write(b);
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setWriteListener(final WriteListener writeListener) {
+            // not used
+        }
+    }
+}
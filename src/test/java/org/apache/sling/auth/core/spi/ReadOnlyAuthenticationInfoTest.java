@@ -18,11 +18,20 @@
  */
 package org.apache.sling.auth.core.spi;
 
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
+import org.junit.Assume;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -31,7 +40,9 @@ import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Verify that ReadOnlyAuthenticationInfo instances are immutable
@@ -183,4 +194,68 @@ public class ReadOnlyAuthenticationInfoTest {
         assertEquals(authInfo, clone);
         assertNotSame(authInfo, clone);
     }
+
+    @Test
+    public void testViewsArePrecomputed() {
+        assertSame(authInfo.keySet(), authInfo.keySet());
+        assertSame(authInfo.values(), authInfo.values());
+        assertSame(authInfo.entrySet(), authInfo.entrySet());
+
+        assertEquals(Collections.singleton(AuthenticationInfo.AUTH_TYPE), authInfo.keySet());
+        assertTrue(authInfo.values().contains("FAIL_AUTH"));
+        final Entry<String, Object> entry = authInfo.entrySet().iterator().next();
+        assertThrows(UnsupportedOperationException.class, () -> entry.setValue("newValue"));
+    }
+
+    @Test
+    public void testConcurrentIteration() throws Exception {
+        final AuthenticationInfo[] sentinels = {AuthenticationInfo.DOING_AUTH, AuthenticationInfo.FAIL_AUTH};
+        final ExecutorService executor = Executors.newFixedThreadPool(32);
+        try {
+            final List<Future<Integer>> results = new ArrayList<>();
+            for (int t = 0; t < 64; t++) {
+                results.add(executor.submit((Callable<Integer>) () -> {
+                    int count = 0;
+                    for (int i = 0; i < 10000; i++) {
+                        final AuthenticationInfo info = sentinels[i % 2];
+                        for (final String key : info.keySet()) {
+                            count += key.length() > 0 ? 1 : 0;
+                        }
+                        for (final Object value : info.values()) {
+                            count += value != null ? 1 : 0;
+                        }
+                        for (final Entry<String, Object> entry : info.entrySet()) {
+                            count += entry.getKey().equals(AuthenticationInfo.AUTH_TYPE) ? 1 : 0;
+                        }
+                    }
+                    return count;
+                }));
+            }
+            for (final Future<Integer> result : results) {
+                assertEquals(Integer.valueOf(30000), result.get(60, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testViewsDoNotAllocate() {
+        final java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        final com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+
+        final AuthenticationInfo info = AuthenticationInfo.DOING_AUTH;
+        final long threadId = Thread.currentThread().getId();
+        final long before = threadBean.getThreadAllocatedBytes(threadId);
+        int sizes = 0;
+        for (int i = 0; i < 100000; i++) {
+            sizes += info.keySet().size() + info.values().size() + info.entrySet().size();
+        }
+        final long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+        assertEquals(300000, sizes);
+        assertTrue("Allocated " + allocated + " bytes", allocated < 10000);
+    }
 }